@@ -0,0 +1,87 @@
+#!/bin/bash
+set -e
+
+# 对比两个单协议启动器（2个JVM + 2个xray）与合并启动器（1个JVM + 1个xray）的常驻内存
+# 用法：./combined-compare.sh [次数]
+# 先执行 mvn package；需要当前目录或 XRAY 环境变量指向已下载的 xray 二进制
+
+# ==================== 配置 ====================
+RUNS=${1:-3}
+XRAY=${XRAY:-$(pwd)/xray}
+VERSION=2.0.0
+VMESS_JAR=target/vmess-server-${VERSION}.jar
+VLESS_JAR=target/vless-reality-server-${VERSION}.jar
+COMBINED_JAR=target/combined-server-${VERSION}.jar
+
+for f in "$VMESS_JAR" "$VLESS_JAR" "$COMBINED_JAR" "$XRAY"; do
+  [ -f "$f" ] || { echo "❌ Missing $f"; exit 1; }
+done
+
+# 进程及其直接子进程（xray）的RSS之和（KB）
+tree_rss() {
+  local total=0 p rss
+  for p in "$1" $(pgrep -P "$1" || true); do
+    rss=$(awk '/^VmRSS:/ {print $2}' /proc/$p/status 2>/dev/null || echo 0)
+    total=$((total + ${rss:-0}))
+  done
+  echo $total
+}
+
+# 在独立目录启动一个启动器，等到写出 boot-report.json；输出 "pid 目录"
+launch() {
+  local dir pid
+  dir=$(mktemp -d)
+  cp "$XRAY" "$dir/xray"
+  # 预置IP缓存，避免网络波动影响对比
+  echo "127.0.0.1" > "$dir/.server-ip"
+  (cd "$dir" && exec env SKIP_NODE_UPLOAD=1 "$@" > run.log 2>&1 < /dev/null) &
+  pid=$!
+  while [ ! -f "$dir/boot-report.json" ]; do
+    kill -0 $pid 2>/dev/null || { echo "❌ Exited early, see $dir/run.log" >&2; return 1; }
+    sleep 0.01
+  done
+  echo "$pid $dir"
+}
+
+stop() {
+  pkill -P "$1" 2>/dev/null || true
+  kill "$1" 2>/dev/null || true
+  wait "$1" 2>/dev/null || true
+  rm -rf "$2"
+}
+
+# ==================== 单次测量 ====================
+# 输出：稳定2秒后所有启动器及其xray子进程的RSS之和（KB）
+measure_separate() {
+  local port=$((20000 + RANDOM % 10000)) vless vmess total
+  read -r vless vless_dir < <(launch env PORT=$port java -jar "$(pwd)/$VLESS_JAR")
+  read -r vmess vmess_dir < <(launch env PORT=$((port + 1)) java -jar "$(pwd)/$VMESS_JAR")
+  sleep 2
+  total=$(( $(tree_rss "$vless") + $(tree_rss "$vmess") ))
+  stop "$vless" "$vless_dir"
+  stop "$vmess" "$vmess_dir"
+  echo "$total"
+}
+
+measure_combined() {
+  local port=$((20000 + RANDOM % 10000)) pid dir total
+  read -r pid dir < <(launch env VLESS_PORT=$port VMESS_PORT=$((port + 1)) java -jar "$(pwd)/$COMBINED_JAR")
+  sleep 2
+  total=$(tree_rss "$pid")
+  stop "$pid" "$dir"
+  echo "$total"
+}
+
+report() {
+  local name=$1 fn=$2 total=0 rss
+  for i in $(seq 1 "$RUNS"); do
+    rss=$($fn)
+    echo "   $name run $i: RSS ${rss} KB"
+    total=$((total + rss))
+  done
+  printf "📊 %-9s RSS %7d KB\n" "$name" $((total / RUNS))
+}
+
+echo "🧪 VLESS-Reality + VMess: $RUNS runs each"
+report "separate" measure_separate
+report "combined" measure_combined
@@ -0,0 +1,69 @@
+#!/bin/bash
+set -e
+
+# 对比shade JAR与GraalVM原生镜像的启动耗时和常驻内存
+# 用法：./native-compare.sh [vmess|vless] [次数]
+# 先执行 mvn package 和 mvn -Pnative package；需要当前目录或 XRAY 环境变量指向已下载的 xray 二进制
+
+# ==================== 配置 ====================
+PROTO=${1:-vless}
+RUNS=${2:-3}
+XRAY=${XRAY:-$(pwd)/xray}
+VERSION=2.0.0
+
+if [ "$PROTO" = "vmess" ]; then
+  JAR=target/vmess-server-${VERSION}.jar
+  NATIVE=target/vmess-server
+else
+  JAR=target/vless-reality-server-${VERSION}.jar
+  NATIVE=target/vless-reality-server
+fi
+
+for f in "$JAR" "$NATIVE" "$XRAY"; do
+  [ -f "$f" ] || { echo "❌ Missing $f"; exit 1; }
+done
+
+# ==================== 单次测量 ====================
+# 输出：启动到写出 boot-report.json 的毫秒数，以及稳定2秒后启动器进程（不含xray子进程）的RSS（KB）
+measure() {
+  local dir
+  dir=$(mktemp -d)
+  cp "$XRAY" "$dir/xray"
+  # 预置IP缓存和端口，避免网络波动影响对比
+  echo "127.0.0.1" > "$dir/.server-ip"
+
+  local start end pid rss
+  start=$(date +%s%N)
+  (cd "$dir" && exec env PORT=$((20000 + RANDOM % 10000)) SKIP_NODE_UPLOAD=1 "$@" > run.log 2>&1 < /dev/null) &
+  pid=$!
+  while [ ! -f "$dir/boot-report.json" ]; do
+    kill -0 $pid 2>/dev/null || { echo "❌ Exited early, see $dir/run.log" >&2; return 1; }
+    sleep 0.01
+  done
+  end=$(date +%s%N)
+  sleep 2
+  rss=$(awk '/^VmRSS:/ {print $2}' /proc/$pid/status)
+
+  pkill -P $pid 2>/dev/null || true
+  kill $pid 2>/dev/null || true
+  wait $pid 2>/dev/null || true
+  rm -rf "$dir"
+  echo "$(( (end - start) / 1000000 )) $rss"
+}
+
+report() {
+  local name=$1
+  shift
+  local total_ms=0 total_rss=0 ms rss
+  for i in $(seq 1 "$RUNS"); do
+    read -r ms rss < <(measure "$@")
+    echo "   $name run $i: ${ms} ms, RSS ${rss} KB"
+    total_ms=$((total_ms + ms))
+    total_rss=$((total_rss + rss))
+  done
+  printf "📊 %-7s startup %5d ms   RSS %6d KB\n" "$name" $((total_ms / RUNS)) $((total_rss / RUNS))
+}
+
+echo "🧪 $PROTO: $RUNS runs each"
+report "jar" java -jar "$(pwd)/$JAR"
+report "native" "$(pwd)/$NATIVE"
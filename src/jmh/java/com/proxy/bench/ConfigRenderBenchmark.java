@@ -0,0 +1,174 @@
+package com.proxy.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.proxy.common.StreamingConfigWriter;
+import com.proxy.common.User;
+import com.proxy.common.UserFile;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 多用户配置渲染基准：Gson树+格式化输出 vs 流式紧凑输出
+ * 分别在 1k/10k/100k 用户下统计渲染耗时和堆内存峰值
+ *
+ * 用法：mvn -Pjmh test-compile exec:java -Dexec.mainClass=com.proxy.bench.ConfigRenderBenchmark -Dexec.args="[用户数...]"
+ */
+public class ConfigRenderBenchmark {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    @FunctionalInterface
+    private interface Render {
+        void run(Path users, Path target) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length > 0
+            ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+            : new int[] {1_000, 10_000, 100_000};
+
+        Path dir = Files.createTempDirectory("config-bench");
+        try {
+            for (int size : sizes) {
+                Path users = dir.resolve("users-" + size + ".csv");
+                writeUsers(users, size);
+
+                Path target = dir.resolve("c.json");
+                measure("gson-tree", size, users, target, ConfigRenderBenchmark::renderTree);
+                measure("streaming", size, users, target, ConfigRenderBenchmark::renderStreaming);
+            }
+        } finally {
+            try (var files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static void measure(String name, int size, Path users, Path target, Render render) throws IOException {
+        // 预热
+        render.run(users, target);
+
+        System.gc();
+        long baseline = heapUsed();
+        resetPeaks();
+
+        long start = System.nanoTime();
+        render.run(users, target);
+        long elapsed = System.nanoTime() - start;
+
+        long peak = Math.max(0, heapPeak() - baseline);
+        System.out.println(String.format("⏱️  %-10s users=%-7d render=%8.1f ms  peak heap=%8.1f MB  size=%8.1f KB",
+            name, size, elapsed / 1e6, peak / (1024.0 * 1024.0), Files.size(target) / 1024.0));
+    }
+
+    /**
+     * 旧方式：读取所有用户构建完整JsonObject树，再格式化输出
+     */
+    private static void renderTree(Path users, Path target) throws IOException {
+        JsonArray clients = new JsonArray();
+        List<User> all = UserFile.readAll(users);
+        for (User user : all) {
+            JsonObject client = new JsonObject();
+            client.addProperty("id", user.getId());
+            client.addProperty("alterId", 0);
+            client.addProperty("email", user.getEmail());
+            clients.add(client);
+        }
+        Files.writeString(target, GSON.toJson(skeleton(clients)));
+    }
+
+    /**
+     * 新方式：clients数组从用户文件流式写出
+     */
+    private static void renderStreaming(Path users, Path target) throws IOException {
+        JsonArray clients = new JsonArray();
+        new StreamingConfigWriter()
+            .stream(clients, users, (out, user) -> {
+                out.beginObject();
+                out.name("id").value(user.getId());
+                out.name("alterId").value(0);
+                out.name("email").value(user.getEmail());
+                out.endObject();
+            })
+            .write(skeleton(clients), target);
+    }
+
+    private static JsonObject skeleton(JsonArray clients) {
+        JsonObject config = new JsonObject();
+        JsonObject log = new JsonObject();
+        log.addProperty("loglevel", "none");
+        config.add("log", log);
+
+        JsonObject settings = new JsonObject();
+        settings.add("clients", clients);
+
+        JsonObject inbound = new JsonObject();
+        inbound.addProperty("port", 20041);
+        inbound.addProperty("protocol", "vmess");
+        inbound.add("settings", settings);
+        inbound.addProperty("tag", "vmess");
+
+        JsonArray inbounds = new JsonArray();
+        inbounds.add(inbound);
+        config.add("inbounds", inbounds);
+
+        JsonObject outbound = new JsonObject();
+        outbound.addProperty("protocol", "freedom");
+        JsonArray outbounds = new JsonArray();
+        outbounds.add(outbound);
+        config.add("outbounds", outbounds);
+        return config;
+    }
+
+    private static void writeUsers(Path path, int count) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < count; i++) {
+                writer.write(UUID.randomUUID().toString());
+                writer.write(",user");
+                writer.write(Integer.toString(i));
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static long heapUsed() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long heapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void resetPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+}
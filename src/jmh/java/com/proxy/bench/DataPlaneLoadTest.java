@@ -0,0 +1,322 @@
+package com.proxy.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据面压测：在本机用生成的 c.json 启动服务端Xray，再按 link.txt 中的链接生成客户端Xray配置，
+ * 客户端 dokodemo-door 入站经代理协议转发到本地接收端，多个连接并发写入，
+ * 输出吞吐（Gbps）、建连耗时 p50/p99（连接 + 经代理往返1字节）和两端Xray每GB消耗的CPU时间
+ *
+ * 用法：mvn -Pjmh test-compile exec:java -Dexec.mainClass=com.proxy.bench.DataPlaneLoadTest -Dexec.args="[并发连接数] [秒数] [目录] [xray路径]"
+ * 目录中需有服务端运行过一次后留下的 c.json 和 link.txt（默认当前目录）；
+ * VLESS+Reality 服务端每个连接都会访问 dest，需要能连上外网
+ */
+public class DataPlaneLoadTest {
+
+    private static final Gson GSON = new Gson();
+
+    /** 每个连接写入的数据量，写完后重新建连，使建连耗时有足够样本 */
+    private static final long BYTES_PER_CONNECTION = 64L * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        int streams = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Path dir = Paths.get(args.length > 2 ? args[2] : ".").toAbsolutePath();
+        String xray = args.length > 3 ? args[3] : dir.resolve("xray").toString();
+
+        String link = Files.readString(dir.resolve("link.txt")).trim();
+        AtomicLong received = new AtomicLong();
+        ServerSocket sink = startSink(received);
+        int clientPort = freePort();
+
+        Path clientConfig = Files.createTempFile("xray-client", ".json");
+        JsonObject outbound = outbound(link);
+        Files.writeString(clientConfig, GSON.toJson(clientConfig(clientPort, sink.getLocalPort(), outbound)));
+        int serverPort = outbound.getAsJsonObject("settings").getAsJsonArray("vnext")
+            .get(0).getAsJsonObject().get("port").getAsInt();
+
+        Process server = start(xray, dir.resolve("c.json"), dir);
+        Process client = start(xray, clientConfig, dir);
+        try {
+            waitForPort(serverPort);
+            waitForPort(clientPort);
+            System.out.println("🧪 " + link.substring(0, link.indexOf("://")) + " streams=" + streams
+                + " duration=" + seconds + "s");
+
+            Duration serverCpu = cpu(server);
+            Duration clientCpu = cpu(client);
+            long[][] setups = new long[streams][];
+            long start = System.nanoTime();
+            long bytes = drive(clientPort, streams, seconds, received, setups);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            serverCpu = cpu(server).minus(serverCpu);
+            clientCpu = cpu(client).minus(clientCpu);
+
+            long[] all = Arrays.stream(setups).flatMapToLong(Arrays::stream).sorted().toArray();
+            double gigabytes = bytes / 1e9;
+            System.out.printf("📊 throughput=%.2f Gbps (%.1f MB in %.1fs)%n", bytes * 8 / elapsed / 1e9,
+                bytes / 1e6, elapsed);
+            System.out.printf("⏱️  setup p50=%.2fms p99=%.2fms (%d connections)%n",
+                percentile(all, 0.50), percentile(all, 0.99), all.length);
+            System.out.printf("🔥 cpu per GB: server=%.2fs client=%.2fs%n",
+                serverCpu.toMillis() / 1000.0 / gigabytes, clientCpu.toMillis() / 1000.0 / gigabytes);
+        } finally {
+            server.destroy();
+            client.destroy();
+            sink.close();
+            Files.deleteIfExists(clientConfig);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * 由分享链接生成客户端出站（地址改为本机）
+     */
+    static JsonObject outbound(String link) {
+        JsonObject outbound = new JsonObject();
+        JsonObject user = new JsonObject();
+        JsonObject server = new JsonObject();
+        server.addProperty("address", "127.0.0.1");
+        JsonObject streamSettings = new JsonObject();
+        streamSettings.addProperty("network", "tcp");
+
+        if (link.startsWith("vless://")) {
+            URI uri = URI.create(link);
+            Map<String, String> query = query(uri.getRawQuery());
+            outbound.addProperty("protocol", "vless");
+            server.addProperty("port", uri.getPort());
+            user.addProperty("id", uri.getUserInfo());
+            user.addProperty("encryption", "none");
+            user.addProperty("flow", query.getOrDefault("flow", ""));
+
+            streamSettings.addProperty("security", "reality");
+            JsonObject reality = new JsonObject();
+            reality.addProperty("serverName", query.get("sni"));
+            reality.addProperty("fingerprint", query.getOrDefault("fp", "chrome"));
+            reality.addProperty("publicKey", query.get("pbk"));
+            reality.addProperty("shortId", query.getOrDefault("sid", ""));
+            streamSettings.add("realitySettings", reality);
+        } else if (link.startsWith("vmess://")) {
+            JsonObject vmess = JsonParser.parseString(new String(
+                Base64.getDecoder().decode(link.substring("vmess://".length())),
+                StandardCharsets.UTF_8)).getAsJsonObject();
+            outbound.addProperty("protocol", "vmess");
+            server.addProperty("port", Integer.parseInt(vmess.get("port").getAsString()));
+            user.addProperty("id", vmess.get("id").getAsString());
+            user.addProperty("alterId", Integer.parseInt(vmess.get("aid").getAsString()));
+            user.addProperty("security", "auto");
+
+            if ("http".equals(vmess.get("type").getAsString())) {
+                JsonObject header = new JsonObject();
+                header.addProperty("type", "http");
+                JsonObject tcpSettings = new JsonObject();
+                tcpSettings.add("header", header);
+                streamSettings.add("tcpSettings", tcpSettings);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported link: " + link);
+        }
+
+        JsonArray users = new JsonArray();
+        users.add(user);
+        server.add("users", users);
+        JsonArray vnext = new JsonArray();
+        vnext.add(server);
+        JsonObject settings = new JsonObject();
+        settings.add("vnext", vnext);
+        outbound.add("settings", settings);
+        outbound.add("streamSettings", streamSettings);
+        return outbound;
+    }
+
+    /**
+     * dokodemo-door 入站 -> 代理出站（到本机服务端）-> 服务端 freedom -> 接收端
+     */
+    private static JsonObject clientConfig(int port, int sinkPort, JsonObject outbound) {
+        JsonObject config = new JsonObject();
+        JsonObject log = new JsonObject();
+        log.addProperty("loglevel", "none");
+        config.add("log", log);
+
+        JsonObject inbound = new JsonObject();
+        inbound.addProperty("listen", "127.0.0.1");
+        inbound.addProperty("port", port);
+        inbound.addProperty("protocol", "dokodemo-door");
+        JsonObject settings = new JsonObject();
+        settings.addProperty("address", "127.0.0.1");
+        settings.addProperty("port", sinkPort);
+        settings.addProperty("network", "tcp");
+        inbound.add("settings", settings);
+        JsonArray inbounds = new JsonArray();
+        inbounds.add(inbound);
+        config.add("inbounds", inbounds);
+
+        JsonArray outbounds = new JsonArray();
+        outbounds.add(outbound);
+        config.add("outbounds", outbounds);
+        return config;
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> params = new HashMap<>();
+        if (raw == null) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static Process start(String xray, Path config, Path dir) throws IOException {
+        return new ProcessBuilder(xray, "run", "-c", config.toString())
+            .directory(dir.toFile())
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+    }
+
+    private static Duration cpu(Process process) {
+        return process.info().totalCpuDuration().orElse(Duration.ZERO);
+    }
+
+    /**
+     * 接收端：回显每个连接的第一个字节（用于测量建连耗时），其余数据读取后丢弃
+     */
+    private static ServerSocket startSink(AtomicLong received) throws IOException {
+        ServerSocket server = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread reader = new Thread(() -> {
+                        byte[] buffer = new byte[1 << 16];
+                        try (socket; InputStream in = socket.getInputStream()) {
+                            int first = in.read();
+                            if (first < 0) {
+                                return;
+                            }
+                            socket.getOutputStream().write(first);
+                            int n;
+                            while ((n = in.read(buffer)) > 0) {
+                                received.addAndGet(n);
+                            }
+                        } catch (IOException e) {
+                            // 连接关闭
+                        }
+                    }, "bench-sink");
+                    reader.setDaemon(true);
+                    reader.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "bench-sink-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+
+    private static long drive(int port, int streams, int seconds, AtomicLong received, long[][] setups)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(streams);
+        for (int i = 0; i < streams; i++) {
+            final int id = i;
+            Thread t = new Thread(() -> {
+                byte[] chunk = new byte[1 << 16];
+                long[] samples = new long[1024];
+                int n = 0;
+                try {
+                    while (System.nanoTime() < deadline) {
+                        try (Socket socket = new Socket()) {
+                            long start = System.nanoTime();
+                            socket.setTcpNoDelay(true);
+                            socket.connect(new InetSocketAddress("127.0.0.1", port));
+                            OutputStream out = socket.getOutputStream();
+                            out.write(1);
+                            if (socket.getInputStream().read() < 0) {
+                                throw new IOException("Connection closed before echo");
+                            }
+                            if (n == samples.length) {
+                                samples = Arrays.copyOf(samples, n * 2);
+                            }
+                            samples[n++] = System.nanoTime() - start;
+
+                            long sent = 0;
+                            while (sent < BYTES_PER_CONNECTION && System.nanoTime() < deadline) {
+                                out.write(chunk);
+                                sent += chunk.length;
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("⚠️  " + e.getMessage());
+                } finally {
+                    setups[id] = Arrays.copyOf(samples, n);
+                    done.countDown();
+                }
+            }, "bench-stream-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        long start = received.get();
+        done.await(seconds + 10L, TimeUnit.SECONDS);
+        return received.get() - start;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static void waitForPort(int port) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 200);
+                return;
+            } catch (IOException e) {
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+        }
+        throw new IllegalStateException("Xray did not listen on port " + port);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.proxy.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.proxy.common.XrayWorkers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重启期间的拒绝连接统计：普通重启 vs 交接模式
+ * 本机 dokodemo-door 入站转发到回显服务，多个客户端不断建立短连接（写入、停留、读回），
+ * 期间多次调用 XrayWorkers.restart()，分别统计成功、被拒绝（端口无人监听）和建立后中断的连接数
+ *
+ * 用法：mvn -Pjmh test-compile exec:java -Dexec.mainClass=com.proxy.bench.HandoffBench -Dexec.args="[xray路径] [重启次数] [客户端数] [停留ms]"
+ */
+public class HandoffBench {
+
+    private static final Gson GSON = new Gson();
+
+    public static void main(String[] args) throws Exception {
+        String xray = args.length > 0 ? args[0] : "./xray";
+        int restarts = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int holdMillis = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        ServerSocket echo = startEcho();
+        Path dir = Files.createTempDirectory("xray-handoff");
+        System.out.println("🧪 xray=" + xray + " restarts=" + restarts + " clients=" + clients + " hold=" + holdMillis + "ms");
+
+        for (boolean handoff : new boolean[] {false, true}) {
+            int proxyPort = freePort();
+            XrayWorkers group = new XrayWorkers(1, false, dir, handoff, 5000);
+            group.render(config(proxyPort, echo.getLocalPort()), 0,
+                (json, target) -> Files.writeString(target, GSON.toJson(json)));
+
+            Thread runner = new Thread(() -> {
+                try {
+                    group.run(xray, proxyPort, 0);
+                } catch (InterruptedException e) {
+                    group.stop();
+                }
+            }, "bench-workers");
+            runner.setDaemon(true);
+            runner.start();
+            waitForPort(proxyPort);
+
+            AtomicLong ok = new AtomicLong();
+            AtomicLong refused = new AtomicLong();
+            AtomicLong broken = new AtomicLong();
+            AtomicLong deadline = new AtomicLong(Long.MAX_VALUE);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                Thread t = new Thread(() -> {
+                    while (System.nanoTime() < deadline.get()) {
+                        request(proxyPort, holdMillis, ok, refused, broken);
+                    }
+                }, "bench-client-" + i);
+                t.setDaemon(true);
+                threads.add(t);
+                t.start();
+            }
+
+            // 预热后每1.5秒重启一次
+            TimeUnit.MILLISECONDS.sleep(1000);
+            int failed = 0;
+            for (int i = 0; i < restarts; i++) {
+                if (!group.restart()) {
+                    failed++;
+                }
+                TimeUnit.MILLISECONDS.sleep(1500);
+            }
+            deadline.set(System.nanoTime());
+            for (Thread t : threads) {
+                t.join(5000);
+            }
+
+            System.out.printf("📊 mode=%s ok=%d refused=%d broken=%d failedRestarts=%d %s%n",
+                handoff ? "handoff" : "restart", ok.get(), refused.get(), broken.get(), failed,
+                group.getSupervisors().get(0).stats());
+            group.stop();
+            runner.join(5000);
+        }
+        echo.close();
+    }
+
+    /**
+     * 一次请求：连接、写入、停留、再写入、读回全部回显
+     */
+    private static void request(int port, int holdMillis, AtomicLong ok, AtomicLong refused, AtomicLong broken) {
+        byte[] payload = new byte[32];
+        boolean connected = false;
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("127.0.0.1", port), 1000);
+            connected = true;
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            out.write(payload);
+            TimeUnit.MILLISECONDS.sleep(holdMillis);
+            out.write(payload);
+            int read = 0;
+            while (read < payload.length * 2) {
+                int n = in.read(new byte[payload.length * 2 - read]);
+                if (n < 0) {
+                    throw new IOException("closed after " + read + " bytes");
+                }
+                read += n;
+            }
+            ok.incrementAndGet();
+        } catch (ConnectException e) {
+            refused.incrementAndGet();
+            sleepQuietly(10);
+        } catch (IOException e) {
+            (connected ? broken : refused).incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * dokodemo-door 入站 -> freedom 出站 -> 回显服务
+     */
+    private static JsonObject config(int port, int echoPort) {
+        JsonObject config = new JsonObject();
+        JsonObject log = new JsonObject();
+        log.addProperty("loglevel", "none");
+        config.add("log", log);
+
+        JsonObject inbound = new JsonObject();
+        inbound.addProperty("listen", "127.0.0.1");
+        inbound.addProperty("port", port);
+        inbound.addProperty("protocol", "dokodemo-door");
+        JsonObject settings = new JsonObject();
+        settings.addProperty("address", "127.0.0.1");
+        settings.addProperty("port", echoPort);
+        settings.addProperty("network", "tcp");
+        inbound.add("settings", settings);
+        inbound.addProperty("tag", "bench");
+        JsonArray inbounds = new JsonArray();
+        inbounds.add(inbound);
+        config.add("inbounds", inbounds);
+
+        JsonObject outbound = new JsonObject();
+        outbound.addProperty("protocol", "freedom");
+        JsonArray outbounds = new JsonArray();
+        outbounds.add(outbound);
+        config.add("outbounds", outbounds);
+        return config;
+    }
+
+    private static ServerSocket startEcho() throws IOException {
+        ServerSocket server = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread echo = new Thread(() -> {
+                        byte[] buffer = new byte[8192];
+                        try (socket; InputStream in = socket.getInputStream(); OutputStream out = socket.getOutputStream()) {
+                            int n;
+                            while ((n = in.read(buffer)) > 0) {
+                                out.write(buffer, 0, n);
+                            }
+                        } catch (IOException e) {
+                            // 连接关闭
+                        }
+                    }, "bench-echo");
+                    echo.setDaemon(true);
+                    echo.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "bench-echo-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+
+    private static void waitForPort(int port) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 200);
+                return;
+            } catch (IOException e) {
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+        }
+        throw new IllegalStateException("Xray did not listen on port " + port);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.proxy.bench;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.proxy.common.NodeHeartbeat;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 节点心跳演练：本地模拟管理API和一个节点端口（保持若干已建立连接），
+ * 启动多个心跳，统计到达分布（检查抖动是否错开请求）、连接数和accept延迟，最后逐个注销
+ *
+ * 用法：mvn -Pjmh test-compile exec:java -Dexec.mainClass=com.proxy.bench.HeartbeatMockApi -Dexec.args="[节点数] [间隔秒] [运行秒] [保持连接数]"
+ */
+public class HeartbeatMockApi {
+
+    public static void main(String[] args) throws Exception {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int intervalSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int held = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        // 节点端口替身：接受连接并保持
+        ServerSocket node = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        List<Socket> accepted = new ArrayList<>();
+        Thread acceptor = new Thread(() -> {
+            while (!node.isClosed()) {
+                try {
+                    Socket socket = node.accept();
+                    synchronized (accepted) {
+                        accepted.add(socket);
+                    }
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "node-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        List<Socket> clients = new ArrayList<>();
+        for (int i = 0; i < held; i++) {
+            clients.add(new Socket(InetAddress.getLoopbackAddress(), node.getLocalPort()));
+        }
+
+        // 管理API替身
+        long start = System.nanoTime();
+        ConcurrentLinkedQueue<Long> arrivals = new ConcurrentLinkedQueue<>();
+        Map<String, AtomicInteger> perNode = new ConcurrentHashMap<>();
+        AtomicInteger deregistered = new AtomicInteger();
+        AtomicReference<String> lastBody = new AtomicReference<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "mock-api");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.createContext("/nodes/heartbeat", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            if (exchange.getRequestMethod().equals("POST")) {
+                arrivals.add((System.nanoTime() - start) / 1_000_000);
+                JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+                perNode.computeIfAbsent(json.get("name").getAsString(), k -> new AtomicInteger()).incrementAndGet();
+                lastBody.set(body);
+                reply(exchange, 204);
+            } else {
+                reply(exchange, 405);
+            }
+        });
+        // 注销：DELETE /nodes/{节点名}
+        server.createContext("/nodes/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (exchange.getRequestMethod().equals("DELETE") && path.lastIndexOf('/') == "/nodes".length()) {
+                deregistered.incrementAndGet();
+                reply(exchange, 204);
+            } else {
+                reply(exchange, 404);
+            }
+        });
+        server.start();
+        String apiUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/nodes";
+        String url = apiUrl + "/heartbeat";
+        System.out.println("🧪 " + nodes + " nodes, interval " + intervalSeconds + "s, " + seconds + "s, "
+            + held + " held connections on port " + node.getLocalPort());
+
+        // 所有心跳共用一个客户端
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        List<NodeHeartbeat> heartbeats = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            heartbeats.add(new NodeHeartbeat(client, url, apiUrl, "node-" + i, node.getLocalPort(), null,
+                intervalSeconds * 1000L, 0.2, Duration.ofSeconds(5)).start());
+        }
+        Thread.sleep(seconds * 1000L);
+
+        // 到达分布：按100ms分桶，最大桶与均匀分布的期望相比
+        int buckets = seconds * 10;
+        int[] histogram = new int[buckets];
+        int total = 0;
+        for (long millis : arrivals) {
+            if (millis / 100 < buckets) {
+                histogram[(int) (millis / 100)]++;
+                total++;
+            }
+        }
+        int peak = 0;
+        for (int count : histogram) {
+            peak = Math.max(peak, count);
+        }
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (AtomicInteger count : perNode.values()) {
+            min = Math.min(min, count.get());
+            max = Math.max(max, count.get());
+        }
+        System.out.printf("📊 %d heartbeats from %d nodes (%d-%d each), peak %d per 100ms (uniform %.1f)%n",
+            total, perNode.size(), min == Integer.MAX_VALUE ? 0 : min, max, peak, total / (double) buckets);
+        System.out.println("📄 Sample: " + lastBody.get());
+
+        for (NodeHeartbeat heartbeat : heartbeats) {
+            heartbeat.deregister();
+        }
+        System.out.println((deregistered.get() == nodes ? "✅" : "❌") + " Deregistered "
+            + deregistered.get() + "/" + nodes);
+
+        for (Socket socket : clients) {
+            socket.close();
+        }
+        node.close();
+        server.stop(0);
+    }
+
+    private static void reply(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+        // 无响应体
+        exchange.getResponseBody().close();
+    }
+}
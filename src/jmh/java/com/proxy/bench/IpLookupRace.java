@@ -0,0 +1,104 @@
+package com.proxy.bench;
+
+import com.proxy.common.PublicIpResolver;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+/**
+ * 公网IP查询演练：本地模拟一个被屏蔽（接受连接但永不响应）的查询地址和一个正常地址，
+ * 对比并发查询、缓存命中的耗时
+ *
+ * 用法：mvn -Pjmh test-compile exec:java -Dexec.mainClass=com.proxy.bench.IpLookupRace -Dexec.args="[正常地址延迟ms]"
+ */
+public class IpLookupRace {
+
+    public static void main(String[] args) throws Exception {
+        int latencyMillis = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+
+        // 被屏蔽的地址：完成TCP握手后不再响应
+        ServerSocket blackhole = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        List<Socket> held = new CopyOnWriteArrayList<>();
+        Thread acceptor = new Thread(() -> {
+            while (!blackhole.isClosed()) {
+                try {
+                    held.add(blackhole.accept());
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "blackhole");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                exchange.getRequestBody().close();
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = "203.0.113.10\n".getBytes(StandardCharsets.US_ASCII);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+
+        // 被屏蔽的地址排在前面，与默认配置中 ipify 失效的情况相同
+        List<URI> endpoints = List.of(
+            URI.create("http://127.0.0.1:" + blackhole.getLocalPort() + "/"),
+            URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/"));
+        Path cache = Files.createTempFile("server-ip", ".txt");
+        Files.delete(cache);
+
+        try {
+            PublicIpResolver resolver = new PublicIpResolver(endpoints, cache, Duration.ofHours(1),
+                Duration.ofSeconds(3), false);
+
+            long start = System.nanoTime();
+            String ip = resolver.resolve();
+            System.out.printf("🏁 Race (blackholed endpoint first): %s in %d ms%n", ip, elapsed(start));
+
+            start = System.nanoTime();
+            ip = resolver.resolve();
+            System.out.printf("💾 Cached: %s in %d ms%n", ip, elapsed(start));
+
+            PublicIpResolver blackholed = new PublicIpResolver(endpoints.subList(0, 1), null,
+                Duration.ZERO, Duration.ofSeconds(3), false);
+            start = System.nanoTime();
+            ip = blackholed.resolve();
+            System.out.printf("🕳️  Blackholed only: %s in %d ms (timeout bound)%n", ip, elapsed(start));
+        } finally {
+            Files.deleteIfExists(cache);
+            server.stop(0);
+            blackhole.close();
+            for (Socket socket : held) {
+                socket.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    private static long elapsed(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
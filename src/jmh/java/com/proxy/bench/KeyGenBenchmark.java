@@ -0,0 +1,95 @@
+package com.proxy.bench;
+
+import com.proxy.common.X25519Keys;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Reality密钥生成基准：进程内 X25519 vs fork ./xray x25519
+ *
+ * 用法：mvn -Pjmh test-compile exec:java -Dexec.mainClass=com.proxy.bench.KeyGenBenchmark -Dexec.args="[次数] [xray路径]"
+ */
+public class KeyGenBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        String xray = args.length > 1 ? args[1] : "./xray";
+
+        // 正确性：公钥必须能由私钥重新推导
+        X25519Keys sample = X25519Keys.generate();
+        if (!sample.getPublicKey().equals(X25519Keys.derivePublicKey(sample.getPrivateKey()))) {
+            throw new IllegalStateException("In-process public key does not match derived key");
+        }
+
+        boolean hasXray = Files.isExecutable(Paths.get(xray));
+        if (hasXray) {
+            // 由xray自己从我们的私钥推导公钥，确认格式被Xray接受
+            String xrayPublic = forkPublicKey(xray, sample.getPrivateKey());
+            System.out.println("🔍 Xray accepts in-process key: " + sample.getPublicKey().equals(xrayPublic));
+        }
+
+        // 预热
+        for (int i = 0; i < 1000; i++) {
+            X25519Keys.generate();
+        }
+
+        long[] inProcess = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            X25519Keys.generate();
+            inProcess[i] = System.nanoTime() - start;
+        }
+        print("in-process", inProcess);
+
+        if (!hasXray) {
+            System.out.println("⏭️  " + xray + " not found, skipping fork benchmark");
+            return;
+        }
+
+        int forkIterations = Math.min(iterations, 50);
+        long[] fork = new long[forkIterations];
+        for (int i = 0; i < forkIterations; i++) {
+            long start = System.nanoTime();
+            forkPublicKey(xray, null);
+            fork[i] = System.nanoTime() - start;
+        }
+        print("fork xray", fork);
+    }
+
+    /**
+     * 调用 xray x25519 [-i 私钥]，返回输出中的公钥
+     */
+    private static String forkPublicKey(String xray, String privateKey) throws Exception {
+        ProcessBuilder pb = privateKey == null
+            ? new ProcessBuilder(xray, "x25519")
+            : new ProcessBuilder(xray, "x25519", "-i", privateKey);
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+
+        String publicKey = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains("Public key:")) {
+                    publicKey = line.split(":\\s*")[1].trim();
+                }
+            }
+        }
+        process.waitFor();
+        return publicKey;
+    }
+
+    private static void print(String name, long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        double p50 = sorted[sorted.length / 2] / 1_000.0;
+        double p99 = sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))] / 1_000.0;
+        double mean = Arrays.stream(sorted).average().orElse(0) / 1_000.0;
+        System.out.println(String.format("⏱️  %-10s n=%-5d mean=%10.1f µs  p50=%10.1f µs  p99=%10.1f µs",
+            name, samples.length, mean, p50, p99));
+    }
+}
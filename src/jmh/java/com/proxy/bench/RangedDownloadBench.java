@@ -0,0 +1,175 @@
+package com.proxy.bench;
+
+import com.proxy.common.RangedDownloader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 分段下载演练：本地启动支持 Range 的HTTP替身，每个连接限速并注入首包延迟，依次检查：
+ * 单连接与多连接耗时、不支持 Range 时的退化、中断后续传只补齐缺失部分、停滞连接的重连，
+ * 以及每次下载结果的SHA-256
+ *
+ * 用法：mvn -Pjmh test-compile exec:java -Dexec.mainClass=com.proxy.bench.RangedDownloadBench -Dexec.args="[大小MB] [每连接KB/s] [延迟ms]"
+ */
+public class RangedDownloadBench {
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final String ETAG = "\"stand-in-1\"";
+
+    /** 不支持 Range（忽略请求头，返回200） */
+    private static volatile boolean noRanges;
+    /** 剩余字节预算，用完后断开所有连接（模拟进程被杀或网络中断） */
+    private static final AtomicLong budget = new AtomicLong(Long.MAX_VALUE);
+    /** 下一个正文响应在中途停顿的毫秒数（只生效一次） */
+    private static final AtomicLong stallOnce = new AtomicLong();
+    private static final AtomicInteger requests = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int kbPerSecond = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        int latencyMillis = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        byte[] content = new byte[sizeMb * 1024 * 1024];
+        ThreadLocalRandom.current().nextBytes(content);
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stand-in");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.createContext("/xray.zip", exchange -> serve(exchange, content, kbPerSecond, latencyMillis));
+        server.start();
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/xray.zip");
+        System.out.println("🧪 " + sizeMb + " MB, " + kbPerSecond + " KB/s per connection, " + latencyMillis + " ms latency");
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        Path dir = Files.createTempDirectory("ranged-download");
+        Path dest = dir.resolve("xray.zip");
+        long chunk = 1024 * 1024;
+        try {
+            run("1 connection", new RangedDownloader(client, 1, chunk, Duration.ofSeconds(5), 3), uri, dest, expected);
+            run("4 connections", new RangedDownloader(client, 4, chunk, Duration.ofSeconds(5), 3), uri, dest, expected);
+            run("8 connections", new RangedDownloader(client, 8, chunk, Duration.ofSeconds(5), 3), uri, dest, expected);
+
+            noRanges = true;
+            run("no Range support", new RangedDownloader(client, 4, chunk, Duration.ofSeconds(5), 3), uri, dest, expected);
+            noRanges = false;
+
+            // 中断：传输约40%后断开，且不重试，保留部分文件
+            budget.set(content.length * 2L / 5);
+            try {
+                new RangedDownloader(client, 4, chunk, Duration.ofSeconds(5), 1).download(uri, dest);
+                System.out.println("❌ Interrupted download unexpectedly succeeded");
+            } catch (IOException e) {
+                System.out.println("✂️  Interrupted as planned: " + e.getMessage());
+            }
+            budget.set(Long.MAX_VALUE);
+            run("resume", new RangedDownloader(client, 4, chunk, Duration.ofSeconds(5), 3), uri, dest, expected);
+
+            // 停滞：一个响应在中途停顿3秒，1秒停滞超时后应重连续传
+            stallOnce.set(3000);
+            run("stalled connection", new RangedDownloader(client, 4, chunk, Duration.ofSeconds(1), 3), uri, dest, expected);
+        } finally {
+            server.stop(0);
+            Files.deleteIfExists(dest);
+            Files.deleteIfExists(dest.resolveSibling(dest.getFileName() + ".progress"));
+            Files.deleteIfExists(dir);
+        }
+        System.exit(0);
+    }
+
+    private static void run(String name, RangedDownloader downloader, URI uri, Path dest, String expected)
+            throws Exception {
+        requests.set(0);
+        long start = System.nanoTime();
+        long transferred = downloader.download(uri, dest);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(Files.readAllBytes(dest));
+        boolean ok = HexFormat.of().formatHex(digest.digest()).equals(expected);
+        System.out.printf("📊 %-20s %6d ms  %6.1f MB/s  %5d KB transferred  %3d requests  %s%n",
+            name, millis, transferred / 1048576.0 / Math.max(1, millis) * 1000, transferred / 1024,
+            requests.get(), ok ? "✅ SHA-256 ok" : "❌ SHA-256 mismatch");
+        Files.delete(dest);
+    }
+
+    /**
+     * 单段 Range（bytes=a-b 或 bytes=a-），If-Range 与 ETag 比较；每个连接按 kbPerSecond 限速
+     */
+    private static void serve(HttpExchange exchange, byte[] content, int kbPerSecond, int latencyMillis)
+            throws IOException {
+        requests.incrementAndGet();
+        sleep(latencyMillis);
+        long from = 0;
+        long to = content.length - 1;
+        int status = 200;
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        Matcher m = range != null ? RANGE.matcher(range) : null;
+        if (!noRanges && m != null && m.matches() && (ifRange == null || ifRange.equals(ETAG))) {
+            from = Long.parseLong(m.group(1));
+            if (!m.group(2).isEmpty()) {
+                to = Math.min(to, Long.parseLong(m.group(2)));
+            }
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + content.length);
+        }
+        if (!noRanges) {
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            exchange.getResponseHeaders().set("ETag", ETAG);
+        }
+
+        long length = to - from + 1;
+        exchange.sendResponseHeaders(status, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            int slice = Math.max(1024, kbPerSecond * 1024 / 20);
+            long stall = length > 1 ? stallOnce.getAndSet(0) : 0;
+            for (long pos = from; pos <= to; pos += slice) {
+                int n = (int) Math.min(slice, to - pos + 1);
+                if (budget.addAndGet(-n) < 0) {
+                    // 预算用完：不发完就断开
+                    exchange.close();
+                    return;
+                }
+                out.write(Arrays.copyOfRange(content, (int) pos, (int) pos + n));
+                out.flush();
+                if (stall > 0 && pos > from) {
+                    sleep(stall);
+                    stall = 0;
+                }
+                sleep(n * 1000L / (kbPerSecond * 1024L));
+            }
+        } catch (IOException e) {
+            // 客户端断开（停滞重连）
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
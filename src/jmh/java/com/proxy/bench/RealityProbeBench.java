@@ -0,0 +1,123 @@
+package com.proxy.bench;
+
+import com.proxy.common.RealityDestProber;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reality目标测速演练：本地启动多个 TLS 1.3 替身站点，各自在握手前注入不同延迟，
+ * 外加一个只支持 TLS 1.2 的站点，检查排名和淘汰是否正确
+ *
+ * 用法：mvn -Pjmh test-compile exec:java -Dexec.mainClass=com.proxy.bench.RealityProbeBench -Dexec.args="[延迟ms,延迟ms,...]"
+ * 需要 PATH 中有 keytool（JDK自带），用于生成自签名证书
+ */
+public class RealityProbeBench {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    public static void main(String[] args) throws Exception {
+        String[] delays = (args.length > 0 ? args[0] : "40,5,20").split(",");
+
+        Path dir = Files.createTempDirectory("reality-probe");
+        Path keystore = dir.resolve("stand-in.p12");
+        Process keytool = new ProcessBuilder("keytool", "-genkeypair", "-alias", "stand-in",
+            "-keyalg", "EC", "-groupname", "secp256r1", "-dname", "CN=localhost",
+            "-ext", "SAN=dns:localhost", "-validity", "1", "-storetype", "PKCS12",
+            "-keystore", keystore.toString(), "-storepass", new String(PASSWORD))
+            .inheritIO()
+            .start();
+        if (keytool.waitFor() != 0) {
+            throw new IOException("keytool failed");
+        }
+
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keystore)) {
+            store.load(in, PASSWORD);
+        }
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(store, PASSWORD);
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(store);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+
+        List<SSLServerSocket> servers = new ArrayList<>();
+        List<String> candidates = new ArrayList<>();
+        for (String delay : delays) {
+            SSLServerSocket server = standIn(context, Integer.parseInt(delay.trim()), "TLSv1.3");
+            servers.add(server);
+            candidates.add("localhost:" + server.getLocalPort());
+            System.out.println("🧪 localhost:" + server.getLocalPort() + " delay " + delay.trim() + "ms");
+        }
+        SSLServerSocket legacy = standIn(context, 0, "TLSv1.2");
+        servers.add(legacy);
+        candidates.add("localhost:" + legacy.getLocalPort());
+        System.out.println("🧪 localhost:" + legacy.getLocalPort() + " TLS 1.2 only");
+
+        try {
+            RealityDestProber prober = new RealityDestProber(candidates, 7, Duration.ofSeconds(2),
+                context.getSocketFactory());
+            long start = System.nanoTime();
+            List<RealityDestProber.Result> ranking = prober.probe();
+            System.out.printf("📶 Probed %d candidates in %d ms%n", candidates.size(),
+                (System.nanoTime() - start) / 1_000_000);
+            RealityDestProber.printRanking(ranking);
+            System.out.println("🏆 Best: " + RealityDestProber.best(ranking));
+        } finally {
+            for (SSLServerSocket server : servers) {
+                server.close();
+            }
+            Files.deleteIfExists(keystore);
+            Files.deleteIfExists(dir);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * TLS替身站点：每个连接在握手前等待 delayMillis（模拟网络距离）
+     */
+    private static SSLServerSocket standIn(SSLContext context, int delayMillis, String protocol) throws IOException {
+        SSLServerSocket server = (SSLServerSocket) context.getServerSocketFactory()
+            .createServerSocket(0, 64, InetAddress.getLoopbackAddress());
+        SSLParameters parameters = server.getSSLParameters();
+        parameters.setProtocols(new String[] {protocol});
+        server.setSSLParameters(parameters);
+
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    SSLSocket socket = (SSLSocket) server.accept();
+                    Thread handler = new Thread(() -> {
+                        try (socket) {
+                            Thread.sleep(delayMillis);
+                            socket.startHandshake();
+                        } catch (IOException | InterruptedException e) {
+                            // 握手失败（如协议不匹配）由客户端统计
+                        }
+                    });
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "stand-in-" + server.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+}
@@ -0,0 +1,104 @@
+package com.proxy.bench;
+
+import com.proxy.common.NodeRegistrar;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 节点注册客户端演练：本地模拟管理API，按比例返回503并注入延迟，统计最终成功数和请求数
+ *
+ * 用法：mvn -Pjmh test-compile exec:java -Dexec.mainClass=com.proxy.bench.RegistrationMockApi -Dexec.args="[节点数] [失败率0-1] [延迟ms] [batch|single]"
+ */
+public class RegistrationMockApi {
+
+    public static void main(String[] args) throws Exception {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        double failureRate = args.length > 1 ? Double.parseDouble(args[1]) : 0.3;
+        int latencyMillis = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        boolean batch = args.length <= 3 || "batch".equals(args[3]);
+
+        AtomicInteger requests = new AtomicInteger();
+        AtomicInteger injected = new AtomicInteger();
+        AtomicInteger batches = new AtomicInteger();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "mock-api");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.createContext("/nodes", exchange -> {
+            requests.incrementAndGet();
+            if (exchange.getRequestURI().getPath().endsWith("/batch")) {
+                batches.incrementAndGet();
+            }
+            exchange.getRequestBody().readAllBytes();
+            sleep(ThreadLocalRandom.current().nextInt(latencyMillis + 1));
+            if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+                injected.incrementAndGet();
+                reply(exchange, 503, "{\"error\":\"injected\"}");
+            } else {
+                reply(exchange, 201, "{\"ok\":true}");
+            }
+        });
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/nodes";
+
+        Path outbox = Files.createTempFile("node-outbox", ".jsonl");
+        Files.delete(outbox);
+        NodeRegistrar registrar = new NodeRegistrar(outbox, batch ? base + "/batch" : null,
+            6, 200, 100, 2_000, Duration.ofSeconds(5));
+
+        System.out.println("🧪 nodes=" + nodes + " failureRate=" + failureRate + " latency<=" + latencyMillis
+            + "ms mode=" + (batch ? "batch" : "single"));
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            results.add(registrar.register(new NodeRegistrar.Registration(base, "Node-" + i,
+                "vmess://node-" + i)));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(2, TimeUnit.MINUTES);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        long ok = results.stream().filter(CompletableFuture::join).count();
+        System.out.println("📊 registered=" + ok + "/" + nodes + " requests=" + requests.get()
+            + " (batch=" + batches.get() + ", injected failures=" + injected.get() + ") in " + elapsed + " ms");
+        System.out.println("📮 left in outbox=" + registrar.pending() + (Files.exists(outbox) ? " (" + outbox + ")" : ""));
+
+        server.stop(0);
+        Files.deleteIfExists(outbox);
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.proxy.bench;
+
+import com.proxy.common.StatsCollector;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * /metrics 渲染开销：大量用户时每次抓取的耗时和分配字节数
+ *
+ * 用法：mvn -Pjmh test-compile exec:java -Dexec.mainClass=com.proxy.bench.StatsScrapeBenchmark -Dexec.args="[用户数] [次数]"
+ */
+public class StatsScrapeBenchmark {
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        StatsCollector collector = new StatsCollector(List.of());
+        for (int i = 0; i < users; i++) {
+            String email = "user" + i + "@example.com";
+            collector.add("user>>>" + email + ">>>traffic>>>uplink", 1_000_000L + i);
+            collector.add("user>>>" + email + ">>>traffic>>>downlink", 50_000_000L + i);
+        }
+        collector.add("inbound>>>vless>>>traffic>>>uplink", 123);
+        collector.add("inbound>>>vless>>>traffic>>>downlink", 456);
+
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        // 预热
+        int length = 0;
+        for (int i = 0; i < iterations; i++) {
+            length = collector.render();
+        }
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            length = collector.render();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        System.out.println("👥 users=" + users + " body=" + length / 1024 + " KiB");
+        System.out.printf("📊 render=%.1f µs/scrape  allocated=%d B/scrape%n",
+            elapsed / 1000.0 / iterations, allocated / iterations);
+    }
+}
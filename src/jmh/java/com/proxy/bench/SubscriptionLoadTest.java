@@ -0,0 +1,142 @@
+package com.proxy.bench;
+
+import com.proxy.common.ProxyNode;
+import com.proxy.common.SubscriptionServer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订阅服务压测：大量keep-alive客户端带 If-None-Match 轮询本机订阅端点
+ *
+ * 用法：mvn -Pjmh test-compile exec:java -Dexec.mainClass=com.proxy.bench.SubscriptionLoadTest -Dexec.args="[并发连接数] [秒数]"
+ */
+public class SubscriptionLoadTest {
+
+    private static final String PATH = "/0123456789abcdef0123456789abcdef";
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        String link = "vless://9afd1229-b893-40c1-84dd-51e7ce204913@203.0.113.10:20041?encryption=none"
+            + "&flow=xtls-rprx-vision&security=reality&sni=www.microsoft.com&fp=chrome"
+            + "&pbk=O6Gi6Nvjmz7gc4B9goZDQdGlnbDgcIPVJBRq-xrFFw4&sid=0123456789abcdef&type=tcp&headerType=none#VLESS-Reality";
+        SubscriptionServer server = new SubscriptionServer(0, PATH, List.of(ProxyNode.vless("VLESS-Reality",
+            "203.0.113.10", 20041, "9afd1229-b893-40c1-84dd-51e7ce204913", "www.microsoft.com",
+            "O6Gi6Nvjmz7gc4B9goZDQdGlnbDgcIPVJBRq-xrFFw4", "0123456789abcdef", link)));
+        server.start();
+        int port = server.getPort();
+
+        String etag = fetchEtag(port);
+        System.out.println("🏷️  ETag: " + etag);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicLong requests = new AtomicLong();
+        AtomicLong notModified = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[clients][];
+        CountDownLatch done = new CountDownLatch(clients);
+
+        for (int i = 0; i < clients; i++) {
+            final int id = i;
+            Thread t = new Thread(() -> {
+                long[] samples = new long[1 << 16];
+                int n = 0;
+                byte[] request = ("GET " + PATH + " HTTP/1.1\r\nHost: 127.0.0.1\r\nIf-None-Match: " + etag
+                    + "\r\nAccept-Encoding: gzip\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+                try (Socket socket = new Socket()) {
+                    socket.setTcpNoDelay(true);
+                    socket.connect(new InetSocketAddress("127.0.0.1", port));
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream();
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        out.write(request);
+                        out.flush();
+                        int status = readResponse(in);
+                        if (n < samples.length) {
+                            samples[n++] = System.nanoTime() - start;
+                        }
+                        requests.incrementAndGet();
+                        if (status == 304) {
+                            notModified.incrementAndGet();
+                        }
+                    }
+                } catch (IOException e) {
+                    errors.incrementAndGet();
+                } finally {
+                    latencies[id] = Arrays.copyOf(samples, n);
+                    done.countDown();
+                }
+            }, "load-" + i);
+            t.start();
+        }
+
+        done.await();
+        server.stop();
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.println(String.format("📊 clients=%d requests=%d (%.0f req/s) 304=%d errors=%d",
+            clients, requests.get(), requests.get() / (double) seconds, notModified.get(), errors.get()));
+        if (all.length > 0) {
+            System.out.println(String.format("⏱️  p50=%.1f µs  p99=%.1f µs  max=%.1f µs",
+                all[all.length / 2] / 1e3, all[(int) (all.length * 0.99)] / 1e3, all[all.length - 1] / 1e3));
+        }
+    }
+
+    private static String fetchEtag(int port) throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.getOutputStream().write(("GET " + PATH + " HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+            for (String line : response.split("\r\n")) {
+                if (line.toLowerCase().startsWith("etag:")) {
+                    return line.substring(5).trim();
+                }
+            }
+        }
+        throw new IOException("No ETag in response");
+    }
+
+    /**
+     * 读取一个HTTP响应（头部 + Content-Length指定的主体），返回状态码
+     */
+    private static int readResponse(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int status = -1;
+        int contentLength = 0;
+        while (true) {
+            int c = in.read();
+            if (c < 0) {
+                throw new IOException("Connection closed");
+            }
+            if (c == '\n') {
+                String header = line.toString().trim();
+                line.setLength(0);
+                if (header.isEmpty()) {
+                    break;
+                }
+                if (status < 0) {
+                    status = Integer.parseInt(header.split(" ")[1]);
+                } else if (header.toLowerCase().startsWith("content-length:")) {
+                    contentLength = Integer.parseInt(header.substring(15).trim());
+                }
+            } else {
+                line.append((char) c);
+            }
+        }
+        in.skipNBytes(contentLength);
+        return status;
+    }
+}
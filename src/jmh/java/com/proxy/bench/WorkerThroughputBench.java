@@ -0,0 +1,177 @@
+package com.proxy.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.proxy.common.XrayWorkers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单进程与多进程（SO_REUSEPORT）吞吐对比
+ * 本机 dokodemo-door 入站把流量转发到一个只读丢弃的接收端，多个连接同时写入，统计接收端吞吐
+ *
+ * 用法：mvn -Pjmh test-compile exec:java -Dexec.mainClass=com.proxy.bench.WorkerThroughputBench -Dexec.args="[xray路径] [进程数列表如1,4] [秒数] [连接数]"
+ */
+public class WorkerThroughputBench {
+
+    private static final Gson GSON = new Gson();
+
+    public static void main(String[] args) throws Exception {
+        String xray = args.length > 0 ? args[0] : "./xray";
+        String[] counts = (args.length > 1 ? args[1] : "1," + Runtime.getRuntime().availableProcessors()).split(",");
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int connections = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+
+        AtomicLong received = new AtomicLong();
+        ServerSocket sink = startSink(received);
+        int proxyPort = freePort();
+        Path dir = Files.createTempDirectory("xray-workers");
+
+        System.out.println("🧪 xray=" + xray + " connections=" + connections + " duration=" + seconds + "s");
+        for (String count : counts) {
+            int workers = Integer.parseInt(count.trim());
+            XrayWorkers group = new XrayWorkers(workers, false, dir);
+            group.render(config(proxyPort, sink.getLocalPort()), 0,
+                (json, target) -> Files.writeString(target, GSON.toJson(json)));
+
+            Thread runner = new Thread(() -> {
+                try {
+                    group.run(xray, proxyPort, 0);
+                } catch (InterruptedException e) {
+                    group.stop();
+                }
+            }, "bench-workers");
+            runner.setDaemon(true);
+            runner.start();
+            waitForPort(proxyPort);
+
+            received.set(0);
+            long bytes = drive(proxyPort, connections, seconds, received);
+            double mbps = bytes / (1024.0 * 1024.0) / seconds;
+            System.out.printf("📊 workers=%d throughput=%.1f MiB/s restarts=%d%n", workers, mbps,
+                group.getSupervisors().stream().mapToLong(s -> s.stats().getRestarts()).sum());
+
+            group.stop();
+            runner.join(5000);
+            TimeUnit.MILLISECONDS.sleep(500);
+        }
+        sink.close();
+    }
+
+    /**
+     * dokodemo-door 入站 -> freedom 出站 -> 接收端
+     */
+    private static JsonObject config(int port, int sinkPort) {
+        JsonObject config = new JsonObject();
+        JsonObject log = new JsonObject();
+        log.addProperty("loglevel", "none");
+        config.add("log", log);
+
+        JsonObject inbound = new JsonObject();
+        inbound.addProperty("listen", "127.0.0.1");
+        inbound.addProperty("port", port);
+        inbound.addProperty("protocol", "dokodemo-door");
+        JsonObject settings = new JsonObject();
+        settings.addProperty("address", "127.0.0.1");
+        settings.addProperty("port", sinkPort);
+        settings.addProperty("network", "tcp");
+        inbound.add("settings", settings);
+        inbound.addProperty("tag", "bench");
+        JsonArray inbounds = new JsonArray();
+        inbounds.add(inbound);
+        config.add("inbounds", inbounds);
+
+        JsonObject outbound = new JsonObject();
+        outbound.addProperty("protocol", "freedom");
+        JsonArray outbounds = new JsonArray();
+        outbounds.add(outbound);
+        config.add("outbounds", outbounds);
+        return config;
+    }
+
+    private static ServerSocket startSink(AtomicLong received) throws IOException {
+        ServerSocket server = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread reader = new Thread(() -> {
+                        byte[] buffer = new byte[1 << 16];
+                        try (socket; InputStream in = socket.getInputStream()) {
+                            int n;
+                            while ((n = in.read(buffer)) > 0) {
+                                received.addAndGet(n);
+                            }
+                        } catch (IOException e) {
+                            // 连接关闭
+                        }
+                    }, "bench-sink");
+                    reader.setDaemon(true);
+                    reader.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "bench-sink-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+
+    private static long drive(int port, int connections, int seconds, AtomicLong received) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(connections);
+        for (int i = 0; i < connections; i++) {
+            Thread t = new Thread(() -> {
+                byte[] chunk = new byte[1 << 16];
+                try (Socket socket = new Socket()) {
+                    socket.connect(new InetSocketAddress("127.0.0.1", port));
+                    OutputStream out = socket.getOutputStream();
+                    while (System.nanoTime() < deadline) {
+                        out.write(chunk);
+                    }
+                } catch (IOException e) {
+                    System.err.println("⚠️  " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            }, "bench-client-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        long start = received.get();
+        done.await(seconds + 10L, TimeUnit.SECONDS);
+        return received.get() - start;
+    }
+
+    private static void waitForPort(int port) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 200);
+                return;
+            } catch (IOException e) {
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+        }
+        throw new IllegalStateException("Xray did not listen on port " + port);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.proxy.common;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试用的用户文件和临时目录
+ */
+public final class BenchmarkUsers {
+
+    private BenchmarkUsers() {
+    }
+
+    /**
+     * 写出 count 个用户（CSV：uuid,email），UUID 固定以便结果可复现；count 为0时返回null
+     */
+    public static Path write(Path dir, int count) throws IOException {
+        if (count <= 0) {
+            return null;
+        }
+        Path file = dir.resolve("users.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < count; i++) {
+                UUID id = UUID.nameUUIDFromBytes(("user-" + i).getBytes(StandardCharsets.UTF_8));
+                writer.write(id + ",user" + i + "@example.com");
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * 递归删除目录
+     */
+    public static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
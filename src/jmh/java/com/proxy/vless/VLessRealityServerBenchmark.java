@@ -0,0 +1,107 @@
+package com.proxy.vless;
+
+import com.proxy.common.BenchmarkUsers;
+import com.proxy.common.BulkLinkWriter;
+import com.proxy.common.XrayWorkers;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VLESS+Reality 配置生成和链接生成基准
+ * 运行：mvn -Pjmh verify
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VLessRealityServerBenchmark {
+
+    static final String UUID = "9afd1229-b893-40c1-84dd-51e7ce204913";
+    static final int BULK = 10_000;
+    static final String PUBLIC_KEY = "Gt5V4GQq3sUuKE5NIbWGGv5CRHfmeINv9j1FPS0LfHA";
+
+    /**
+     * 配置生成：单用户走 Gson 树形输出，多用户走用户文件流式输出
+     */
+    @State(Scope.Benchmark)
+    public static class ConfigState {
+        @Param({"0", "10000"})
+        int users;
+
+        Path dir;
+        VLessRealityServer server;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            dir = Files.createTempDirectory("vless-bench");
+            server = new VLessRealityServer(20041, UUID, BenchmarkUsers.write(dir, users),
+                new XrayWorkers(1, false, dir));
+            server.generateRealityKeys();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            BenchmarkUsers.delete(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LinkState {
+        VLessRealityServer server;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            server = new VLessRealityServer(20041, UUID, null, new XrayWorkers(1, false, Path.of("")));
+            server.serverIp = "203.0.113.10";
+            server.generateRealityKeys();
+        }
+    }
+
+    /**
+     * 批量链接：BulkLinkWriter 把 BULK 个用户的用户文件写成链接文件
+     */
+    @State(Scope.Benchmark)
+    public static class BulkState {
+        Path dir;
+        Path usersFile;
+        Path output;
+        BulkLinkWriter writer;
+        BulkLinkWriter.LinkFormat format;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dir = Files.createTempDirectory("vless-bulk-bench");
+            usersFile = BenchmarkUsers.write(dir, BULK);
+            output = dir.resolve("links.txt");
+            writer = new BulkLinkWriter();
+            format = VLessRealityServer.linkFormat("203.0.113.10", 20041,
+                "www.microsoft.com", PUBLIC_KEY, "6ba85179e30d4fc2");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            BenchmarkUsers.delete(dir);
+        }
+    }
+
+    @Benchmark
+    public void generateConfig(ConfigState state) throws IOException {
+        state.server.generateConfig();
+    }
+
+    @Benchmark
+    public String generateVLessLink(LinkState state) throws Exception {
+        return state.server.generateVLessLink();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public long writeVLessLinksBulk(BulkState state) throws IOException {
+        return state.writer.write(state.usersFile, state.output, state.format);
+    }
+}
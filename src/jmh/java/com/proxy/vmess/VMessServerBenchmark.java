@@ -0,0 +1,102 @@
+package com.proxy.vmess;
+
+import com.proxy.common.BenchmarkUsers;
+import com.proxy.common.BulkLinkWriter;
+import com.proxy.common.XrayWorkers;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VMess 配置生成和链接生成基准
+ * 运行：mvn -Pjmh verify
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VMessServerBenchmark {
+
+    static final String UUID = "55e12d57-6f93-4756-a20a-a35a081d6c9f";
+    static final int BULK = 10_000;
+
+    /**
+     * 配置生成：单用户走 Gson 树形输出，多用户走用户文件流式输出
+     */
+    @State(Scope.Benchmark)
+    public static class ConfigState {
+        @Param({"0", "10000"})
+        int users;
+
+        Path dir;
+        VMessServer server;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dir = Files.createTempDirectory("vmess-bench");
+            server = new VMessServer(20041, UUID, BenchmarkUsers.write(dir, users), new XrayWorkers(1, false, dir));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            BenchmarkUsers.delete(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LinkState {
+        VMessServer server;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            server = new VMessServer(20041, UUID, null, new XrayWorkers(1, false, Path.of("")));
+            server.serverIp = "203.0.113.10";
+        }
+    }
+
+    /**
+     * 批量链接：BulkLinkWriter 把 BULK 个用户的用户文件写成链接文件
+     */
+    @State(Scope.Benchmark)
+    public static class BulkState {
+        Path dir;
+        Path usersFile;
+        Path output;
+        BulkLinkWriter writer;
+        BulkLinkWriter.LinkFormat format;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dir = Files.createTempDirectory("vmess-bulk-bench");
+            usersFile = BenchmarkUsers.write(dir, BULK);
+            output = dir.resolve("links.txt");
+            writer = new BulkLinkWriter();
+            format = VMessServer.linkFormat("203.0.113.10", 20041);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            BenchmarkUsers.delete(dir);
+        }
+    }
+
+    @Benchmark
+    public void generateConfig(ConfigState state) throws IOException {
+        state.server.generateConfig();
+    }
+
+    @Benchmark
+    public String generateVMessLink(LinkState state) {
+        return state.server.generateVMessLink();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public long writeVMessLinksBulk(BulkState state) throws IOException {
+        return state.writer.write(state.usersFile, state.output, state.format);
+    }
+}
@@ -0,0 +1,211 @@
+package com.proxy.combined;
+
+import com.proxy.common.Bootstrap;
+import com.proxy.common.ProtocolProvider;
+import com.proxy.common.ProxyNode;
+import com.proxy.common.PublicIpResolver;
+import com.proxy.common.SubscriptionServer;
+import com.proxy.common.XrayLauncher;
+import com.proxy.common.XrayTuning;
+import com.proxy.common.XrayWorkers;
+import com.proxy.vless.VLessRealityServer;
+import com.proxy.vmess.VMessServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 合并启动器：一个JVM、一个Xray进程同时承载多个协议入站
+ * 协议由 PROTOCOLS 选择（默认 vless,vmess），各自端口为 VLESS_PORT / VMESS_PORT；
+ * 用户文件（USERS_FILE）中的用户同时加入所有入站
+ */
+public class CombinedServer {
+    private final List<ProtocolProvider> providers;
+    private final Path usersFile;
+    private final int apiPort;
+    private final int metricsPort;
+    private final XrayWorkers workers;
+    private final XrayTuning tuning;
+    private SubscriptionServer subscriptionServer;
+    private String serverIp;
+    private final List<ProxyNode> nodes = new ArrayList<>();
+
+    public CombinedServer() {
+        this(providersFromEnv(),
+             System.getenv("USERS_FILE") != null ? Paths.get(System.getenv("USERS_FILE")) : null,
+             XrayWorkers.fromEnv());
+    }
+
+    /**
+     * 指定协议、用户文件和工作进程
+     */
+    public CombinedServer(List<ProtocolProvider> providers, Path usersFile, XrayWorkers workers) {
+        if (providers.isEmpty()) {
+            throw new IllegalArgumentException("No protocol configured");
+        }
+        this.providers = providers;
+        this.usersFile = usersFile;
+        this.metricsPort = Integer.parseInt(System.getenv().getOrDefault("METRICS_PORT", "0"));
+        // 多用户模式和流量统计默认启用API入站
+        this.apiPort = Integer.parseInt(System.getenv().getOrDefault("XRAY_API_PORT",
+                                        usersFile != null || metricsPort > 0 ? "10085" : "0"));
+        this.workers = workers;
+        this.tuning = XrayTuning.fromEnv();
+    }
+
+    /**
+     * 按 PROTOCOLS 创建协议；VLESS_PORT 默认为 PORT（或20041），VMESS_PORT 默认为其后一个端口
+     */
+    static List<ProtocolProvider> providersFromEnv() {
+        int basePort = Integer.parseInt(System.getenv().getOrDefault("PORT",
+                                        System.getenv().getOrDefault("SERVER_PORT", "20041")));
+        List<ProtocolProvider> providers = new ArrayList<>();
+        for (String protocol : System.getenv().getOrDefault("PROTOCOLS", "vless,vmess").split(",")) {
+            switch (protocol.trim().toLowerCase(Locale.ROOT)) {
+                case "vless":
+                    providers.add(VLessRealityServer.provider(Integer.parseInt(
+                        System.getenv().getOrDefault("VLESS_PORT", String.valueOf(basePort)))));
+                    break;
+                case "vmess":
+                    providers.add(VMessServer.provider(Integer.parseInt(
+                        System.getenv().getOrDefault("VMESS_PORT", String.valueOf(basePort + 1)))));
+                    break;
+                case "":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown protocol in PROTOCOLS: " + protocol
+                        + " (expected vless or vmess)");
+            }
+        }
+        return providers;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("🚀 Combined Xray Server (Java)");
+
+        try {
+            CombinedServer server = new CombinedServer();
+            server.start();
+        } catch (Exception e) {
+            System.err.println("❌ Fatal error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Xray工作进程
+     */
+    public XrayWorkers getWorkers() {
+        return workers;
+    }
+
+    public void start() throws Exception {
+        for (ProtocolProvider provider : providers) {
+            System.out.println("📌 " + provider.getName() + " port: " + provider.getPort());
+        }
+        System.out.println("⚙️  Tuning: " + tuning);
+
+        // 启动阶段按依赖并行执行：IP探测、Xray下载、各协议的准备互相重叠
+        Bootstrap boot = new Bootstrap();
+
+        // 获取服务器IP
+        boot.phase("getServerIP", () -> {
+            serverIp = PublicIpResolver.fromEnv().resolve();
+            System.out.println("✅ Server IP: " + serverIp);
+        });
+
+        // 下载Xray
+        boot.phase("downloadXrayIfNeeded", () -> XrayLauncher.installXray(XrayLauncher.XRAY_VERSION));
+
+        // 各协议的准备（密钥、Reality测速等）
+        String[] prepared = new String[providers.size()];
+        for (int i = 0; i < providers.size(); i++) {
+            ProtocolProvider provider = providers.get(i);
+            prepared[i] = "prepare-" + provider.getInboundTag();
+            boot.phase(prepared[i], provider::prepare);
+        }
+
+        // 生成包含所有入站的配置
+        boot.phase("generateConfig", this::generateConfig, prepared);
+
+        // 生成所有链接并显示信息
+        String[] linkDeps = new String[prepared.length + 1];
+        System.arraycopy(prepared, 0, linkDeps, 0, prepared.length);
+        linkDeps[prepared.length] = "getServerIP";
+        boot.phase("generateLinks", this::generateLinks, linkDeps);
+
+        // 内置订阅服务（设置 SUB_PORT 时启用），包含所有协议的节点
+        boot.phase("startSubscriptionServer", () -> {
+            subscriptionServer = SubscriptionServer.fromEnv(nodes);
+            if (subscriptionServer != null) {
+                subscriptionServer.start();
+            }
+        }, "generateLinks");
+
+        // 上传节点信息到管理API（NODE_API_URL 未设置时跳过；合并模式不做交互式输入）
+        boot.phase("uploadNodeInfo", () -> XrayLauncher.uploadNodeInfo(providers, nodes, serverIp, workers, false),
+            "generateLinks");
+
+        // 启动报告写在 link.txt 旁边，Xray首次就绪时补充就绪时间
+        try {
+            boot.await();
+        } finally {
+            boot.writeReport(Paths.get("boot-report.json"));
+        }
+        boot.printReport();
+        workers.onReady(boot::xrayReady);
+
+        // 多用户模式：监听用户文件，通过API热增删用户
+        if (usersFile != null && apiPort > 0) {
+            XrayLauncher.startUserManagers(providers, usersFile, apiPort, tuning, workers);
+        }
+
+        // 流量统计：定期采集计数器，提供Prometheus指标
+        if (metricsPort > 0 && apiPort > 0) {
+            XrayLauncher.startStatsCollector(workers, apiPort, metricsPort);
+        }
+
+        // 启动Xray（就绪探测使用第一个协议的端口）
+        System.out.println("🚀 Starting Xray...");
+        System.out.println("ℹ️  Xray output is buffered; the tail is printed if Xray exits. Check c.json if you need to debug.");
+        System.out.println("");
+        workers.run("./xray", providers.get(0).getPort(), apiPort);
+    }
+
+    /**
+     * 生成Xray配置文件：每个协议一个入站，共用出站、API和调优参数
+     */
+    void generateConfig() throws IOException {
+        XrayLauncher.renderConfig(providers, usersFile, apiPort, tuning, workers);
+    }
+
+    /**
+     * 生成所有协议的链接，link.txt 每行一条
+     */
+    private void generateLinks() throws Exception {
+        StringBuilder links = new StringBuilder();
+        for (ProtocolProvider provider : providers) {
+            ProxyNode node = provider.node(serverIp);
+            nodes.add(node);
+            links.append(node.getLink()).append('\n');
+        }
+        Files.writeString(Paths.get("link.txt"), links.toString());
+
+        System.out.println("");
+        System.out.println("==========================================");
+        System.out.println("🎉 Combined Server Started!");
+        System.out.println("==========================================");
+        for (ProxyNode node : nodes) {
+            System.out.println("📡 " + node.getName() + ": " + PublicIpResolver.uriHost(node.getServer()) + ":" + node.getPort());
+            System.out.println("   " + node.getLink());
+        }
+        System.out.println("==========================================");
+        System.out.println("");
+    }
+}
@@ -0,0 +1,28 @@
+package com.proxy.common;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR事件：一个启动阶段（开启 -XX:StartFlightRecording 时记录）
+ */
+@Name("com.proxy.BootPhase")
+@Label("Boot Phase")
+@Category({"Xray Proxy", "Startup"})
+@Description("One phase of the server startup sequence")
+class BootPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Bytes Transferred")
+    @DataAmount
+    long bytes;
+
+    @Label("Succeeded")
+    boolean success;
+}
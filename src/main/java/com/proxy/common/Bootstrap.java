@@ -0,0 +1,282 @@
+package com.proxy.common;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 启动阶段编排器
+ * 按依赖关系并行执行启动阶段，并统计关键路径耗时；每个阶段产生一个JFR事件，
+ * 结果可写成JSON启动报告（各阶段耗时、传输字节数、首次Xray就绪时间）
+ */
+public class Bootstrap {
+
+    /**
+     * 启动阶段任务
+     */
+    @FunctionalInterface
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    /**
+     * 阶段耗时记录
+     */
+    private static final class Phase {
+        final String name;
+        final List<Phase> deps;
+        CompletableFuture<Void> future;
+        final AtomicLong bytes = new AtomicLong();
+        volatile long startNanos;
+        volatile long endNanos;
+        volatile Throwable error;
+
+        Phase(String name, List<Phase> deps) {
+            this.name = name;
+            this.deps = deps;
+        }
+
+        long millis() {
+            return TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+        }
+    }
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    // 当前线程正在执行的阶段，用于归属传输字节数
+    private static final ThreadLocal<Phase> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final ExecutorService executor;
+    private final long originNanos = System.nanoTime();
+    private final Instant startedAt = Instant.now();
+    private final long jvmUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+    private volatile long xrayReadyNanos;
+    private volatile long xrayTimeToReadyMillis = -1;
+    private volatile Path reportPath;
+
+    public Bootstrap() {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "bootstrap-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 注册一个阶段，依赖的阶段全部完成后才会执行
+     */
+    public synchronized Bootstrap phase(String name, Step step, String... dependsOn) {
+        if (phases.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate phase: " + name);
+        }
+
+        List<Phase> deps = new ArrayList<>();
+        for (String dep : dependsOn) {
+            Phase p = phases.get(dep);
+            if (p == null) {
+                throw new IllegalArgumentException("Unknown dependency '" + dep + "' for phase " + name);
+            }
+            deps.add(p);
+        }
+
+        Phase phase = new Phase(name, deps);
+        CompletableFuture<?>[] depFutures = deps.stream()
+            .map(p -> p.future)
+            .toArray(CompletableFuture[]::new);
+
+        phase.future = CompletableFuture.allOf(depFutures).thenRunAsync(() -> {
+            BootPhaseEvent event = new BootPhaseEvent();
+            event.phase = name;
+            event.begin();
+            phase.startNanos = System.nanoTime();
+            CURRENT.set(phase);
+            try {
+                step.run();
+            } catch (RuntimeException e) {
+                phase.error = e;
+                throw e;
+            } catch (Exception e) {
+                phase.error = e;
+                throw new CompletionException(e);
+            } finally {
+                phase.endNanos = System.nanoTime();
+                CURRENT.remove();
+                event.bytes = phase.bytes.get();
+                event.success = phase.error == null;
+                event.commit();
+            }
+        }, executor);
+
+        phases.put(name, phase);
+        return this;
+    }
+
+    /**
+     * 把传输的字节数计入当前线程正在执行的阶段（不在阶段内调用时忽略）
+     */
+    public static void transferred(long bytes) {
+        Phase phase = CURRENT.get();
+        if (phase != null) {
+            phase.bytes.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * 记录首次Xray就绪；已写过启动报告时重新写入
+     */
+    public void xrayReady(long timeToReadyMillis) {
+        synchronized (this) {
+            if (xrayReadyNanos != 0) {
+                return;
+            }
+            xrayReadyNanos = System.nanoTime();
+            xrayTimeToReadyMillis = timeToReadyMillis;
+        }
+        Path path = reportPath;
+        if (path != null) {
+            writeReport(path);
+        }
+    }
+
+    /**
+     * 等待所有阶段完成，任一阶段失败则抛出其原始异常
+     */
+    public void await() throws Exception {
+        try {
+            CompletableFuture.allOf(phases.values().stream()
+                .map(p -> p.future)
+                .toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            Throwable cause = e;
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 计算关键路径：从最晚结束的阶段开始，沿最晚完成的依赖回溯
+     */
+    public List<String> criticalPath() {
+        Phase last = null;
+        for (Phase p : phases.values()) {
+            if (last == null || p.endNanos > last.endNanos) {
+                last = p;
+            }
+        }
+
+        LinkedList<String> path = new LinkedList<>();
+        while (last != null) {
+            path.addFirst(last.name);
+            Phase next = null;
+            for (Phase dep : last.deps) {
+                if (next == null || dep.endNanos > next.endNanos) {
+                    next = dep;
+                }
+            }
+            last = next;
+        }
+        return path;
+    }
+
+    /**
+     * 从编排开始到最后一个阶段结束的耗时（毫秒）
+     */
+    public long criticalPathMillis() {
+        long end = originNanos;
+        for (Phase p : phases.values()) {
+            end = Math.max(end, p.endNanos);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(end - originNanos);
+    }
+
+    /**
+     * 打印各阶段耗时和关键路径
+     */
+    public void printReport() {
+        long serialMillis = 0;
+        System.out.println("⏱️  Startup phases:");
+        for (Phase p : phases.values()) {
+            serialMillis += p.millis();
+            System.out.println(String.format("   %-22s %6d ms", p.name, p.millis()));
+        }
+        System.out.println("⏱️  Critical path: " + String.join(" -> ", criticalPath())
+            + " = " + criticalPathMillis() + " ms (sequential would be " + serialMillis + " ms)");
+        System.out.println("");
+    }
+
+    /**
+     * 写出JSON启动报告（先写临时文件再原子替换），失败只打印警告
+     */
+    public synchronized void writeReport(Path target) {
+        reportPath = target;
+
+        JsonObject report = new JsonObject();
+        report.addProperty("startedAt", startedAt.toString());
+        report.addProperty("jvmStartupMillis", jvmUptimeMillis);
+        report.addProperty("criticalPathMillis", criticalPathMillis());
+        JsonArray path = new JsonArray();
+        criticalPath().forEach(path::add);
+        report.add("criticalPath", path);
+
+        long totalBytes = 0;
+        JsonArray list = new JsonArray();
+        for (Phase p : phases.values()) {
+            JsonObject phase = new JsonObject();
+            phase.addProperty("name", p.name);
+            boolean ran = p.endNanos != 0;
+            phase.addProperty("status", !ran ? "skipped" : p.error == null ? "ok" : "failed");
+            if (ran) {
+                phase.addProperty("startMillis", TimeUnit.NANOSECONDS.toMillis(p.startNanos - originNanos));
+                phase.addProperty("durationMillis", p.millis());
+            }
+            phase.addProperty("bytes", p.bytes.get());
+            if (p.error != null) {
+                phase.addProperty("error", String.valueOf(p.error.getMessage()));
+            }
+            JsonArray deps = new JsonArray();
+            p.deps.forEach(dep -> deps.add(dep.name));
+            phase.add("dependsOn", deps);
+            list.add(phase);
+            totalBytes += p.bytes.get();
+        }
+        report.add("phases", list);
+        report.addProperty("bytesTransferred", totalBytes);
+
+        if (xrayReadyNanos != 0) {
+            JsonObject xray = new JsonObject();
+            xray.addProperty("readyMillis", TimeUnit.NANOSECONDS.toMillis(xrayReadyNanos - originNanos));
+            xray.addProperty("timeToReadyMillis", xrayTimeToReadyMillis);
+            report.add("xray", xray);
+        }
+
+        try {
+            Path tmp = target.toAbsolutePath().resolveSibling("." + target.getFileName() + ".tmp");
+            Files.writeString(tmp, GSON.toJson(report), StandardCharsets.UTF_8);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("⚠️  Failed to write boot report: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.proxy.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 批量生成订阅链接
+ * 用户文件按块分发给多个线程，每个线程复用自己的缓冲区拼接链接；
+ * 结果按原顺序直接写入文件通道，同时在途的块数有上限，内存占用与用户数无关
+ */
+public final class BulkLinkWriter {
+
+    /**
+     * 单个用户的链接格式（写入 out，不含换行）
+     */
+    @FunctionalInterface
+    public interface LinkFormat {
+        void write(LinkBuffer out, LinkBuffer scratch, User user);
+    }
+
+    /**
+     * 每个线程复用的缓冲区
+     */
+    private static final class Buffers {
+        final LinkBuffer out = new LinkBuffer(1 << 20);
+        final LinkBuffer scratch = new LinkBuffer(1024);
+    }
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private final int threads;
+    private final int chunkSize;
+
+    public BulkLinkWriter(int threads, int chunkSize) {
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    public BulkLinkWriter() {
+        this(Runtime.getRuntime().availableProcessors(), 4096);
+    }
+
+    /**
+     * 为用户文件中的每个用户生成一行链接，写入 output（先写临时文件再原子替换），返回链接数
+     */
+    public long write(Path usersFile, Path output, LinkFormat format) throws IOException {
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "bulk-links-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        Path target = output.toAbsolutePath();
+        Path tmp = target.resolveSibling("." + target.getFileName() + ".tmp");
+        long[] total = {0};
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Deque<Future<ByteBuffer>> inflight = new ArrayDeque<>();
+            AtomicReference<List<User>> chunk = new AtomicReference<>(new ArrayList<>(chunkSize));
+
+            UserFile.forEach(usersFile, user -> {
+                chunk.get().add(user);
+                if (chunk.get().size() == chunkSize) {
+                    List<User> full = chunk.get();
+                    inflight.addLast(executor.submit(() -> render(full, format)));
+                    total[0] += full.size();
+                    chunk.set(new ArrayList<>(chunkSize));
+                    // 在途块数上限：保持所有线程忙碌，同时限制内存
+                    while (inflight.size() > threads * 2) {
+                        writeFully(channel, await(inflight.removeFirst()));
+                    }
+                }
+            });
+            if (!chunk.get().isEmpty()) {
+                List<User> last = chunk.get();
+                inflight.addLast(executor.submit(() -> render(last, format)));
+                total[0] += last.size();
+            }
+            while (!inflight.isEmpty()) {
+                writeFully(channel, await(inflight.removeFirst()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return total[0];
+    }
+
+    /**
+     * 在当前线程的缓冲区中拼接整块链接，只复制一次结果
+     */
+    private static ByteBuffer render(List<User> users, LinkFormat format) {
+        Buffers buffers = BUFFERS.get();
+        LinkBuffer out = buffers.out;
+        out.reset();
+        for (User user : users) {
+            buffers.scratch.reset();
+            format.write(out, buffers.scratch, user);
+            out.append('\n');
+        }
+        return ByteBuffer.wrap(Arrays.copyOf(out.array(), out.length()));
+    }
+
+    private static ByteBuffer await(Future<ByteBuffer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating links", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to generate links: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
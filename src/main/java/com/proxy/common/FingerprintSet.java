@@ -0,0 +1,99 @@
+package com.proxy.common;
+
+/**
+ * 64位指纹的开放寻址集合，用于流式读取用户文件时去重
+ * 每个元素只占一个long（不保存字符串或UUID对象），100万用户约16MB；
+ * 两个不同值指纹相同的概率约为 n²/2^65（100万个元素时约3e-8）
+ */
+final class FingerprintSet {
+    private long[] slots = new long[1024];
+    private boolean hasZero;
+    private int size;
+
+    /**
+     * 加入指纹，已存在时返回false
+     */
+    boolean add(long fingerprint) {
+        if (fingerprint == 0) {
+            // 0 表示空槽，单独记录
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            return true;
+        }
+        if ((size + 1) * 4L > slots.length * 3L) {
+            grow();
+        }
+        if (!insert(slots, fingerprint)) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    private static boolean insert(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        int i = (int) fingerprint & mask;
+        while (table[i] != 0) {
+            if (table[i] == fingerprint) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = fingerprint;
+        return true;
+    }
+
+    private void grow() {
+        long[] bigger = new long[slots.length * 2];
+        for (long fingerprint : slots) {
+            if (fingerprint != 0) {
+                insert(bigger, fingerprint);
+            }
+        }
+        slots = bigger;
+    }
+
+    /**
+     * 字符串的指纹：逐字符 FNV-1a，再做一次 murmur3 末尾混合
+     */
+    static long of(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * UUID（8-4-4-4-12 格式，不区分大小写）的指纹，不创建 UUID 对象
+     */
+    static long ofUuid(String uuid) {
+        long high = 0;
+        long low = 0;
+        int digits = 0;
+        for (int i = 0; i < uuid.length(); i++) {
+            int d = Character.digit(uuid.charAt(i), 16);
+            if (d < 0) {
+                continue;
+            }
+            if (digits < 16) {
+                high = (high << 4) | d;
+            } else {
+                low = (low << 4) | d;
+            }
+            digits++;
+        }
+        return mix(high ^ mix(low));
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,50 @@
+package com.proxy.common;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+/**
+ * SIGHUP 处理，项目中唯一使用 sun.misc.Signal 的地方
+ * 通过反射调用：在编译期直接引用 jdk.unsupported 中的类会产生 "internal proprietary API" 警告，
+ * 该警告无法用 @SuppressWarnings 关闭。原生镜像所需的反射和代理配置见 META-INF/native-image。
+ */
+final class HangupSignal {
+
+    private HangupSignal() {
+    }
+
+    /**
+     * 注册 SIGHUP 处理（在JVM的信号线程中调用 action，应尽快返回）
+     * 平台不支持时返回false
+     */
+    static boolean handle(Runnable action) {
+        try {
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+            Object signal = signalClass.getConstructor(String.class).newInstance("HUP");
+            Object handler = Proxy.newProxyInstance(HangupSignal.class.getClassLoader(), new Class<?>[] {handlerClass},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "handle":
+                            action.run();
+                            return null;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            return "HangupSignal handler";
+                    }
+                });
+            signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, signal, handler);
+            return true;
+        } catch (InvocationTargetException e) {
+            // IllegalArgumentException：平台不支持 SIGHUP（如 Windows）或信号已被JVM占用
+            System.err.println("⚠️  SIGHUP reload not available: " + e.getCause().getMessage());
+            return false;
+        } catch (ReflectiveOperationException e) {
+            System.err.println("⚠️  SIGHUP reload not available: " + e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.proxy.common;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.proxy.common.api.XrayApiClient;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 从已生成的 c.json 中读取第一个代理入站的端口和Reality参数
+ * 流式解析并跳过 clients 列表，百万用户的配置也只需常量内存
+ */
+public final class InboundProbe {
+
+    private final String protocol;
+    private final int port;
+    private final String privateKey;
+    private final String shortId;
+    private final String serverName;
+
+    private InboundProbe(String protocol, int port, String privateKey, String shortId, String serverName) {
+        this.protocol = protocol;
+        this.port = port;
+        this.privateKey = privateKey;
+        this.shortId = shortId;
+        this.serverName = serverName;
+    }
+
+    /**
+     * 读取配置文件，找不到代理入站时抛出 IOException
+     */
+    public static InboundProbe read(Path config) throws IOException {
+        try (Reader in = Files.newBufferedReader(config, StandardCharsets.UTF_8);
+             JsonReader reader = new JsonReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("inbounds")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    InboundProbe inbound = readInbound(reader);
+                    if (inbound != null) {
+                        return inbound;
+                    }
+                }
+                reader.endArray();
+            }
+        }
+        throw new IOException("No proxy inbound found in " + config);
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Reality私钥（非Reality入站为null）
+     */
+    public String getPrivateKey() {
+        return privateKey;
+    }
+
+    public String getShortId() {
+        return shortId;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    /**
+     * 读取一个入站对象，API入站返回null
+     */
+    private static InboundProbe readInbound(JsonReader reader) throws IOException {
+        String protocol = null;
+        String tag = null;
+        int port = 0;
+        String[] reality = new String[3];
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "protocol" -> protocol = reader.nextString();
+                case "tag" -> tag = reader.nextString();
+                case "port" -> port = reader.nextInt();
+                case "streamSettings" -> readStreamSettings(reader, reality);
+                // settings 中是 clients 列表，直接跳过
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (protocol == null || XrayApiClient.API_TAG.equals(tag)) {
+            return null;
+        }
+        return new InboundProbe(protocol, port, reality[0], reality[1], reality[2]);
+    }
+
+    private static void readStreamSettings(JsonReader reader, String[] reality) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("realitySettings")) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "privateKey" -> reality[0] = reader.nextString();
+                    case "shortIds" -> reality[1] = firstString(reader);
+                    case "serverNames" -> reality[2] = firstString(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+    }
+
+    private static String firstString(JsonReader reader) throws IOException {
+        String first = null;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (first == null && reader.peek() == JsonToken.STRING) {
+                first = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endArray();
+        return first;
+    }
+}
@@ -0,0 +1,191 @@
+package com.proxy.common;
+
+import java.util.Arrays;
+
+/**
+ * 可复用的字节缓冲区，用于批量拼接订阅链接
+ * 直接写 UTF-8、Base64 和百分号编码，不创建中间 String/byte[]
+ */
+public final class LinkBuffer {
+
+    private static final byte[] BASE64 =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes();
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    private byte[] bytes;
+    private int length;
+
+    public LinkBuffer(int capacity) {
+        this.bytes = new byte[capacity];
+    }
+
+    public void reset() {
+        length = 0;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 内部数组（前 length() 字节有效）
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    public LinkBuffer append(char c) {
+        ensure(1);
+        bytes[length++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * 追加ASCII文本（调用方保证不含非ASCII字符）
+     */
+    public LinkBuffer ascii(String s) {
+        int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            bytes[length++] = (byte) s.charAt(i);
+        }
+        return this;
+    }
+
+    public LinkBuffer number(int value) {
+        return ascii(Integer.toString(value));
+    }
+
+    /**
+     * 追加UTF-8文本
+     */
+    public LinkBuffer utf8(String s) {
+        int n = s.length();
+        ensure(n * 3);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                ensure(4);
+                bytes[length++] = (byte) (0xF0 | (cp >> 18));
+                bytes[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 追加JSON字符串（含引号和转义）
+     */
+    public LinkBuffer jsonString(String s) {
+        append('"');
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                append('\\').append(c);
+            } else if (c < 0x20) {
+                ascii(String.format("\\u%04x", (int) c));
+            } else if (c < 0x80) {
+                append(c);
+            } else {
+                int end = i + 1;
+                while (end < n && s.charAt(end) >= 0x80) {
+                    end++;
+                }
+                utf8(s.substring(i, end));
+                i = end - 1;
+            }
+        }
+        return append('"');
+    }
+
+    /**
+     * 追加URL片段/参数的百分号编码（UTF-8，保留 RFC 3986 非保留字符）
+     */
+    public LinkBuffer percent(String s) {
+        int start = length;
+        utf8(s);
+        int end = length;
+        int escapes = 0;
+        for (int i = start; i < end; i++) {
+            if (!unreserved(bytes[i])) {
+                escapes++;
+            }
+        }
+        if (escapes == 0) {
+            return this;
+        }
+        ensure(escapes * 2);
+        // 从后往前原地展开
+        int write = end + escapes * 2;
+        length = write;
+        for (int read = end - 1; read >= start; read--) {
+            byte b = bytes[read];
+            if (unreserved(b)) {
+                bytes[--write] = b;
+            } else {
+                bytes[--write] = HEX[b & 0x0F];
+                bytes[--write] = HEX[(b >> 4) & 0x0F];
+                bytes[--write] = '%';
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 追加 src 中 [from, length) 的标准 Base64 编码
+     */
+    public LinkBuffer base64(LinkBuffer src, int from) {
+        int n = src.length - from;
+        ensure((n + 2) / 3 * 4);
+        byte[] in = src.bytes;
+        int i = from;
+        int end = from + n / 3 * 3;
+        while (i < end) {
+            int bits = (in[i++] & 0xFF) << 16 | (in[i++] & 0xFF) << 8 | (in[i++] & 0xFF);
+            bytes[length++] = BASE64[(bits >>> 18) & 0x3F];
+            bytes[length++] = BASE64[(bits >>> 12) & 0x3F];
+            bytes[length++] = BASE64[(bits >>> 6) & 0x3F];
+            bytes[length++] = BASE64[bits & 0x3F];
+        }
+        int rest = from + n - i;
+        if (rest > 0) {
+            int bits = (in[i] & 0xFF) << 16 | (rest == 2 ? (in[i + 1] & 0xFF) << 8 : 0);
+            bytes[length++] = BASE64[(bits >>> 18) & 0x3F];
+            bytes[length++] = BASE64[(bits >>> 12) & 0x3F];
+            bytes[length++] = rest == 2 ? BASE64[(bits >>> 6) & 0x3F] : (byte) '=';
+            bytes[length++] = '=';
+        }
+        return this;
+    }
+
+    /**
+     * 截断到 newLength（用于丢弃临时内容）
+     */
+    public void truncate(int newLength) {
+        length = newLength;
+    }
+
+    private static boolean unreserved(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9')
+            || b == '-' || b == '.' || b == '_' || b == '~';
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+}
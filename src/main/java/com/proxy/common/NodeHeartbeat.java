@@ -0,0 +1,230 @@
+package com.proxy.common;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点心跳
+ * 定期向管理API报告存活状态、Xray运行时长和重启次数、当前连接数，以及自测的本机 TCP accept 延迟；
+ * 进程退出时（shutdown hook）注销节点。
+ *
+ * 心跳：POST {心跳地址}，JSON；注销：DELETE {注销地址}/{节点名}（默认为节点注册地址 NODE_API_URL）
+ * 所有心跳共用 NodeRegistrar 的HTTP客户端和一个调度线程，首次延迟和每次间隔带随机抖动，避免集群同时请求
+ */
+public class NodeHeartbeat {
+
+    private static final Gson GSON = new Gson();
+    private static final int PROBE_SAMPLES = 3;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "node-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final HttpClient client;
+    private final String url;
+    private final String deregisterUrl;
+    private final String name;
+    private final int port;
+    private final XrayWorkers workers;
+    private final long intervalMillis;
+    private final double jitter;
+    private final Duration requestTimeout;
+
+    private volatile ScheduledFuture<?> next;
+    private volatile boolean stopped;
+    private volatile Boolean lastOk;
+    private Thread shutdownHook;
+
+    public NodeHeartbeat(HttpClient client, String url, String deregisterUrl, String name, int port,
+                         XrayWorkers workers, long intervalMillis, double jitter, Duration requestTimeout) {
+        this.client = client;
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.deregisterUrl = deregisterUrl.replaceAll("/+$", "");
+        this.name = name;
+        this.port = port;
+        this.workers = workers;
+        this.intervalMillis = intervalMillis;
+        this.jitter = jitter;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * 从环境变量创建：NODE_HEARTBEAT_URL（默认 {apiUrl}/heartbeat）、NODE_DEREGISTER_URL（默认 apiUrl）、
+     * NODE_HEARTBEAT_INTERVAL（秒，默认30，0为关闭）；关闭时返回null
+     */
+    public static NodeHeartbeat fromEnv(String apiUrl, String name, int port, XrayWorkers workers) {
+        long interval = Long.parseLong(System.getenv().getOrDefault("NODE_HEARTBEAT_INTERVAL", "30"));
+        if (interval <= 0) {
+            return null;
+        }
+        String url = System.getenv("NODE_HEARTBEAT_URL");
+        if (url == null || url.trim().isEmpty()) {
+            url = apiUrl.trim().replaceAll("/+$", "") + "/heartbeat";
+        }
+        String deregisterUrl = System.getenv("NODE_DEREGISTER_URL");
+        if (deregisterUrl == null || deregisterUrl.trim().isEmpty()) {
+            deregisterUrl = apiUrl;
+        }
+        return new NodeHeartbeat(NodeRegistrar.shared().getClient(), url.trim(), deregisterUrl.trim(), name, port,
+            workers, interval * 1000, 0.2, Duration.ofSeconds(10));
+    }
+
+    /**
+     * 开始定期心跳（首次在 [0, 间隔) 内随机延迟），并注册退出时注销
+     */
+    public synchronized NodeHeartbeat start() {
+        if (shutdownHook == null) {
+            shutdownHook = new Thread(this::deregister, "node-deregister-" + name);
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+            schedule(ThreadLocalRandom.current().nextLong(Math.max(1, intervalMillis)));
+            System.out.println("💓 Heartbeat every " + intervalMillis / 1000 + "s to " + url);
+        }
+        return this;
+    }
+
+    private void schedule(long delayMillis) {
+        if (!stopped) {
+            next = SCHEDULER.schedule(this::beat, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 下一次间隔：interval × [1 - jitter, 1 + jitter]
+     */
+    private long nextDelay() {
+        double factor = 1 + (ThreadLocalRandom.current().nextDouble() * 2 - 1) * jitter;
+        return Math.max(1, (long) (intervalMillis * factor));
+    }
+
+    private void beat() {
+        JsonObject body;
+        try {
+            body = sample();
+        } catch (RuntimeException e) {
+            System.err.println("⚠️  Heartbeat sample failed: " + e.getMessage());
+            schedule(nextDelay());
+            return;
+        }
+
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .header("Content-Type", "application/json")
+            .timeout(requestTimeout)
+            .POST(HttpRequest.BodyPublishers.ofString(GSON.toJson(body)))
+            .build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .whenComplete((response, error) -> {
+                boolean ok = error == null && response.statusCode() >= 200 && response.statusCode() < 300;
+                // 只在状态变化时输出，避免每次失败都刷屏
+                if (lastOk == null || ok != lastOk) {
+                    if (ok) {
+                        System.out.println("💓 Heartbeat OK: " + name);
+                    } else {
+                        System.err.println("⚠️  Heartbeat failed for " + name + ": "
+                            + (error != null ? error.getMessage() : "HTTP " + response.statusCode()));
+                    }
+                }
+                lastOk = ok;
+                schedule(nextDelay());
+            });
+    }
+
+    /**
+     * 当前状态：存活（端口可连接）、Xray运行时长/重启次数、连接数、accept延迟
+     */
+    public JsonObject sample() {
+        JsonObject body = new JsonObject();
+        body.addProperty("name", name);
+        body.addProperty("port", port);
+        body.addProperty("timestamp", System.currentTimeMillis());
+
+        long uptime = Long.MAX_VALUE;
+        long restarts = 0;
+        boolean running = workers != null && !workers.getSupervisors().isEmpty();
+        if (workers != null) {
+            for (XraySupervisor supervisor : workers.getSupervisors()) {
+                XraySupervisor.Stats stats = supervisor.stats();
+                running &= stats.isRunning();
+                uptime = Math.min(uptime, stats.getUptimeMillis());
+                restarts += stats.getRestarts();
+            }
+        }
+        body.addProperty("xrayRunning", running);
+        body.addProperty("xrayUptimeMs", uptime == Long.MAX_VALUE ? 0 : uptime);
+        body.addProperty("xrayRestarts", restarts);
+        body.addProperty("connections", ProcNet.established(port));
+
+        double latency = acceptLatencyMillis();
+        body.addProperty("alive", latency >= 0);
+        if (latency >= 0) {
+            body.addProperty("acceptLatencyMs", Math.round(latency * 1000) / 1000.0);
+        }
+        return body;
+    }
+
+    /**
+     * 连接本机端口测量 TCP 建连耗时（内核完成握手并放入accept队列），取中位数；端口不可连接时返回-1
+     */
+    double acceptLatencyMillis() {
+        double[] samples = new double[PROBE_SAMPLES];
+        for (int i = 0; i < PROBE_SAMPLES; i++) {
+            long start = System.nanoTime();
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 1000);
+                samples[i] = (System.nanoTime() - start) / 1_000_000.0;
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+        Arrays.sort(samples);
+        return samples[PROBE_SAMPLES / 2];
+    }
+
+    /**
+     * 停止心跳并注销节点（shutdown hook 中调用，同步等待最多一个请求超时）
+     */
+    public void deregister() {
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+        }
+        ScheduledFuture<?> pending = next;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(deregisterUrl + "/" + URLEncoder.encode(name, StandardCharsets.UTF_8).replace("+", "%20")))
+            .timeout(Duration.ofSeconds(3))
+            .DELETE()
+            .build();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            System.out.println("👋 Node deregistered: " + name + " (HTTP " + response.statusCode() + ")");
+        } catch (IOException e) {
+            System.err.println("⚠️  Node deregistration failed for " + name + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.proxy.common;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点注册客户端
+ * 共享一个 HttpClient（连接复用，优先HTTP/2），异步发送，失败按带抖动的指数退避重试；
+ * 未成功的注册写入本地 outbox 文件，下次启动时继续发送。
+ * 配置了批量地址时，合并窗口内的多个节点合并为一次请求。
+ */
+public class NodeRegistrar {
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * 一条待注册的节点记录
+     */
+    public static final class Registration {
+        private final String url;
+        private final String name;
+        private final String config;
+
+        public Registration(String url, String name, String config) {
+            this.url = url;
+            this.name = name;
+            this.config = config;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getConfig() {
+            return config;
+        }
+
+        JsonObject toJson() {
+            JsonObject body = new JsonObject();
+            body.addProperty("name", name);
+            body.addProperty("config", config);
+            return body;
+        }
+
+        // outbox 以 url+name 去重：同一节点重复注册只保留最新一条
+        String key() {
+            return url + "\n" + name;
+        }
+    }
+
+    /**
+     * 一条记录及其等待者
+     */
+    private static final class Entry {
+        final Registration registration;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        int attempts;
+
+        Entry(Registration registration) {
+            this.registration = registration;
+        }
+    }
+
+    private static volatile NodeRegistrar shared;
+
+    private final HttpClient client;
+    private final ScheduledExecutorService scheduler;
+    private final Path outbox;
+    private final String batchUrl;
+    private final int maxAttempts;
+    private final long batchDelayMillis;
+    private final long firstRetryMillis;
+    private final long maxBackoffMillis;
+    private final Duration requestTimeout;
+
+    // 尚未成功的记录（key -> entry），与 outbox 文件内容一致
+    private final Map<String, Entry> inflight = new LinkedHashMap<>();
+    // 合并窗口内等待发送的记录
+    private final List<Entry> queue = new ArrayList<>();
+    private boolean flushScheduled;
+
+    public NodeRegistrar(Path outbox, String batchUrl) {
+        this(outbox, batchUrl, 6, 200, 500, 30_000, Duration.ofSeconds(10));
+    }
+
+    public NodeRegistrar(Path outbox, String batchUrl, int maxAttempts, long batchDelayMillis,
+                         long firstRetryMillis, long maxBackoffMillis, Duration requestTimeout) {
+        this.outbox = outbox;
+        this.batchUrl = batchUrl == null || batchUrl.trim().isEmpty() ? null : batchUrl.trim();
+        this.maxAttempts = maxAttempts;
+        this.batchDelayMillis = batchDelayMillis;
+        this.firstRetryMillis = firstRetryMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.requestTimeout = requestTimeout;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "node-registrar");
+            t.setDaemon(true);
+            return t;
+        });
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    }
+
+    /**
+     * 进程内共享实例（NODE_OUTBOX 默认 node-outbox.jsonl，NODE_API_BATCH_URL 可选）
+     * 首次获取时重新提交上次未完成的注册
+     */
+    public static NodeRegistrar shared() {
+        NodeRegistrar registrar = shared;
+        if (registrar == null) {
+            synchronized (NodeRegistrar.class) {
+                registrar = shared;
+                if (registrar == null) {
+                    registrar = new NodeRegistrar(
+                        Paths.get(System.getenv().getOrDefault("NODE_OUTBOX", "node-outbox.jsonl")),
+                        System.getenv("NODE_API_BATCH_URL"));
+                    registrar.resumeOutbox();
+                    shared = registrar;
+                }
+            }
+        }
+        return registrar;
+    }
+
+    /**
+     * 提交注册，返回是否最终成功（重试耗尽或被拒绝时为false，不会异常完成）
+     */
+    public CompletableFuture<Boolean> register(Registration registration) {
+        Entry entry = new Entry(registration);
+        synchronized (this) {
+            Entry previous = inflight.put(registration.key(), entry);
+            if (previous != null) {
+                // 被新记录取代，旧等待者跟随新记录的结果
+                queue.remove(previous);
+                entry.result.whenComplete((ok, e) -> previous.result.complete(ok));
+            }
+            persist();
+            enqueue(entry);
+        }
+        return entry.result;
+    }
+
+    /**
+     * 共享的HTTP客户端（心跳等其他管理API请求复用同一个连接池）
+     */
+    public HttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * 待完成的注册数量
+     */
+    public synchronized int pending() {
+        return inflight.size();
+    }
+
+    /**
+     * 读取 outbox 中上次未完成的注册并重新发送
+     */
+    public void resumeOutbox() {
+        if (!Files.exists(outbox)) {
+            return;
+        }
+        List<Registration> previous = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(outbox, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+                previous.add(new Registration(json.get("url").getAsString(),
+                    json.get("name").getAsString(), json.get("config").getAsString()));
+            }
+        } catch (Exception e) {
+            System.err.println("⚠️  Ignoring unreadable outbox " + outbox + ": " + e.getMessage());
+            return;
+        }
+        if (!previous.isEmpty()) {
+            System.out.println("📮 Resuming " + previous.size() + " pending registration(s) from " + outbox);
+            previous.forEach(this::register);
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        queue.add(entry);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.schedule(this::flush, batchDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 发送合并窗口内的记录：有批量地址且多于一条时合并为一次请求，否则逐条并发发送
+     */
+    private void flush() {
+        List<Entry> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(queue);
+            queue.clear();
+            flushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        if (batchUrl != null && batch.size() > 1) {
+            JsonArray nodes = new JsonArray();
+            for (Entry entry : batch) {
+                nodes.add(entry.registration.toJson());
+            }
+            send(batchUrl, GSON.toJson(nodes), batch);
+        } else {
+            for (Entry entry : batch) {
+                send(entry.registration.getUrl(), GSON.toJson(entry.registration.toJson()), List.of(entry));
+            }
+        }
+    }
+
+    private void send(String url, String body, List<Entry> entries) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Content-Type", "application/json")
+                .timeout(requestTimeout)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        } catch (IllegalArgumentException e) {
+            System.err.println("⚠️  Invalid API URL " + url + ": " + e.getMessage());
+            entries.forEach(entry -> finish(entry, false));
+            return;
+        }
+
+        entries.forEach(entry -> entry.attempts++);
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            .whenComplete((response, error) -> {
+                if (error == null && response.statusCode() >= 200 && response.statusCode() < 300) {
+                    for (Entry entry : entries) {
+                        System.out.println("✅ Node registered: " + entry.registration.getName()
+                            + (entry.attempts > 1 ? " (attempt " + entry.attempts + ")" : ""));
+                        finish(entry, true);
+                    }
+                    return;
+                }
+
+                String reason = error != null ? String.valueOf(rootCause(error).getMessage())
+                    : "HTTP " + response.statusCode() + " " + response.body();
+                for (Entry entry : entries) {
+                    if (error == null && !retryable(response.statusCode())) {
+                        System.err.println("⚠️  Node registration rejected: " + entry.registration.getName() + " - " + reason);
+                        finish(entry, false);
+                    } else if (entry.attempts >= maxAttempts) {
+                        // 保留在 outbox 中，下次启动继续
+                        System.err.println("⚠️  Node registration failed after " + entry.attempts + " attempts: "
+                            + entry.registration.getName() + " - " + reason);
+                        entry.result.complete(false);
+                    } else {
+                        long delay = backoff(entry.attempts);
+                        System.err.println("⚠️  Node registration failed (" + reason + "), retrying "
+                            + entry.registration.getName() + " in " + delay + " ms");
+                        scheduler.schedule(() -> retry(entry), delay, TimeUnit.MILLISECONDS);
+                    }
+                }
+            });
+    }
+
+    private synchronized void retry(Entry entry) {
+        // 期间被新记录取代的不再重试
+        if (inflight.get(entry.registration.key()) == entry) {
+            enqueue(entry);
+        }
+    }
+
+    private void finish(Entry entry, boolean ok) {
+        synchronized (this) {
+            if (inflight.remove(entry.registration.key(), entry)) {
+                persist();
+            }
+        }
+        entry.result.complete(ok);
+    }
+
+    /**
+     * 5xx、408、429 以及网络错误可重试；其他4xx视为永久失败
+     */
+    private static boolean retryable(int status) {
+        return status >= 500 || status == 408 || status == 429;
+    }
+
+    private long backoff(int attempts) {
+        long ceiling = Math.min(maxBackoffMillis, firstRetryMillis << Math.min(attempts - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    /**
+     * 原子重写 outbox；为空时删除文件
+     */
+    private void persist() {
+        try {
+            if (inflight.isEmpty()) {
+                Files.deleteIfExists(outbox);
+                return;
+            }
+            Path tmp = outbox.resolveSibling(outbox.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Entry entry : inflight.values()) {
+                    JsonObject json = entry.registration.toJson();
+                    json.addProperty("url", entry.registration.getUrl());
+                    writer.write(GSON.toJson(json));
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, outbox, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("⚠️  Failed to write outbox " + outbox + ": " + e.getMessage());
+        }
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        while (e.getCause() != null && e.getCause() != e) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
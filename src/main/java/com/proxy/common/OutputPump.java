@@ -0,0 +1,193 @@
+package com.proxy.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Xray 输出泵
+ * 每个输出流一个守护线程持续读取管道，写入堆外环形缓冲区，子进程不会因管道写满而阻塞；
+ * 按行限速转发到控制台（经有界队列交给单独线程，控制台慢时直接丢弃），进程退出时可输出最后N KB。
+ */
+public final class OutputPump {
+
+    private static final int MAX_LINE = 1024;
+
+    private final OutputRing ring;
+    private final int linesPerSecond;
+    private final int dumpBytes;
+    private final PrintStream console;
+    private final BlockingQueue<String> forwardQueue = new ArrayBlockingQueue<>(256);
+    private final AtomicLong suppressed = new AtomicLong();
+
+    // 令牌桶（按秒补充）
+    private long windowStart;
+    private int tokens;
+
+    private Thread[] readers = new Thread[0];
+
+    /**
+     * @param capacity       环形缓冲区字节数
+     * @param linesPerSecond 每秒最多转发的行数，0表示不转发
+     * @param dumpBytes      进程退出时输出的末尾字节数
+     */
+    public OutputPump(int capacity, int linesPerSecond, int dumpBytes, PrintStream console) {
+        this.ring = new OutputRing(capacity);
+        this.linesPerSecond = linesPerSecond;
+        this.dumpBytes = dumpBytes;
+        this.console = console;
+        if (linesPerSecond > 0) {
+            Thread forwarder = new Thread(this::forward, "xray-output-forward");
+            forwarder.setDaemon(true);
+            forwarder.start();
+        }
+    }
+
+    /**
+     * 从环境变量创建：XRAY_OUTPUT_BUFFER_KB（默认256），XRAY_LOG_LINES_PER_SEC（默认20，0为只缓存不转发），
+     * XRAY_CRASH_DUMP_KB（默认16）
+     */
+    public static OutputPump fromEnv() {
+        int kb = Integer.parseInt(System.getenv().getOrDefault("XRAY_OUTPUT_BUFFER_KB", "256"));
+        int lines = Integer.parseInt(System.getenv().getOrDefault("XRAY_LOG_LINES_PER_SEC", "20"));
+        int dumpKb = Integer.parseInt(System.getenv().getOrDefault("XRAY_CRASH_DUMP_KB", "16"));
+        return new OutputPump(kb * 1024, lines, dumpKb * 1024, System.err);
+    }
+
+    /**
+     * 开始读取进程的 stdout 和 stderr（进程需以 Redirect.PIPE 启动）
+     */
+    public synchronized void attach(Process process) {
+        readers = new Thread[] {
+            startReader(process.getInputStream(), "xray-stdout"),
+            startReader(process.getErrorStream(), "xray-stderr")
+        };
+    }
+
+    /**
+     * 等待读取线程读完管道中剩余的输出（进程退出后调用）
+     */
+    public void drain(long timeoutMillis) throws InterruptedException {
+        Thread[] current;
+        synchronized (this) {
+            current = readers;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Thread reader : current) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining > 0) {
+                reader.join(remaining);
+            }
+        }
+    }
+
+    /**
+     * 输出 since（ring.written() 的某个取值）之后写入内容的最后 dumpBytes 字节，
+     * 重启时只输出本次进程的输出
+     */
+    public void dumpTail(PrintStream out, long since) {
+        byte[] tail = ring.tail((int) Math.min(dumpBytes, ring.written() - since));
+        if (tail.length == 0) {
+            return;
+        }
+        out.println("📜 Last " + tail.length + " bytes of Xray output:");
+        out.println(new String(tail, StandardCharsets.UTF_8));
+        out.println("📜 End of Xray output");
+    }
+
+    public OutputRing getRing() {
+        return ring;
+    }
+
+    /**
+     * 被限速丢弃的行数
+     */
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    private Thread startReader(InputStream in, String name) {
+        Thread reader = new Thread(() -> pump(in), name);
+        reader.setDaemon(true);
+        reader.start();
+        return reader;
+    }
+
+    private void pump(InputStream in) {
+        byte[] chunk = new byte[8192];
+        byte[] line = new byte[MAX_LINE];
+        int lineLength = 0;
+        try (in) {
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                ring.write(chunk, 0, n);
+                if (linesPerSecond <= 0) {
+                    continue;
+                }
+                for (int i = 0; i < n; i++) {
+                    byte b = chunk[i];
+                    if (b == '\n') {
+                        offer(line, lineLength);
+                        lineLength = 0;
+                    } else if (lineLength < MAX_LINE) {
+                        line[lineLength++] = b;
+                    }
+                }
+            }
+            if (lineLength > 0 && linesPerSecond > 0) {
+                offer(line, lineLength);
+            }
+        } catch (IOException e) {
+            // 进程退出，管道关闭
+        }
+    }
+
+    /**
+     * 限速后放入转发队列；队列满（控制台跟不上）时丢弃
+     */
+    private void offer(byte[] line, int length) {
+        if (!acquire()) {
+            suppressed.incrementAndGet();
+            return;
+        }
+        if (!forwardQueue.offer(new String(line, 0, length, StandardCharsets.UTF_8))) {
+            suppressed.incrementAndGet();
+        }
+    }
+
+    private synchronized boolean acquire() {
+        long now = System.nanoTime();
+        if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+            windowStart = now;
+            tokens = linesPerSecond;
+        }
+        if (tokens > 0) {
+            tokens--;
+            return true;
+        }
+        return false;
+    }
+
+    private void forward() {
+        long reported = 0;
+        while (true) {
+            String line;
+            try {
+                line = forwardQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            console.println("[xray] " + line);
+            long dropped = suppressed.get();
+            if (dropped > reported) {
+                console.println("[xray] (" + (dropped - reported) + " lines suppressed)");
+                reported = dropped;
+            }
+        }
+    }
+}
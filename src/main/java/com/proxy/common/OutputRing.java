@@ -0,0 +1,68 @@
+package com.proxy.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 固定大小的堆外环形缓冲区
+ * 只保留最近 capacity 字节的输出，写入永不阻塞、永不扩容
+ */
+public final class OutputRing {
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private long written;
+
+    public OutputRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0: " + capacity);
+        }
+        this.capacity = capacity;
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * 追加数据，超出容量时覆盖最旧的内容
+     */
+    public synchronized void write(byte[] bytes, int offset, int length) {
+        if (length > capacity) {
+            // 只有最后 capacity 字节会留下
+            offset += length - capacity;
+            written += length - capacity;
+            length = capacity;
+        }
+        int position = (int) (written % capacity);
+        int first = Math.min(length, capacity - position);
+        buffer.put(position, bytes, offset, first);
+        if (first < length) {
+            buffer.put(0, bytes, offset + first, length - first);
+        }
+        written += length;
+    }
+
+    /**
+     * 最近 max 字节（不足时返回全部保留内容）
+     */
+    public synchronized byte[] tail(int max) {
+        int available = (int) Math.min(written, capacity);
+        int length = Math.min(max, available);
+        byte[] out = new byte[length];
+        int start = (int) ((written - length) % capacity);
+        int first = Math.min(length, capacity - start);
+        buffer.get(start, out, 0, first);
+        if (first < length) {
+            buffer.get(0, out, first, length - first);
+        }
+        return out;
+    }
+
+    /**
+     * 累计写入的字节数（包括已被覆盖的）
+     */
+    public synchronized long written() {
+        return written;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
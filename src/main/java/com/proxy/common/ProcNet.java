@@ -0,0 +1,104 @@
+package com.proxy.common;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * 读取 Linux /proc 中的 TCP 套接字信息（/proc/net/tcp、tcp6 和 /proc/{pid}/fd）
+ */
+final class ProcNet {
+
+    private static final String ESTABLISHED = "01";
+    private static final String LISTEN = "0A";
+
+    private ProcNet() {
+    }
+
+    /**
+     * 本地端口为 port 的 ESTABLISHED TCP 连接数，非Linux时返回-1
+     */
+    static int established(int port) {
+        Set<String> inodes = sockets(local -> local == port, ESTABLISHED, true);
+        return inodes == null ? -1 : inodes.size();
+    }
+
+    /**
+     * 进程 pid 持有的 ESTABLISHED TCP 连接数，不含本地端口为 excludedPort 的连接（例如API端口）
+     * 无法读取 /proc 时抛出 IOException
+     */
+    static int established(long pid, int excludedPort) throws IOException {
+        Set<String> connections = sockets(local -> local != excludedPort, ESTABLISHED, false);
+        if (connections == null) {
+            throw new IOException("/proc/net/tcp is not available");
+        }
+        return connections.isEmpty() ? 0 : owned(pid, connections);
+    }
+
+    /**
+     * 进程 pid 是否持有端口 port 上的监听套接字（SO_REUSEPORT 时同一端口可有多个监听者，按 inode 区分）
+     * 无法读取 /proc 时抛出 IOException
+     */
+    static boolean listens(long pid, int port) throws IOException {
+        Set<String> listeners = sockets(local -> local == port, LISTEN, false);
+        if (listeners == null) {
+            throw new IOException("/proc/net/tcp is not available");
+        }
+        return !listeners.isEmpty() && owned(pid, listeners) > 0;
+    }
+
+    /**
+     * 进程 pid 的文件描述符中属于 inodes 的套接字数量
+     */
+    private static int owned(long pid, Set<String> inodes) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(Paths.get("/proc", String.valueOf(pid), "fd"))) {
+            for (Path fd : fds) {
+                String target;
+                try {
+                    target = Files.readSymbolicLink(fd).toString();
+                } catch (IOException e) {
+                    // 描述符已关闭
+                    continue;
+                }
+                // socket:[inode]
+                if (target.startsWith("socket:[") && inodes.contains(target.substring(8, target.length() - 1))) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 本地端口满足 port、状态为 state 的套接字 inode；countAll 为 true 时每条连接单独计数（inode 可能为0）
+     * 两个文件都无法读取时返回null
+     */
+    private static Set<String> sockets(IntPredicate port, String state, boolean countAll) {
+        Set<String> inodes = new HashSet<>();
+        boolean found = false;
+        for (String file : List.of("/proc/net/tcp", "/proc/net/tcp6")) {
+            try {
+                List<String> lines = Files.readAllLines(Paths.get(file));
+                found = true;
+                for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+                    String[] fields = line.trim().split("\\s+");
+                    // fields[1] 本地地址:端口，fields[3] 状态，fields[9] inode
+                    if (fields.length > 9 && fields[3].equals(state)
+                            && port.test(Integer.parseInt(fields[1].substring(fields[1].lastIndexOf(':') + 1), 16))) {
+                        inodes.add(countAll ? file + fields[0] : fields[9]);
+                    }
+                }
+            } catch (IOException e) {
+                // 无IPv6或非Linux
+            }
+        }
+        return found ? inodes : null;
+    }
+}
@@ -0,0 +1,56 @@
+package com.proxy.common;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import com.proxy.common.api.XrayApiClient;
+
+import java.io.IOException;
+
+/**
+ * 一种代理协议：提供入站配置、多用户写法、API账号和分享链接
+ * 单协议服务器和合并启动器（一个Xray进程承载多个入站）共用
+ */
+public interface ProtocolProvider {
+
+    /**
+     * 协议名（节点名和日志中使用），如 VMess、VLESS-Reality
+     */
+    String getName();
+
+    /**
+     * 入站tag（用户管理通过API按tag增删用户）
+     */
+    String getInboundTag();
+
+    int getPort();
+
+    /**
+     * 主用户UUID（多用户模式下始终保留）
+     */
+    String getUuid();
+
+    /**
+     * 生成入站前的准备（密钥、测速等），与Xray下载并行执行
+     */
+    void prepare() throws Exception;
+
+    /**
+     * 入站配置，settings.clients 中只有主用户；多用户模式下其余用户由 {@link #writeClient} 流式追加
+     */
+    JsonObject inbound();
+
+    /**
+     * 写出用户文件中的一个用户（与主用户或彼此重复的用户已由 StreamingConfigWriter 跳过）
+     */
+    void writeClient(JsonWriter out, User user) throws IOException;
+
+    /**
+     * 通过API添加用户时使用的账号
+     */
+    XrayApiClient.Account account(User user);
+
+    /**
+     * 订阅节点（含分享链接）
+     */
+    ProxyNode node(String serverIp) throws Exception;
+}
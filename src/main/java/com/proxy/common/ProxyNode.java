@@ -0,0 +1,88 @@
+package com.proxy.common;
+
+/**
+ * 订阅中的一个节点
+ * 保存生成分享链接所用的字段，供 Clash / sing-box 等格式直接使用，无需再解析链接
+ */
+public final class ProxyNode {
+
+    private final String protocol;
+    private final String name;
+    private final String server;
+    private final int port;
+    private final String uuid;
+    private final String serverName;
+    private final String publicKey;
+    private final String shortId;
+    private final String link;
+
+    private ProxyNode(String protocol, String name, String server, int port, String uuid,
+                      String serverName, String publicKey, String shortId, String link) {
+        this.protocol = protocol;
+        this.name = name;
+        this.server = server;
+        this.port = port;
+        this.uuid = uuid;
+        this.serverName = serverName;
+        this.publicKey = publicKey;
+        this.shortId = shortId;
+        this.link = link;
+    }
+
+    /**
+     * VLESS + Reality（xtls-rprx-vision，fp=chrome）
+     */
+    public static ProxyNode vless(String name, String server, int port, String uuid,
+                                  String serverName, String publicKey, String shortId, String link) {
+        return new ProxyNode("vless", name, server, port, uuid, serverName, publicKey, shortId, link);
+    }
+
+    /**
+     * VMess over TCP，HTTP头部伪装，alterId 0
+     */
+    public static ProxyNode vmess(String name, String server, int port, String uuid, String link) {
+        return new ProxyNode("vmess", name, server, port, uuid, null, null, null, link);
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * Reality SNI（VMess为null）
+     */
+    public String getServerName() {
+        return serverName;
+    }
+
+    public String getPublicKey() {
+        return publicKey;
+    }
+
+    public String getShortId() {
+        return shortId;
+    }
+
+    /**
+     * 分享链接（vless:// 或 vmess://）
+     */
+    public String getLink() {
+        return link;
+    }
+}
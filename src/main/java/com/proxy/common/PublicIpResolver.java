@@ -0,0 +1,273 @@
+package com.proxy.common;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 公网IP查询
+ * 依次尝试：本机网卡上的公网IPv4 → 未过期的缓存文件 → 并发请求所有查询地址取最先返回的有效结果
+ * → 本机网卡上的公网IPv6（查询全部失败时）。
+ * 网卡上只有IPv6时不直接使用：NAT后的云主机通常有公网IPv4，客户端也未必支持IPv6。
+ * 被屏蔽的查询地址不再拖慢启动，重启时通常无需任何网络请求
+ */
+public class PublicIpResolver {
+
+    public static final String UNKNOWN = "UNKNOWN";
+
+    private static final List<URI> DEFAULT_ENDPOINTS = List.of(
+        URI.create("https://api64.ipify.org"),
+        URI.create("https://ifconfig.me"));
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(3))
+        .build();
+
+    private final List<URI> endpoints;
+    private final Path cacheFile;
+    private final Duration ttl;
+    private final Duration timeout;
+    private final boolean checkInterfaces;
+
+    /**
+     * @param endpoints       查询地址（响应体为IP文本）
+     * @param cacheFile       缓存文件，null表示不缓存
+     * @param ttl             缓存有效期
+     * @param timeout         并发查询的总超时
+     * @param checkInterfaces 是否先检查本机网卡地址
+     */
+    public PublicIpResolver(List<URI> endpoints, Path cacheFile, Duration ttl, Duration timeout,
+                            boolean checkInterfaces) {
+        this.endpoints = List.copyOf(endpoints);
+        this.cacheFile = cacheFile;
+        this.ttl = ttl;
+        this.timeout = timeout;
+        this.checkInterfaces = checkInterfaces;
+    }
+
+    /**
+     * 从环境变量创建：IP_LOOKUP_URLS（逗号分隔），IP_CACHE_FILE（默认 .server-ip，空字符串关闭），
+     * IP_CACHE_TTL（秒，默认3600），IP_LOOKUP_TIMEOUT_MS（默认3000）
+     */
+    public static PublicIpResolver fromEnv() {
+        List<URI> endpoints = DEFAULT_ENDPOINTS;
+        String urls = System.getenv("IP_LOOKUP_URLS");
+        if (urls != null && !urls.trim().isEmpty()) {
+            endpoints = new ArrayList<>();
+            for (String url : urls.split(",")) {
+                if (!url.trim().isEmpty()) {
+                    endpoints.add(URI.create(url.trim()));
+                }
+            }
+        }
+        String cache = System.getenv().getOrDefault("IP_CACHE_FILE", ".server-ip");
+        long ttlSeconds = Long.parseLong(System.getenv().getOrDefault("IP_CACHE_TTL", "3600"));
+        long timeoutMillis = Long.parseLong(System.getenv().getOrDefault("IP_LOOKUP_TIMEOUT_MS", "3000"));
+        return new PublicIpResolver(endpoints, cache.trim().isEmpty() ? null : Paths.get(cache.trim()),
+            Duration.ofSeconds(ttlSeconds), Duration.ofMillis(timeoutMillis), true);
+    }
+
+    /**
+     * 查询公网IP，全部失败时返回 UNKNOWN
+     */
+    public String resolve() {
+        if (checkInterfaces) {
+            String local = interfaceAddress(false);
+            if (local != null) {
+                System.out.println("ℹ️  Using public IPv4 address of a local interface");
+                return local;
+            }
+        }
+
+        String cached = readCache();
+        if (cached != null) {
+            System.out.println("ℹ️  Using cached server IP from " + cacheFile);
+            return cached;
+        }
+
+        String ip = race();
+        if (ip != null) {
+            writeCache(ip);
+            return ip;
+        }
+        if (checkInterfaces) {
+            String ipv6 = interfaceAddress(true);
+            if (ipv6 != null) {
+                System.out.println("⚠️  IP lookup failed, using public IPv6 address of a local interface");
+                return ipv6;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * 同时请求所有查询地址，返回第一个有效IP；其余请求随即取消
+     */
+    String race() {
+        if (endpoints.isEmpty()) {
+            return null;
+        }
+        CompletableFuture<String> winner = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(endpoints.size());
+        List<CompletableFuture<HttpResponse<String>>> requests = new ArrayList<>();
+
+        for (URI endpoint : endpoints) {
+            HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout)
+                .build();
+            CompletableFuture<HttpResponse<String>> future =
+                CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            requests.add(future);
+            future.whenComplete((response, error) -> {
+                String ip = error == null && response.statusCode() == 200 ? parseAddress(response.body()) : null;
+                if (ip != null) {
+                    winner.complete(ip);
+                } else if (remaining.decrementAndGet() == 0) {
+                    // 全部失败
+                    winner.complete(null);
+                }
+            });
+        }
+
+        try {
+            String ip = winner.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (ip != null) {
+                Bootstrap.transferred(ip.length());
+            }
+            return ip;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        } finally {
+            for (CompletableFuture<HttpResponse<String>> request : requests) {
+                request.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 本机网卡上的公网IPv4（ipv6为true时取IPv6）地址，没有时返回null（NAT、云主机通常没有公网IPv4）
+     */
+    static String interfaceAddress(boolean ipv6) {
+        try {
+            for (NetworkInterface nic : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (!nic.isUp() || nic.isLoopback() || nic.isVirtual()) {
+                    continue;
+                }
+                for (InetAddress address : Collections.list(nic.getInetAddresses())) {
+                    if (isPublic(address) && (address instanceof Inet4Address) != ipv6) {
+                        return stripScope(address.getHostAddress());
+                    }
+                }
+            }
+        } catch (SocketException e) {
+            // 无法枚举网卡，走网络查询
+        }
+        return null;
+    }
+
+    /**
+     * 用于URI（vless://、http://）的主机部分：IPv6字面量加方括号，已有方括号或IPv4、域名原样返回
+     */
+    public static String uriHost(String host) {
+        return host.indexOf(':') >= 0 && !host.startsWith("[") ? "[" + host + "]" : host;
+    }
+
+    private static boolean isPublic(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+            || address.isAnyLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            // 100.64.0.0/10 运营商级NAT
+            return !((bytes[0] & 0xFF) == 100 && (bytes[1] & 0xC0) == 64);
+        }
+        // fc00::/7 唯一本地地址
+        return (bytes[0] & 0xFE) != 0xFC;
+    }
+
+    /**
+     * 校验响应体是否为IP地址字面量（不做DNS解析），返回规范化的文本
+     */
+    static String parseAddress(String body) {
+        if (body == null) {
+            return null;
+        }
+        String text = body.trim();
+        if (text.isEmpty() || text.length() > 45) {
+            return null;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!(Character.digit(c, 16) >= 0 || c == '.' || c == ':')) {
+                return null;
+            }
+        }
+        try {
+            // 只含数字、十六进制和分隔符，getByName 只解析字面量
+            InetAddress.getByName(text);
+            return text;
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private String readCache() {
+        if (cacheFile == null || !Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        try {
+            Instant modified = Files.getLastModifiedTime(cacheFile).toInstant();
+            if (modified.plus(ttl).isBefore(Instant.now())) {
+                return null;
+            }
+            return parseAddress(Files.readString(cacheFile, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeCache(String ip) {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            Path absolute = cacheFile.toAbsolutePath();
+            Path tmp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+            Files.writeString(tmp, ip + "\n", StandardCharsets.UTF_8);
+            Files.move(tmp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("⚠️  Failed to cache server IP: " + e.getMessage());
+        }
+    }
+
+    private static String stripScope(String address) {
+        int percent = address.indexOf('%');
+        return percent < 0 ? address : address.substring(0, percent);
+    }
+}
@@ -0,0 +1,375 @@
+package com.proxy.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 分段并行下载
+ * 按 HTTP Range 把文件分成固定大小的块，多个连接并行下载，按位置直接写入预分配的文件；
+ * 已完成的块记录在 {dest}.progress 中，中断后再次下载只补齐缺失的块。
+ * 服务器不支持 Range 时退化为单连接下载（无法续传）
+ *
+ * 任一连接超过 stallTimeout 没有收到数据时断开重连，从该块已收到的位置继续
+ */
+public class RangedDownloader {
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final HttpClient client;
+    private final int connections;
+    private final long chunkSize;
+    private final Duration stallTimeout;
+    private final int maxAttempts;
+
+    public RangedDownloader(HttpClient client, int connections, long chunkSize, Duration stallTimeout, int maxAttempts) {
+        if (connections < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("connections and chunkSize must be positive");
+        }
+        this.client = client;
+        this.connections = connections;
+        this.chunkSize = chunkSize;
+        this.stallTimeout = stallTimeout;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * 从环境变量创建：XRAY_DOWNLOAD_CONNECTIONS（默认4）、XRAY_DOWNLOAD_CHUNK_KB（默认1024）、
+     * XRAY_DOWNLOAD_STALL_SECONDS（默认15）
+     */
+    public static RangedDownloader fromEnv(HttpClient client) {
+        int connections = Integer.parseInt(System.getenv().getOrDefault("XRAY_DOWNLOAD_CONNECTIONS", "4"));
+        long chunkKb = Long.parseLong(System.getenv().getOrDefault("XRAY_DOWNLOAD_CHUNK_KB", "1024"));
+        long stall = Long.parseLong(System.getenv().getOrDefault("XRAY_DOWNLOAD_STALL_SECONDS", "15"));
+        return new RangedDownloader(client, connections, chunkKb * 1024, Duration.ofSeconds(stall), 5);
+    }
+
+    /**
+     * 下载 uri 到 dest，返回本次实际传输的字节数（续传时不含已有部分）
+     * 成功后删除进度文件；失败时保留 dest 和进度文件供下次续传
+     */
+    public long download(URI uri, Path dest) throws IOException, InterruptedException {
+        // 用 bytes=0-0 探测：206 表示支持 Range 并给出总长度，200 则直接用这个响应单连接下载
+        HttpResponse<InputStream> probe = client.send(request(uri, "bytes=0-0", null),
+            HttpResponse.BodyHandlers.ofInputStream());
+        Matcher range = probe.statusCode() == 206
+            ? CONTENT_RANGE.matcher(probe.headers().firstValue("Content-Range").orElse("")) : null;
+
+        if (probe.statusCode() == 200) {
+            return single(probe, dest);
+        }
+        probe.body().close();
+        if (range == null) {
+            throw new IOException("Download failed: HTTP " + probe.statusCode());
+        }
+        if (!range.matches() || range.group(3).equals("*")) {
+            // 不知道总长度，无法分块
+            return single(client.send(request(uri, null, null), HttpResponse.BodyHandlers.ofInputStream()), dest);
+        }
+
+        long length = Long.parseLong(range.group(3));
+        String validator = probe.headers().firstValue("ETag")
+            .or(() -> probe.headers().firstValue("Last-Modified"))
+            .orElse("");
+        return ranged(uri, dest, length, validator);
+    }
+
+    /**
+     * 单连接下载（服务器不支持 Range）
+     */
+    private long single(HttpResponse<InputStream> response, Path dest) throws IOException {
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Download failed: HTTP " + response.statusCode());
+        }
+        System.out.println("ℹ️  Server does not support ranges, downloading over one connection");
+        Files.deleteIfExists(progressPath(dest));
+        try (InputStream in = response.body();
+             FileChannel channel = FileChannel.open(dest, StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Watchdog watchdog = new Watchdog()) {
+            AtomicLong written = new AtomicLong();
+            copy(watchdog.watch(in), channel, 0, Long.MAX_VALUE, written);
+            return written.get();
+        }
+    }
+
+    /**
+     * 分块并行下载，已完成的块从进度文件恢复
+     */
+    private long ranged(URI uri, Path dest, long length, String validator)
+            throws IOException, InterruptedException {
+        int chunks = (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+        Path progress = progressPath(dest);
+        BitSet done = readProgress(progress, length, chunkSize, validator);
+        if (done == null || !Files.exists(dest) || Files.size(dest) != length) {
+            done = new BitSet(chunks);
+            Files.writeString(progress, length + " " + chunkSize + " " + validator + "\n", StandardCharsets.UTF_8);
+        }
+
+        ConcurrentLinkedQueue<Integer> pending = new ConcurrentLinkedQueue<>();
+        for (int i = done.nextClearBit(0); i < chunks; i = done.nextClearBit(i + 1)) {
+            pending.add(i);
+        }
+        int resumed = chunks - pending.size();
+        System.out.println("📥 " + length / 1024 + " KB in " + chunks + " chunks over "
+            + Math.min(connections, pending.size()) + " connections"
+            + (resumed > 0 ? " (resuming, " + resumed + " chunks already done)" : ""));
+
+        AtomicLong transferred = new AtomicLong();
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(connections, pending.size())), r -> {
+            Thread t = new Thread(r, "download-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try (FileChannel channel = FileChannel.open(dest, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileChannel progressLog = FileChannel.open(progress, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             Watchdog watchdog = new Watchdog()) {
+            // 预分配：稀疏文件，各块按位置写入
+            if (channel.size() != length) {
+                channel.truncate(length);
+                channel.write(ByteBuffer.allocate(1), length - 1);
+            }
+
+            List<Future<Void>> workers = new ArrayList<>();
+            for (int w = 0; w < Math.min(connections, pending.size()); w++) {
+                workers.add(executor.submit(() -> {
+                    Integer chunk;
+                    while ((chunk = pending.poll()) != null) {
+                        long start = chunk * chunkSize;
+                        long end = Math.min(length, start + chunkSize) - 1;
+                        transferred.addAndGet(fetchChunk(uri, validator, channel, watchdog, start, end));
+                        // 先落盘数据再记录进度，保证记录过的块一定完整
+                        channel.force(false);
+                        synchronized (progressLog) {
+                            progressLog.write(ByteBuffer.wrap((chunk + "\n").getBytes(StandardCharsets.UTF_8)));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            // 等所有连接结束再报告失败：其余连接完成的块仍会记录，下次续传时跳过
+            IOException failure = null;
+            for (Future<Void> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (failure == null) {
+                        failure = cause instanceof IOException
+                            ? (IOException) cause : new IOException("Download failed: " + cause, cause);
+                    }
+                }
+            }
+            if (failure instanceof ChangedException) {
+                // 已下载的块属于旧文件，下次从头开始
+                Files.deleteIfExists(progress);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Files.deleteIfExists(progress);
+        return transferred.get();
+    }
+
+    /**
+     * 下载 [start, end] 一块，断开或停滞时从已收到的位置重试
+     */
+    private long fetchChunk(URI uri, String validator, FileChannel channel, Watchdog watchdog, long start, long end)
+            throws IOException, InterruptedException {
+        // 中途断开时 copy 抛出异常，已写入的字节仍计入 received，重试从这里继续
+        AtomicLong received = new AtomicLong();
+        long position = start;
+        IOException last = null;
+        for (int attempt = 1; attempt <= maxAttempts && position <= end; attempt++) {
+            try {
+                HttpResponse<InputStream> response = client.send(
+                    request(uri, "bytes=" + position + "-" + end, validator),
+                    HttpResponse.BodyHandlers.ofInputStream());
+                if (response.statusCode() != 206) {
+                    response.body().close();
+                    // If-Range 不匹配时服务器返回200整个文件：文件已变化，续传数据作废
+                    throw new ChangedException("Range request for bytes " + position + "-" + end
+                        + " returned HTTP " + response.statusCode());
+                }
+                try (InputStream in = watchdog.watch(response.body())) {
+                    copy(in, channel, position, end - position + 1, received);
+                }
+            } catch (ChangedException e) {
+                throw e;
+            } catch (IOException e) {
+                last = e;
+                position = start + received.get();
+                if (position <= end) {
+                    Thread.sleep(Math.min(4000, 250L << (attempt - 1)));
+                }
+            }
+            position = start + received.get();
+        }
+        if (position <= end) {
+            throw new IOException("Chunk " + start + "-" + end + " failed after " + maxAttempts + " attempts", last);
+        }
+        return position - start;
+    }
+
+    /**
+     * 从输入流按位置写入文件，最多 limit 字节；写入的字节数随时累加到 written（读取中途失败时也已计入）
+     */
+    private static void copy(InputStream in, FileChannel channel, long position, long limit, AtomicLong written)
+            throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        long copied = 0;
+        int n;
+        while (copied < limit && (n = in.read(buffer, 0, (int) Math.min(buffer.length, limit - copied))) > 0) {
+            wrapped.clear().limit(n);
+            while (wrapped.hasRemaining()) {
+                int w = channel.write(wrapped, position + copied);
+                copied += w;
+                written.addAndGet(w);
+            }
+        }
+    }
+
+    private HttpRequest request(URI uri, String range, String validator) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder().uri(uri).timeout(stallTimeout);
+        if (range != null) {
+            builder.header("Range", range);
+        }
+        if (validator != null && !validator.isEmpty()) {
+            builder.header("If-Range", validator);
+        }
+        return builder.build();
+    }
+
+    static Path progressPath(Path dest) {
+        return dest.resolveSibling(dest.getFileName() + ".progress");
+    }
+
+    /**
+     * 读取进度文件：首行为 "长度 块大小 校验值"，之后每行一个已完成的块号；与当前文件不一致时返回null
+     */
+    private static BitSet readProgress(Path progress, long length, long chunkSize, String validator) throws IOException {
+        if (!Files.exists(progress)) {
+            return null;
+        }
+        List<String> lines = Files.readAllLines(progress, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(length + " " + chunkSize + " " + validator)) {
+            return null;
+        }
+        BitSet done = new BitSet();
+        for (String line : lines.subList(1, lines.size())) {
+            if (!line.isBlank()) {
+                done.set(Integer.parseInt(line.trim()));
+            }
+        }
+        return done;
+    }
+
+    /**
+     * 远端文件在续传期间发生变化
+     */
+    private static final class ChangedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ChangedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 停滞检测：超过 stallTimeout 没有读到数据的流会被关闭，读取方随之收到异常并重试
+     */
+    private final class Watchdog implements AutoCloseable {
+        private final Map<InputStream, AtomicLong> streams = new ConcurrentHashMap<>();
+        private final ScheduledExecutorService scheduler;
+
+        Watchdog() {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "download-watchdog");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(100, stallTimeout.toMillis() / 4);
+            scheduler.scheduleAtFixedRate(this::check, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        InputStream watch(InputStream in) {
+            AtomicLong lastRead = new AtomicLong(System.nanoTime());
+            InputStream watched = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    int b = in.read();
+                    lastRead.set(System.nanoTime());
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = in.read(b, off, len);
+                    lastRead.set(System.nanoTime());
+                    return n;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    streams.remove(this);
+                    in.close();
+                }
+            };
+            streams.put(watched, lastRead);
+            return watched;
+        }
+
+        private void check() {
+            long now = System.nanoTime();
+            streams.forEach((in, lastRead) -> {
+                if (now - lastRead.get() > stallTimeout.toNanos()) {
+                    System.out.println("⚠️  Download stalled for " + stallTimeout.toSeconds() + "s, reconnecting");
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        // 关闭即可，读取方会收到异常
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+            scheduler.shutdownNow();
+        }
+    }
+}
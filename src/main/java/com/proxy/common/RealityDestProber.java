@@ -0,0 +1,245 @@
+package com.proxy.common;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reality目标站点测速
+ * 并发对候选站点做 TLS 1.3 握手（TCP连接 + 握手），按 p50、p95 排序，
+ * 不支持 TLS 1.3 或证书无效的站点不参与排名
+ */
+public class RealityDestProber {
+
+    /**
+     * 默认候选（均为支持 TLS 1.3 和 X25519 的大型站点）
+     */
+    private static final List<String> DEFAULT_CANDIDATES = List.of(
+        "www.microsoft.com:443",
+        "www.apple.com:443",
+        "www.cloudflare.com:443",
+        "www.amazon.com:443",
+        "dl.google.com:443",
+        "www.nvidia.com:443");
+
+    /**
+     * 单个候选的测速结果
+     */
+    public static final class Result {
+        private final String host;
+        private final int port;
+        private final long[] samplesNanos;
+        private final int failures;
+        private final String error;
+
+        Result(String host, int port, long[] samplesNanos, int failures, String error) {
+            this.host = host;
+            this.port = port;
+            this.samplesNanos = samplesNanos;
+            this.failures = failures;
+            this.error = error;
+            Arrays.sort(this.samplesNanos);
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * Xray realitySettings.dest 格式
+         */
+        public String getDest() {
+            return host + ":" + port;
+        }
+
+        public int getSuccesses() {
+            return samplesNanos.length;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * 最后一次失败的原因（全部成功时为null）
+         */
+        public String getError() {
+            return error;
+        }
+
+        public double p50Millis() {
+            return percentile(0.50);
+        }
+
+        public double p95Millis() {
+            return percentile(0.95);
+        }
+
+        /**
+         * 参与排名：至少一半的握手成功
+         */
+        public boolean isUsable() {
+            return samplesNanos.length > 0 && samplesNanos.length >= failures;
+        }
+
+        private double percentile(double p) {
+            if (samplesNanos.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(p * samplesNanos.length) - 1;
+            return samplesNanos[Math.max(0, index)] / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            if (!isUsable()) {
+                return getDest() + " unusable (" + failures + " failed: " + error + ")";
+            }
+            return String.format("%s p50=%.1fms p95=%.1fms (%d/%d ok)",
+                getDest(), p50Millis(), p95Millis(), samplesNanos.length, samplesNanos.length + failures);
+        }
+    }
+
+    private static final Comparator<Result> RANKING = Comparator
+        .comparing(Result::isUsable).reversed()
+        .thenComparingDouble(r -> r.isUsable() ? r.p50Millis() : Double.MAX_VALUE)
+        .thenComparingDouble(r -> r.isUsable() ? r.p95Millis() : Double.MAX_VALUE);
+
+    private final List<String> candidates;
+    private final int samples;
+    private final Duration timeout;
+    private final SSLSocketFactory factory;
+
+    /**
+     * @param candidates host:port 列表（省略端口时为443）
+     * @param samples    每个候选的握手次数
+     * @param timeout    单次连接和握手的超时
+     * @param factory    TLS套接字工厂（测试时可传入信任本地证书的工厂）
+     */
+    public RealityDestProber(List<String> candidates, int samples, Duration timeout, SSLSocketFactory factory) {
+        this.candidates = List.copyOf(candidates);
+        this.samples = samples;
+        this.timeout = timeout;
+        this.factory = factory;
+    }
+
+    /**
+     * 从环境变量创建：REALITY_CANDIDATES（逗号分隔 host[:port]），REALITY_PROBE_SAMPLES（默认5）
+     */
+    public static RealityDestProber fromEnv() {
+        List<String> candidates = DEFAULT_CANDIDATES;
+        String env = System.getenv("REALITY_CANDIDATES");
+        if (env != null && !env.trim().isEmpty()) {
+            candidates = new ArrayList<>();
+            for (String candidate : env.split(",")) {
+                if (!candidate.trim().isEmpty()) {
+                    candidates.add(candidate.trim());
+                }
+            }
+        }
+        int samples = Integer.parseInt(System.getenv().getOrDefault("REALITY_PROBE_SAMPLES", "5"));
+        return new RealityDestProber(candidates, samples, Duration.ofSeconds(3),
+            (SSLSocketFactory) SSLSocketFactory.getDefault());
+    }
+
+    /**
+     * 并发测速所有候选，返回排名（可用的在前，按 p50、p95 升序）
+     */
+    public List<Result> probe() {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, candidates.size()), r -> {
+            Thread t = new Thread(r, "reality-probe");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<CompletableFuture<Result>> futures = new ArrayList<>();
+            for (String candidate : candidates) {
+                futures.add(CompletableFuture.supplyAsync(() -> probe(candidate), executor));
+            }
+            List<Result> results = new ArrayList<>();
+            for (CompletableFuture<Result> future : futures) {
+                results.add(future.join());
+            }
+            results.sort(RANKING);
+            return List.copyOf(results);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 最快的可用候选，没有可用候选时返回null
+     */
+    public static Result best(List<Result> ranking) {
+        return ranking.isEmpty() || !ranking.get(0).isUsable() ? null : ranking.get(0);
+    }
+
+    public static void printRanking(List<Result> ranking) {
+        for (int i = 0; i < ranking.size(); i++) {
+            System.out.println("   " + (i + 1) + ". " + ranking.get(i));
+        }
+    }
+
+    /**
+     * 对一个候选顺序握手 samples 次（同一站点不并发，避免互相干扰）
+     */
+    private Result probe(String candidate) {
+        int colon = candidate.lastIndexOf(':');
+        String host = colon < 0 ? candidate : candidate.substring(0, colon);
+        int port = colon < 0 ? 443 : Integer.parseInt(candidate.substring(colon + 1));
+
+        long[] ok = new long[samples];
+        int successes = 0;
+        int failures = 0;
+        String error = null;
+        for (int i = 0; i < samples; i++) {
+            try {
+                ok[successes] = handshake(host, port);
+                successes++;
+            } catch (IOException e) {
+                failures++;
+                error = Objects.toString(e.getMessage(), e.getClass().getSimpleName());
+            }
+        }
+        return new Result(host, port, Arrays.copyOf(ok, successes), failures, error);
+    }
+
+    /**
+     * 一次 TCP 连接 + TLS 1.3 握手的耗时（纳秒）
+     */
+    private long handshake(String host, int port) throws IOException {
+        int timeoutMillis = (int) timeout.toMillis();
+        long start = System.nanoTime();
+        try (Socket tcp = new Socket()) {
+            tcp.connect(new InetSocketAddress(host, port), timeoutMillis);
+            tcp.setSoTimeout(timeoutMillis);
+            try (SSLSocket tls = (SSLSocket) factory.createSocket(tcp, host, port, false)) {
+                SSLParameters parameters = tls.getSSLParameters();
+                parameters.setProtocols(new String[] {"TLSv1.3"});
+                parameters.setServerNames(List.of(new SNIHostName(host)));
+                // 证书与主机名不匹配的站点不适合作为目标
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                tls.setSSLParameters(parameters);
+                tls.startHandshake();
+                return System.nanoTime() - start;
+            }
+        }
+    }
+}
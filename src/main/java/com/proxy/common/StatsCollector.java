@@ -0,0 +1,330 @@
+package com.proxy.common;
+
+import com.proxy.common.api.XrayApiClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流量统计采集
+ * 定期以 reset=true 读取 Xray 计数器（读取后清零），把增量累加到按用户下标的 long 数组中；
+ * Xray 重启只会丢失最后一个采集周期内的增量，不会出现计数回退。
+ * 以 Prometheus 文本格式输出：每个用户的标签前缀只编码一次，抓取时复用同一个缓冲区，不产生临时对象。
+ * /metrics 没有认证，默认只监听 127.0.0.1。
+ */
+public class StatsCollector {
+
+    private static final String USER_PREFIX = "user>>>";
+    private static final String INBOUND_PREFIX = "inbound>>>";
+    private static final String UPLINK_SUFFIX = ">>>traffic>>>uplink";
+    private static final String DOWNLINK_SUFFIX = ">>>traffic>>>downlink";
+
+    private static final byte[] USER_UP_HELP = ("# HELP xray_user_uplink_bytes_total Bytes sent by each user.\n"
+        + "# TYPE xray_user_uplink_bytes_total counter\n").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] USER_DOWN_HELP = ("# HELP xray_user_downlink_bytes_total Bytes received by each user.\n"
+        + "# TYPE xray_user_downlink_bytes_total counter\n").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INBOUND_UP_HELP = ("# HELP xray_inbound_uplink_bytes_total Bytes sent through each inbound.\n"
+        + "# TYPE xray_inbound_uplink_bytes_total counter\n").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INBOUND_DOWN_HELP = ("# HELP xray_inbound_downlink_bytes_total Bytes received through each inbound.\n"
+        + "# TYPE xray_inbound_downlink_bytes_total counter\n").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] USERS_HELP = ("# HELP xray_stats_users Users with traffic counters.\n"
+        + "# TYPE xray_stats_users gauge\nxray_stats_users ").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ERRORS_HELP = ("# HELP xray_stats_poll_errors_total Failed counter queries.\n"
+        + "# TYPE xray_stats_poll_errors_total counter\nxray_stats_poll_errors_total ").getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 一组按下标存放的计数器（用户或入站）
+     */
+    private static final class Counters {
+        final String metricUp;
+        final String metricDown;
+        final String label;
+        final Map<String, Integer> index = new HashMap<>();
+        byte[][] upPrefix = new byte[16][];
+        byte[][] downPrefix = new byte[16][];
+        long[] up = new long[16];
+        long[] down = new long[16];
+        int size;
+
+        Counters(String metricUp, String metricDown, String label) {
+            this.metricUp = metricUp;
+            this.metricDown = metricDown;
+            this.label = label;
+        }
+
+        int slot(String name) {
+            Integer slot = index.get(name);
+            if (slot != null) {
+                return slot;
+            }
+            if (size == up.length) {
+                int capacity = size * 2;
+                up = Arrays.copyOf(up, capacity);
+                down = Arrays.copyOf(down, capacity);
+                upPrefix = Arrays.copyOf(upPrefix, capacity);
+                downPrefix = Arrays.copyOf(downPrefix, capacity);
+            }
+            String labels = "{" + label + "=\"" + escape(name) + "\"} ";
+            upPrefix[size] = (metricUp + labels).getBytes(StandardCharsets.UTF_8);
+            downPrefix[size] = (metricDown + labels).getBytes(StandardCharsets.UTF_8);
+            index.put(name, size);
+            return size++;
+        }
+    }
+
+    private final List<XrayApiClient> apis;
+    private final Counters users = new Counters("xray_user_uplink_bytes_total", "xray_user_downlink_bytes_total", "user");
+    private final Counters inbounds = new Counters("xray_inbound_uplink_bytes_total", "xray_inbound_downlink_bytes_total", "inbound");
+    private final ScheduledExecutorService scheduler;
+    private ExecutorService httpExecutor;
+    private long pollErrors;
+
+    // 抓取缓冲区，只在持有锁时使用
+    private byte[] buffer = new byte[1 << 16];
+    private int length;
+    // 响应缓冲区，只在 HTTP 线程中使用：在锁内从 buffer 复制，锁外写出
+    private byte[] response = new byte[0];
+    private HttpServer server;
+
+    /**
+     * @param apis 每个 Xray 进程一个 API 客户端，计数器求和
+     */
+    public StatsCollector(List<XrayApiClient> apis) {
+        this.apis = List.copyOf(apis);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stats-collector");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 按固定间隔采集
+     */
+    public void start(long intervalSeconds) {
+        scheduler.scheduleWithFixedDelay(this::poll, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 在 port 上提供 /metrics，监听地址取 METRICS_BIND（默认 127.0.0.1，0.0.0.0 为所有网卡）
+     */
+    public void serve(int port) throws IOException {
+        serve(new InetSocketAddress(System.getenv().getOrDefault("METRICS_BIND", "127.0.0.1").trim(), port));
+    }
+
+    /**
+     * 在 address 上提供 /metrics（单独的单线程处理，复用同一缓冲区；抓取慢不影响采集）
+     */
+    public void serve(InetSocketAddress address) throws IOException {
+        server = HttpServer.create(address, 64);
+        server.createContext("/metrics", this::handle);
+        httpExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "stats-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(httpExecutor);
+        server.start();
+        InetSocketAddress bound = server.getAddress();
+        System.out.println("📈 Metrics: http://" + bound.getHostString() + ":" + bound.getPort() + "/metrics");
+        if (!bound.getAddress().isLoopbackAddress()) {
+            System.out.println("⚠️  Metrics endpoint has no authentication and is reachable from the network");
+        }
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            httpExecutor.shutdownNow();
+        }
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 读取并清零所有进程的计数器，增量累加到数组
+     */
+    public void poll() {
+        for (XrayApiClient api : apis) {
+            Map<String, Long> stats;
+            try {
+                stats = api.queryStats("", true);
+            } catch (IOException e) {
+                synchronized (this) {
+                    pollErrors++;
+                }
+                continue;
+            }
+            synchronized (this) {
+                for (Map.Entry<String, Long> entry : stats.entrySet()) {
+                    add(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * 累加一个计数器增量（名称形如 user>>>email>>>traffic>>>uplink）
+     */
+    public synchronized void add(String name, long delta) {
+        Counters counters;
+        int start;
+        if (name.startsWith(USER_PREFIX)) {
+            counters = users;
+            start = USER_PREFIX.length();
+        } else if (name.startsWith(INBOUND_PREFIX)) {
+            counters = inbounds;
+            start = INBOUND_PREFIX.length();
+        } else {
+            return;
+        }
+
+        boolean uplink = name.endsWith(UPLINK_SUFFIX);
+        if (!uplink && !name.endsWith(DOWNLINK_SUFFIX)) {
+            return;
+        }
+        int end = name.length() - (uplink ? UPLINK_SUFFIX.length() : DOWNLINK_SUFFIX.length());
+        if (end < start) {
+            return;
+        }
+        int slot = counters.slot(name.substring(start, end));
+        if (uplink) {
+            counters.up[slot] += delta;
+        } else {
+            counters.down[slot] += delta;
+        }
+    }
+
+    /**
+     * 用户累计上行字节数，未知用户返回0
+     */
+    public synchronized long uplink(String email) {
+        Integer slot = users.index.get(email);
+        return slot == null ? 0 : users.up[slot];
+    }
+
+    /**
+     * 用户累计下行字节数，未知用户返回0
+     */
+    public synchronized long downlink(String email) {
+        Integer slot = users.index.get(email);
+        return slot == null ? 0 : users.down[slot];
+    }
+
+    public synchronized int userCount() {
+        return users.size;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().close();
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            int length;
+            synchronized (this) {
+                length = render();
+                if (response.length < length) {
+                    response = new byte[buffer.length];
+                }
+                System.arraycopy(buffer, 0, response, 0, length);
+            }
+            // 写出时不持有锁：抓取方读取慢不会阻塞采集
+            exchange.sendResponseHeaders(200, length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response, 0, length);
+            }
+        }
+    }
+
+    /**
+     * 把所有计数器写入复用的缓冲区，返回写入长度
+     */
+    public synchronized int render() {
+        length = 0;
+        write(USER_UP_HELP);
+        writeSeries(users.upPrefix, users.up, users.size);
+        write(USER_DOWN_HELP);
+        writeSeries(users.downPrefix, users.down, users.size);
+        write(INBOUND_UP_HELP);
+        writeSeries(inbounds.upPrefix, inbounds.up, inbounds.size);
+        write(INBOUND_DOWN_HELP);
+        writeSeries(inbounds.downPrefix, inbounds.down, inbounds.size);
+        write(USERS_HELP);
+        writeLong(users.size);
+        writeByte('\n');
+        write(ERRORS_HELP);
+        writeLong(pollErrors);
+        writeByte('\n');
+        return length;
+    }
+
+    /**
+     * render() 的输出（前 length 字节有效，下次 render() 会被覆盖）
+     */
+    public synchronized byte[] rendered() {
+        return buffer;
+    }
+
+    private void writeSeries(byte[][] prefixes, long[] values, int size) {
+        for (int i = 0; i < size; i++) {
+            write(prefixes[i]);
+            writeLong(values[i]);
+            writeByte('\n');
+        }
+    }
+
+    private void write(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void writeByte(char c) {
+        ensure(1);
+        buffer[length++] = (byte) c;
+    }
+
+    /**
+     * 直接写十进制数字，不经过 String
+     */
+    private void writeLong(long value) {
+        ensure(20);
+        if (value == 0) {
+            buffer[length++] = '0';
+            return;
+        }
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 0;
+        for (long v = value; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
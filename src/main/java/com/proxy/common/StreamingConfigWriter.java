@@ -0,0 +1,122 @@
+package com.proxy.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式配置写入
+ * 配置骨架用 JsonObject 描述，clients 等大数组从用户文件逐条写出，不在内存中构建完整的树；
+ * 与数组中已有客户端或彼此之间id/email重复的用户不会写出
+ */
+public final class StreamingConfigWriter {
+
+    /**
+     * 单个客户端对象的写法（不同协议字段不同）
+     */
+    @FunctionalInterface
+    public interface ClientTemplate {
+        void write(JsonWriter out, User user) throws IOException;
+    }
+
+    private static final class Source {
+        final Path usersFile;
+        final ClientTemplate template;
+
+        Source(Path usersFile, ClientTemplate template) {
+            this.usersFile = usersFile;
+            this.template = template;
+        }
+    }
+
+    private final Map<JsonArray, Source> sources = new IdentityHashMap<>();
+
+    /**
+     * 写出 placeholder 数组时，在其已有元素之后追加用户文件中的所有用户
+     */
+    public StreamingConfigWriter stream(JsonArray placeholder, Path usersFile, ClientTemplate template) {
+        sources.put(placeholder, new Source(usersFile, template));
+        return this;
+    }
+
+    /**
+     * 以紧凑格式写入配置，先写临时文件再原子替换
+     */
+    public void write(JsonObject skeleton, Path target) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Path tmp = dir.resolve("." + target.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 1 << 16);
+             JsonWriter out = new JsonWriter(writer)) {
+            out.setHtmlSafe(false);
+            writeElement(out, skeleton);
+        }
+
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 占位数组中已有的客户端（带 id 和 email 的对象）
+     */
+    private static List<User> existing(JsonArray array) {
+        List<User> users = new ArrayList<>();
+        for (JsonElement item : array) {
+            if (item.isJsonObject() && item.getAsJsonObject().has("id")) {
+                JsonObject client = item.getAsJsonObject();
+                users.add(new User(client.get("id").getAsString(),
+                    client.has("email") ? client.get("email").getAsString() : null));
+            }
+        }
+        return users;
+    }
+
+    private void writeElement(JsonWriter out, JsonElement element) throws IOException {
+        if (element == null || element.isJsonNull()) {
+            out.nullValue();
+        } else if (element.isJsonObject()) {
+            out.beginObject();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                out.name(entry.getKey());
+                writeElement(out, entry.getValue());
+            }
+            out.endObject();
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            out.beginArray();
+            for (JsonElement item : array) {
+                writeElement(out, item);
+            }
+            Source source = sources.get(array);
+            if (source != null) {
+                // 数组中已有的客户端（主用户）参与去重
+                UserFile.forEach(source.usersFile, existing(array), user -> source.template.write(out, user));
+            }
+            out.endArray();
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                out.value(primitive.getAsBoolean());
+            } else if (primitive.isNumber()) {
+                out.value(primitive.getAsNumber());
+            } else {
+                out.value(primitive.getAsString());
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.proxy.common;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 订阅输出格式
+ * 逐个节点直接写入输出流，不构建中间文档，节点很多时内存占用也只与输出大小有关
+ */
+public enum SubscriptionFormat {
+
+    /**
+     * 换行分隔的分享链接，整体Base64（v2rayN 等通用格式）
+     */
+    BASE64("text/plain; charset=utf-8") {
+        @Override
+        void write(List<ProxyNode> nodes, OutputStream out) throws IOException {
+            try (OutputStream encoder = Base64.getEncoder().wrap(nonClosing(out))) {
+                for (int i = 0; i < nodes.size(); i++) {
+                    if (i > 0) {
+                        encoder.write('\n');
+                    }
+                    encoder.write(nodes.get(i).getLink().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    },
+
+    /**
+     * Clash（Meta内核）配置：proxies + 一个手动选择组 + 全部流量走该组
+     */
+    CLASH("text/yaml; charset=utf-8") {
+        @Override
+        void write(List<ProxyNode> nodes, OutputStream out) throws IOException {
+            Writer w = writer(out);
+            w.write("proxies:\n");
+            for (ProxyNode node : nodes) {
+                w.write("  - name: ");
+                yamlString(w, node.getName());
+                w.write("\n    type: ");
+                w.write(node.getProtocol());
+                w.write("\n    server: ");
+                yamlString(w, node.getServer());
+                w.write("\n    port: ");
+                w.write(Integer.toString(node.getPort()));
+                w.write("\n    uuid: ");
+                w.write(node.getUuid());
+                w.write("\n    udp: true\n");
+                if ("vless".equals(node.getProtocol())) {
+                    w.write("    network: tcp\n");
+                    w.write("    tls: true\n");
+                    w.write("    flow: xtls-rprx-vision\n");
+                    w.write("    servername: ");
+                    yamlString(w, node.getServerName());
+                    w.write("\n    client-fingerprint: chrome\n");
+                    w.write("    reality-opts:\n");
+                    w.write("      public-key: ");
+                    w.write(node.getPublicKey());
+                    w.write("\n      short-id: ");
+                    yamlString(w, node.getShortId());
+                    w.write('\n');
+                } else {
+                    w.write("    alterId: 0\n");
+                    w.write("    cipher: auto\n");
+                    w.write("    network: http\n");
+                    w.write("    http-opts:\n");
+                    w.write("      method: GET\n");
+                    w.write("      path:\n");
+                    w.write("        - /\n");
+                }
+            }
+            w.write("proxy-groups:\n");
+            w.write("  - name: PROXY\n");
+            w.write("    type: select\n");
+            w.write("    proxies:\n");
+            for (ProxyNode node : nodes) {
+                w.write("      - ");
+                yamlString(w, node.getName());
+                w.write('\n');
+            }
+            w.write("rules:\n");
+            w.write("  - MATCH,PROXY\n");
+            w.flush();
+        }
+    },
+
+    /**
+     * sing-box 配置：每个节点一个 outbound，外加 selector 和 direct
+     */
+    SING_BOX("application/json; charset=utf-8") {
+        @Override
+        void write(List<ProxyNode> nodes, OutputStream out) throws IOException {
+            JsonWriter json = new JsonWriter(writer(out));
+            json.beginObject();
+            json.name("outbounds").beginArray();
+
+            json.beginObject();
+            json.name("type").value("selector");
+            json.name("tag").value("proxy");
+            json.name("outbounds").beginArray();
+            for (ProxyNode node : nodes) {
+                json.value(node.getName());
+            }
+            json.endArray();
+            json.endObject();
+
+            for (ProxyNode node : nodes) {
+                json.beginObject();
+                json.name("type").value(node.getProtocol());
+                json.name("tag").value(node.getName());
+                json.name("server").value(node.getServer());
+                json.name("server_port").value(node.getPort());
+                json.name("uuid").value(node.getUuid());
+                if ("vless".equals(node.getProtocol())) {
+                    json.name("flow").value("xtls-rprx-vision");
+                    json.name("tls").beginObject();
+                    json.name("enabled").value(true);
+                    json.name("server_name").value(node.getServerName());
+                    json.name("utls").beginObject()
+                        .name("enabled").value(true)
+                        .name("fingerprint").value("chrome")
+                        .endObject();
+                    json.name("reality").beginObject()
+                        .name("enabled").value(true)
+                        .name("public_key").value(node.getPublicKey())
+                        .name("short_id").value(node.getShortId())
+                        .endObject();
+                    json.endObject();
+                } else {
+                    json.name("security").value("auto");
+                    json.name("alter_id").value(0);
+                    json.name("transport").beginObject()
+                        .name("type").value("http")
+                        .name("method").value("GET")
+                        .name("path").value("/")
+                        .endObject();
+                }
+                json.endObject();
+            }
+
+            json.beginObject();
+            json.name("type").value("direct");
+            json.name("tag").value("direct");
+            json.endObject();
+
+            json.endArray();
+            json.endObject();
+            json.flush();
+        }
+    };
+
+    private final String contentType;
+
+    SubscriptionFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * 把节点列表写入 out（不关闭 out）
+     */
+    abstract void write(List<ProxyNode> nodes, OutputStream out) throws IOException;
+
+    /**
+     * 按 format 参数取格式：base64（默认）、clash、sing-box / singbox；未知格式返回null
+     */
+    public static SubscriptionFormat parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return BASE64;
+        }
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "base64":
+            case "v2ray":
+                return BASE64;
+            case "clash":
+            case "clash-meta":
+            case "mihomo":
+                return CLASH;
+            case "sing-box":
+            case "singbox":
+                return SING_BOX;
+            default:
+                return null;
+        }
+    }
+
+    private static Writer writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+    }
+
+    /**
+     * YAML双引号字符串
+     */
+    private static void yamlString(Writer w, String value) throws IOException {
+        w.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                w.write('\\');
+                w.write(c);
+            } else if (c < 0x20) {
+                w.write(String.format("\\x%02x", (int) c));
+            } else {
+                w.write(c);
+            }
+        }
+        w.write('"');
+    }
+
+    /**
+     * Base64 编码流关闭时会补齐填充，但不能关闭底层流
+     */
+    private static OutputStream nonClosing(OutputStream out) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,281 @@
+package com.proxy.common;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 内置订阅HTTP服务
+ * 支持 ?format=base64|clash|sing-box，每种格式的响应体、gzip版本和ETag在首次请求时渲染并缓存，
+ * 轮询客户端命中时只需比较一次哈希；节点更新后全部格式重新渲染。
+ * 订阅包含全部UUID和Reality公钥且没有认证，路径就是口令：拒绝 /sub 等可猜测的路径，未配置时生成随机路径。
+ */
+public class SubscriptionServer {
+
+    /**
+     * 预计算的响应
+     */
+    private static final class Snapshot {
+        final byte[] body;
+        final byte[] gzipped;
+        final String etag;
+        final String gzippedEtag;
+
+        Snapshot(byte[] body, byte[] gzipped, String hash) {
+            this.body = body;
+            this.gzipped = gzipped;
+            // 强ETag按字节比较，gzip版本是不同的表示，需要不同的ETag
+            this.etag = "\"" + hash + "\"";
+            this.gzippedEtag = "\"" + hash + "-gz\"";
+        }
+    }
+
+    /**
+     * 一组节点及其各格式的渲染结果
+     */
+    private static final class Rendered {
+        final List<ProxyNode> nodes;
+        final AtomicReferenceArray<Snapshot> snapshots =
+            new AtomicReferenceArray<>(SubscriptionFormat.values().length);
+
+        Rendered(List<ProxyNode> nodes) {
+            this.nodes = List.copyOf(nodes);
+        }
+
+        Snapshot get(SubscriptionFormat format) throws IOException {
+            Snapshot snapshot = snapshots.get(format.ordinal());
+            if (snapshot != null) {
+                return snapshot;
+            }
+            // 同一格式只渲染一次，并发的首次请求等待同一个结果
+            synchronized (this) {
+                snapshot = snapshots.get(format.ordinal());
+                if (snapshot == null) {
+                    snapshot = render(nodes, format);
+                    snapshots.set(format.ordinal(), snapshot);
+                }
+                return snapshot;
+            }
+        }
+    }
+
+    // 随机路径的字节数（32位十六进制）
+    private static final int TOKEN_BYTES = 16;
+    private static final int MIN_PATH_LENGTH = 16;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String path;
+    private volatile Rendered rendered;
+
+    /**
+     * @param path 订阅路径，至少16个字符（不含开头的/）
+     */
+    public SubscriptionServer(int port, String path, List<ProxyNode> nodes) throws IOException {
+        this.path = path.startsWith("/") ? path : "/" + path;
+        if (this.path.length() - 1 < MIN_PATH_LENGTH) {
+            throw new IllegalArgumentException("Subscription path " + this.path + " is guessable; use at least "
+                + MIN_PATH_LENGTH + " characters (unset SUB_PATH to generate one)");
+        }
+        update(nodes);
+
+        // Java 17 没有虚拟线程，使用固定大小的守护线程池；处理逻辑只有哈希比较和一次写出
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2), r -> {
+            Thread t = new Thread(r, "subscription-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+    }
+
+    /**
+     * 从环境变量创建（未设置 SUB_PORT 时返回null）
+     * SUB_PATH 未设置时使用 SUB_PATH_FILE（默认 .sub-path）中保存的随机路径，文件不存在时生成并只打印这一次
+     */
+    public static SubscriptionServer fromEnv(List<ProxyNode> nodes) throws IOException {
+        String port = System.getenv("SUB_PORT");
+        if (port == null || port.trim().isEmpty()) {
+            return null;
+        }
+        String path = System.getenv("SUB_PATH");
+        if (path == null || path.trim().isEmpty()) {
+            path = tokenPath(Paths.get(System.getenv().getOrDefault("SUB_PATH_FILE", ".sub-path")),
+                Integer.parseInt(port.trim()));
+        }
+        return new SubscriptionServer(Integer.parseInt(port.trim()), path.trim(), nodes);
+    }
+
+    /**
+     * 读取保存的随机路径；没有时生成、保存（仅所有者可读）并打印完整地址
+     * 先以0600创建临时文件再原子改名，文件任何时刻都不会以默认权限存在或只写了一半
+     */
+    static String tokenPath(Path file, int port) throws IOException {
+        if (Files.exists(file)) {
+            String saved = Files.readString(file).trim();
+            if (!saved.isEmpty()) {
+                return saved;
+            }
+        }
+        byte[] token = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(token);
+        String path = "/" + HexFormat.of().formatHex(token);
+        Path absolute = file.toAbsolutePath();
+        Path tmp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        try {
+            Files.createFile(tmp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // 非POSIX文件系统
+            Files.createFile(tmp);
+        }
+        Files.writeString(tmp, path + "\n");
+        Files.move(tmp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("🔑 Generated subscription URL (shown once, saved in " + file + "): http://服务器IP:"
+            + port + path);
+        return path;
+    }
+
+    public void start() {
+        server.start();
+        // 路径即口令，日志中只显示开头
+        System.out.println("📡 Subscription: http://0.0.0.0:" + getPort() + path.substring(0, 5) + "…");
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 更新订阅节点：立即渲染默认的base64格式，其余格式在下次请求时渲染
+     */
+    public void update(List<ProxyNode> nodes) throws IOException {
+        Rendered next = new Rendered(nodes);
+        next.get(SubscriptionFormat.BASE64);
+        rendered = next;
+    }
+
+    /**
+     * 渲染一种格式，计算gzip和ETag（不同格式内容不同，ETag自然不同）
+     */
+    private static Snapshot render(List<ProxyNode> nodes, SubscriptionFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(256, nodes.size() * 256));
+        format.write(nodes, out);
+        byte[] body = out.toByteArray();
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(body);
+        }
+
+        return new Snapshot(body, buffer.toByteArray(), HexFormat.of().formatHex(sha256(body), 0, 16));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            // 先读完请求体：JDK HttpServer 只有在请求体读到EOF时才会保留空响应（304/HEAD）的连接
+            exchange.getRequestBody().close();
+
+            String method = exchange.getRequestMethod();
+            if (!exchange.getRequestURI().getPath().equals(path)) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            SubscriptionFormat format = SubscriptionFormat.parse(queryParam(exchange.getRequestURI().getRawQuery(), "format"));
+            if (format == null) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            Snapshot current = rendered.get(format);
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+            String etag = gzip ? current.gzippedEtag : current.etag;
+
+            var headers = exchange.getResponseHeaders();
+            headers.set("ETag", etag);
+            headers.set("Cache-Control", "no-cache");
+            headers.set("Vary", "Accept-Encoding");
+
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            byte[] body = gzip ? current.gzipped : current.body;
+
+            headers.set("Content-Type", format.getContentType());
+            if (gzip) {
+                headers.set("Content-Encoding", "gzip");
+            }
+
+            if ("HEAD".equals(method)) {
+                headers.set("Content-Length", String.valueOf(body.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * 取查询参数（值只会是格式名，不做百分号解码）
+     */
+    private static String queryParam(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            if (key.equals(name)) {
+                return eq < 0 ? "" : pair.substring(eq + 1);
+            }
+        }
+        return null;
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
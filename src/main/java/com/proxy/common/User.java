@@ -0,0 +1,65 @@
+package com.proxy.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Objects;
+
+/**
+ * 代理用户（UUID + email标识）
+ */
+public final class User {
+    private final String id;
+    private final String email;
+
+    /**
+     * @param email 为空时使用 defaultEmail(id)
+     */
+    public User(String id, String email) {
+        this.id = id;
+        this.email = email == null || email.isEmpty() ? defaultEmail(id) : email;
+    }
+
+    /**
+     * 未配置email时的默认标识：UUID的SHA-256前12位十六进制（email会出现在流量统计标签中，不能直接使用UUID）
+     */
+    public static String defaultEmail(String id) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(id.getBytes(StandardCharsets.UTF_8));
+            return "user-" + HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof User)) {
+            return false;
+        }
+        User other = (User) o;
+        return id.equals(other.id) && email.equals(other.email);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, email);
+    }
+
+    @Override
+    public String toString() {
+        return email + "(" + id + ")";
+    }
+}
@@ -0,0 +1,139 @@
+package com.proxy.common;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 用户文件读取
+ * 支持 CSV（uuid[,email]）和 JSONL（{"id": "...", "email": "..."}），逐行流式读取。
+ * 无效行（包括格式错误的JSON）输出行号后跳过；id或email重复的用户只保留第一个（Xray拒绝加载email重复的配置）。
+ * 去重只记录id和email的64位指纹（FingerprintSet），100万用户约32MB。
+ */
+public final class UserFile {
+
+    /**
+     * 逐个处理用户
+     */
+    @FunctionalInterface
+    public interface UserConsumer {
+        void accept(User user) throws IOException;
+    }
+
+    private UserFile() {
+    }
+
+    /**
+     * 流式遍历用户文件，不会把整个文件读入内存（只记录已出现的id和email用于去重）
+     */
+    public static void forEach(Path path, UserConsumer consumer) throws IOException {
+        forEach(path, List.of(), consumer);
+    }
+
+    /**
+     * 同上，existing 中的用户（如配置中已有的主用户）视为已出现，文件中与其id或email重复的用户被跳过
+     */
+    public static void forEach(Path path, Collection<User> existing, UserConsumer consumer) throws IOException {
+        FingerprintSet ids = new FingerprintSet();
+        FingerprintSet emails = new FingerprintSet();
+        for (User user : existing) {
+            ids.add(FingerprintSet.ofUuid(user.getId()));
+            emails.add(FingerprintSet.of(user.getEmail()));
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                User user = line.startsWith("{") ? parseJson(line) : parseCsv(line);
+                if (user == null) {
+                    // CSV表头或无效行
+                    if (lineNo > 1) {
+                        System.out.println("⚠️  Skipping invalid user at " + path + ":" + lineNo);
+                    }
+                    continue;
+                }
+                if (!ids.add(FingerprintSet.ofUuid(user.getId()))) {
+                    System.out.println("⚠️  Skipping duplicate id at " + path + ":" + lineNo + ": " + user.getEmail());
+                    continue;
+                }
+                if (!emails.add(FingerprintSet.of(user.getEmail()))) {
+                    System.out.println("⚠️  Skipping duplicate email at " + path + ":" + lineNo + ": " + user.getEmail());
+                    continue;
+                }
+                consumer.accept(user);
+            }
+        }
+    }
+
+    /**
+     * 读取全部用户
+     */
+    public static List<User> readAll(Path path) throws IOException {
+        return readAll(path, List.of());
+    }
+
+    /**
+     * 读取与 existing 不重复的用户（不包含 existing 本身）
+     */
+    public static List<User> readAll(Path path, Collection<User> existing) throws IOException {
+        List<User> users = new ArrayList<>();
+        forEach(path, existing, users::add);
+        return users;
+    }
+
+    private static User parseCsv(String line) {
+        int comma = line.indexOf(',');
+        String id = (comma < 0 ? line : line.substring(0, comma)).trim();
+        String email = comma < 0 ? null : line.substring(comma + 1).trim();
+        return isUuid(id) ? new User(id, email) : null;
+    }
+
+    /**
+     * 解析一行JSON，格式错误（语法错误、非对象、字段不是字符串）时返回null
+     */
+    private static User parseJson(String line) {
+        try {
+            JsonObject obj = JsonParser.parseString(line).getAsJsonObject();
+            String id = obj.has("id") ? obj.get("id").getAsString() : null;
+            String email = obj.has("email") ? obj.get("email").getAsString() : null;
+            return id != null && isUuid(id) ? new User(id, email) : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 粗略校验UUID格式（8-4-4-4-12）
+     */
+    private static boolean isUuid(String s) {
+        if (s.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = s.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,274 @@
+package com.proxy.common;
+
+import com.proxy.common.api.XrayApiClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 运行时用户管理
+ * 通过 Xray API 热增删用户，不重写配置、不重启进程；变更先合并再批量下发
+ */
+public class UserManager {
+
+    // Xray 返回错误状态（非连接失败）时，同一变更最多尝试的次数
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final XrayApiClient api;
+    private final String inboundTag;
+    private final Function<User, XrayApiClient.Account> accounts;
+    private final long batchDelayMillis;
+    private final ScheduledExecutorService scheduler;
+
+    // Xray中当前生效的用户（email -> user）
+    private final Map<String, User> applied = new HashMap<>();
+    // 待下发的目标状态（email -> user，null表示删除）；同一email的多次变更只保留最后一次
+    private final Map<String, User> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> flushTask;
+    private long retryDelayMillis;
+    // 各email已失败的次数（只在下发线程中访问）
+    private final Map<String, Integer> attempts = new HashMap<>();
+
+    public UserManager(XrayApiClient api, String inboundTag, Function<User, XrayApiClient.Account> accounts,
+                       Collection<User> initialUsers, long batchDelayMillis) {
+        this.api = api;
+        this.inboundTag = inboundTag;
+        this.accounts = accounts;
+        this.batchDelayMillis = batchDelayMillis;
+        this.retryDelayMillis = batchDelayMillis;
+        for (User user : initialUsers) {
+            applied.put(user.getEmail(), user);
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "user-manager");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 添加（或替换同email的）用户
+     */
+    public synchronized void add(User user) {
+        pending.put(user.getEmail(), user);
+        scheduleFlush(batchDelayMillis);
+    }
+
+    /**
+     * 按email删除用户
+     */
+    public synchronized void remove(String email) {
+        pending.put(email, null);
+        scheduleFlush(batchDelayMillis);
+    }
+
+    /**
+     * 将用户集合同步为desired，只下发差异
+     */
+    public synchronized void sync(Collection<User> desired) {
+        Map<String, User> target = new HashMap<>();
+        for (User user : desired) {
+            target.put(user.getEmail(), user);
+        }
+
+        Set<String> current = new HashSet<>(applied.keySet());
+        for (Map.Entry<String, User> entry : pending.entrySet()) {
+            if (entry.getValue() == null) {
+                current.remove(entry.getKey());
+            } else {
+                current.add(entry.getKey());
+            }
+        }
+
+        for (String email : current) {
+            if (!target.containsKey(email)) {
+                pending.put(email, null);
+            }
+        }
+        for (User user : target.values()) {
+            User known = pending.containsKey(user.getEmail()) ? pending.get(user.getEmail()) : applied.get(user.getEmail());
+            if (!user.equals(known)) {
+                pending.put(user.getEmail(), user);
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            scheduleFlush(batchDelayMillis);
+        }
+    }
+
+    public synchronized int size() {
+        return applied.size();
+    }
+
+    /**
+     * 合并窗口内只安排一次下发：已有等待中的任务时不重复安排
+     */
+    private void scheduleFlush(long delayMillis) {
+        if (flushTask == null || flushTask.isDone()) {
+            flushTask = scheduler.schedule(this::flush, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 下发一批变更
+     */
+    private void flush() {
+        Map<String, User> batch;
+        Map<String, User> before;
+        synchronized (this) {
+            batch = new LinkedHashMap<>(pending);
+            pending.clear();
+            before = new HashMap<>(applied);
+        }
+
+        int added = 0;
+        int removed = 0;
+        Map<String, User> failed = new LinkedHashMap<>();
+        for (Map.Entry<String, User> entry : batch.entrySet()) {
+            String email = entry.getKey();
+            User user = entry.getValue();
+            User old = before.get(email);
+            try {
+                if (user == null) {
+                    if (old != null) {
+                        removeQuietly(email);
+                        removed++;
+                    }
+                } else if (!user.equals(old)) {
+                    if (old != null) {
+                        removeQuietly(email);
+                    }
+                    addQuietly(email, user);
+                    added++;
+                }
+                attempts.remove(email);
+                synchronized (this) {
+                    if (user == null) {
+                        applied.remove(email);
+                    } else {
+                        applied.put(email, user);
+                    }
+                }
+            } catch (IOException e) {
+                if (XrayApiClient.statusOf(e) < 0) {
+                    // API不可达（例如Xray正在重启）：剩余变更整体重试，不计入失败次数
+                    batch.entrySet().stream()
+                        .dropWhile(en -> !en.getKey().equals(email))
+                        .forEach(en -> failed.put(en.getKey(), en.getValue()));
+                    System.err.println("⚠️  Xray API unavailable: " + e.getMessage());
+                    break;
+                }
+                // Xray拒绝了这次变更：有限次重试后放弃，等用户文件再次变化时重新下发
+                int attempt = attempts.merge(email, 1, Integer::sum);
+                if (attempt >= MAX_ATTEMPTS) {
+                    attempts.remove(email);
+                    System.err.println("❌ Giving up on user " + email + " after " + attempt + " attempts: " + e.getMessage());
+                } else {
+                    failed.put(email, user);
+                    System.err.println("⚠️  Failed to update user " + email + " (attempt " + attempt + "/"
+                        + MAX_ATTEMPTS + "): " + e.getMessage());
+                }
+            }
+        }
+
+        if (added > 0 || removed > 0) {
+            System.out.println("👥 Users updated via API: +" + added + " -" + removed);
+        }
+
+        synchronized (this) {
+            if (failed.isEmpty()) {
+                retryDelayMillis = batchDelayMillis;
+            } else {
+                // 失败项放回队列，但不覆盖期间产生的新变更（新变更重新计数）
+                failed.forEach((email, user) -> {
+                    if (pending.containsKey(email)) {
+                        attempts.remove(email);
+                    } else {
+                        pending.put(email, user);
+                    }
+                });
+                retryDelayMillis = Math.min(retryDelayMillis * 2, 30_000);
+            }
+            if (!pending.isEmpty()) {
+                flushTask = scheduler.schedule(this::flush,
+                    failed.isEmpty() ? batchDelayMillis : retryDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * 删除用户；用户不存在时视为已删除
+     */
+    private void removeQuietly(String email) throws IOException {
+        try {
+            api.removeUser(inboundTag, email);
+        } catch (IOException e) {
+            if (!XrayApiClient.notFound(e)) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 添加用户；已存在时（例如上次调用超时但实际已生效）视为已添加，不再重试
+     */
+    private void addQuietly(String email, User user) throws IOException {
+        try {
+            api.addUser(inboundTag, user, accounts.apply(user));
+        } catch (IOException e) {
+            if (!XrayApiClient.alreadyExists(e)) {
+                throw e;
+            }
+            System.err.println("⚠️  User " + email + " already exists in Xray, keeping it");
+        }
+    }
+
+    /**
+     * 定期检查用户文件，变化时同步差异并调用onChange（例如重新生成c.json，供下次重启使用）
+     * pinned 中的用户（如主UUID）不在文件中也会保留
+     */
+    public void watch(Path usersFile, Collection<User> pinned, long intervalSeconds, Runnable onChange) {
+        watch(List.of(this), usersFile, pinned, intervalSeconds, onChange);
+    }
+
+    /**
+     * 同一个用户文件对应多个管理器时（例如每个工作进程一个）只用一个监视任务：
+     * 文件每次变化只读取一次，同步到所有管理器后调用一次onChange
+     */
+    public static void watch(List<UserManager> managers, Path usersFile, Collection<User> pinned,
+                             long intervalSeconds, Runnable onChange) {
+        FileTime[] lastModified = {null};
+        try {
+            lastModified[0] = Files.getLastModifiedTime(usersFile);
+        } catch (IOException e) {
+            // 文件暂不存在，等待出现
+        }
+
+        managers.get(0).scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                FileTime modified = Files.getLastModifiedTime(usersFile);
+                if (modified.equals(lastModified[0])) {
+                    return;
+                }
+                lastModified[0] = modified;
+                List<User> desired = new ArrayList<>(pinned);
+                desired.addAll(UserFile.readAll(usersFile, pinned));
+                for (UserManager manager : managers) {
+                    manager.sync(desired);
+                }
+                onChange.run();
+            } catch (Exception e) {
+                System.err.println("⚠️  Failed to reload " + usersFile + ": " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+}
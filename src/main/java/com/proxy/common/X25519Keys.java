@@ -0,0 +1,91 @@
+package com.proxy.common;
+
+import java.math.BigInteger;
+import java.security.*;
+import java.security.interfaces.XECPrivateKey;
+import java.security.interfaces.XECPublicKey;
+import java.security.spec.NamedParameterSpec;
+import java.security.spec.XECPrivateKeySpec;
+import java.security.spec.XECPublicKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.KeyAgreement;
+
+/**
+ * X25519 密钥对生成（进程内实现，替代 ./xray x25519）
+ * 输出格式与 Xray 一致：32字节原始密钥的 base64url 无填充编码
+ */
+public final class X25519Keys {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final String privateKey;
+    private final String publicKey;
+
+    private X25519Keys(String privateKey, String publicKey) {
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+    }
+
+    public String getPrivateKey() {
+        return privateKey;
+    }
+
+    public String getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * 生成新的密钥对
+     */
+    public static X25519Keys generate() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("X25519");
+        KeyPair pair = generator.generateKeyPair();
+
+        byte[] priv = ((XECPrivateKey) pair.getPrivate()).getScalar()
+            .orElseThrow(() -> new GeneralSecurityException("X25519 private scalar unavailable"));
+        // 与 xray x25519 一样预先钳位，公钥不受影响（X25519运算本身会钳位）
+        priv = Arrays.copyOf(priv, 32);
+        priv[0] &= (byte) 248;
+        priv[31] &= 127;
+        priv[31] |= 64;
+
+        byte[] pub = encodeU(((XECPublicKey) pair.getPublic()).getU());
+        return new X25519Keys(ENCODER.encodeToString(priv), ENCODER.encodeToString(pub));
+    }
+
+    /**
+     * 由私钥推导公钥，等价于 xray x25519 -i PRIVATE_KEY
+     */
+    public static String derivePublicKey(String privateKey) throws GeneralSecurityException {
+        byte[] priv = DECODER.decode(privateKey);
+        if (priv.length != 32) {
+            throw new GeneralSecurityException("X25519 private key must be 32 bytes");
+        }
+
+        KeyFactory factory = KeyFactory.getInstance("XDH");
+        PrivateKey key = factory.generatePrivate(
+            new XECPrivateKeySpec(NamedParameterSpec.X25519, priv));
+        // 与基点 u=9 做一次密钥协商即得到公钥
+        PublicKey basePoint = factory.generatePublic(
+            new XECPublicKeySpec(NamedParameterSpec.X25519, BigInteger.valueOf(9)));
+
+        KeyAgreement agreement = KeyAgreement.getInstance("X25519");
+        agreement.init(key);
+        agreement.doPhase(basePoint, true);
+        return ENCODER.encodeToString(agreement.generateSecret());
+    }
+
+    /**
+     * 将u坐标编码为32字节小端序
+     */
+    private static byte[] encodeU(BigInteger u) {
+        byte[] be = u.toByteArray();
+        byte[] le = new byte[32];
+        for (int i = 0; i < 32 && i < be.length; i++) {
+            le[i] = be[be.length - 1 - i];
+        }
+        return le;
+    }
+}
@@ -0,0 +1,258 @@
+package com.proxy.common;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Xray二进制共享缓存
+ * 按 版本+架构 索引、按内容SHA-256寻址，同一主机上的多个实例共享一份已校验的二进制
+ *
+ * 目录结构：
+ *   objects/{sha256}              解压后的xray二进制
+ *   refs/{version}-linux-{arch}   指向objects的哈希
+ */
+public class XrayBinaryCache {
+    private static final String DEFAULT_BASE_URL = "https://github.com/XTLS/Xray-core/releases/download";
+
+    private final Path cacheRoot;
+    private final String baseUrl;
+    private final HttpClient client;
+    private final RangedDownloader downloader;
+
+    public XrayBinaryCache() {
+        this(defaultCacheRoot(), System.getenv().getOrDefault("XRAY_DOWNLOAD_BASE", DEFAULT_BASE_URL));
+    }
+
+    public XrayBinaryCache(Path cacheRoot, String baseUrl) {
+        this.cacheRoot = cacheRoot;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.ALWAYS)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        this.downloader = RangedDownloader.fromEnv(client);
+    }
+
+    /**
+     * 默认缓存目录：XRAY_CACHE_DIR > XDG_CACHE_HOME/xray-proxy > ~/.cache/xray-proxy
+     */
+    private static Path defaultCacheRoot() {
+        String dir = System.getenv("XRAY_CACHE_DIR");
+        if (dir != null && !dir.trim().isEmpty()) {
+            return Paths.get(dir);
+        }
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        if (xdg != null && !xdg.trim().isEmpty()) {
+            return Paths.get(xdg, "xray-proxy");
+        }
+        return Paths.get(System.getProperty("user.home"), ".cache", "xray-proxy");
+    }
+
+    public Path getCacheRoot() {
+        return cacheRoot;
+    }
+
+    /**
+     * 将指定版本和架构的xray安装到target，缓存命中时无需任何网络请求
+     */
+    public void install(String version, String arch, Path target) throws IOException, InterruptedException {
+        Path object = resolve(version, arch);
+        if (object == null) {
+            object = fetchLocked(version, arch);
+        } else {
+            System.out.println("✅ Xray " + version + " found in cache: " + object);
+        }
+        link(object, target);
+    }
+
+    /**
+     * 查找已缓存且校验通过的二进制，不存在或已损坏时返回null
+     */
+    public Path resolve(String version, String arch) throws IOException {
+        Path ref = refPath(version, arch);
+        if (!Files.exists(ref)) {
+            return null;
+        }
+
+        String hash = Files.readString(ref, StandardCharsets.UTF_8).trim();
+        Path object = cacheRoot.resolve("objects").resolve(hash);
+        if (!Files.exists(object)) {
+            return null;
+        }
+
+        // 每次命中都重新校验，防止缓存文件被截断或篡改
+        if (!hash.equals(sha256(object))) {
+            System.out.println("⚠️  Cached Xray object is corrupted, discarding: " + object);
+            Files.deleteIfExists(object);
+            return null;
+        }
+        return object;
+    }
+
+    /**
+     * 在主机级文件锁内下载，保证多个实例同时冷启动时只下载一次
+     */
+    private Path fetchLocked(String version, String arch) throws IOException, InterruptedException {
+        Files.createDirectories(cacheRoot.resolve("objects"));
+        Files.createDirectories(cacheRoot.resolve("refs"));
+
+        Path lockFile = cacheRoot.resolve(".lock");
+        try (FileChannel channel = FileChannel.open(lockFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // 锁随通道关闭释放
+            channel.lock();
+
+            // 其他实例可能已在我们等待锁期间完成下载
+            Path object = resolve(version, arch);
+            if (object != null) {
+                System.out.println("✅ Xray " + version + " fetched by another instance");
+                return object;
+            }
+            return fetch(version, arch);
+        }
+    }
+
+    /**
+     * 下载发布包、校验SHA-256并解压到objects目录
+     */
+    private Path fetch(String version, String arch) throws IOException, InterruptedException {
+        String zipName = "Xray-linux-" + arch + ".zip";
+        URI zipUri = URI.create(baseUrl + "/v" + version + "/" + zipName);
+
+        System.out.println("📥 Downloading Xray...");
+        System.out.println("📦 Download URL: " + zipUri);
+
+        String expected = expectedDigest(zipUri);
+
+        // 固定文件名（在主机锁内使用）：下载中断时保留，下次启动续传
+        Path tmpZip = cacheRoot.resolve(version + "-" + zipName + ".part");
+        Path tmpBin = Files.createTempFile(cacheRoot, "xray", ".part");
+        try {
+            String actual = download(zipUri, tmpZip);
+            if (!actual.equalsIgnoreCase(expected)) {
+                Files.deleteIfExists(tmpZip);
+                throw new IOException("Xray archive checksum mismatch: expected " + expected + ", got " + actual);
+            }
+            System.out.println("🔏 SHA-256 verified: " + actual);
+
+            extractXray(tmpZip, tmpBin);
+            Files.deleteIfExists(tmpZip);
+            tmpBin.toFile().setExecutable(true, false);
+
+            String hash = sha256(tmpBin);
+            Path object = cacheRoot.resolve("objects").resolve(hash);
+            Files.move(tmpBin, object, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            Path tmpRef = Files.createTempFile(cacheRoot.resolve("refs"), "ref", ".part");
+            Files.writeString(tmpRef, hash, StandardCharsets.UTF_8);
+            Files.move(tmpRef, refPath(version, arch), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            return object;
+        } finally {
+            Files.deleteIfExists(tmpBin);
+        }
+    }
+
+    /**
+     * 获取发布包的SHA-256：XRAY_SHA256 环境变量优先，否则读取官方 .dgst 文件
+     */
+    private String expectedDigest(URI zipUri) throws IOException, InterruptedException {
+        String pinned = System.getenv("XRAY_SHA256");
+        if (pinned != null && !pinned.trim().isEmpty()) {
+            return pinned.trim();
+        }
+
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(zipUri + ".dgst"))
+            .timeout(Duration.ofSeconds(15))
+            .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        Bootstrap.transferred(response.body().length());
+        if (response.statusCode() != 200) {
+            throw new IOException("Failed to download Xray digest: HTTP " + response.statusCode());
+        }
+
+        for (String line : response.body().split("\n")) {
+            line = line.trim();
+            if (line.startsWith("SHA2-256=") || line.startsWith("SHA256=")) {
+                return line.substring(line.indexOf('=') + 1).trim();
+            }
+        }
+        throw new IOException("No SHA-256 entry in Xray digest file");
+    }
+
+    /**
+     * 分段并行下载到dest（支持续传），返回内容的SHA-256
+     */
+    private String download(URI uri, Path dest) throws IOException, InterruptedException {
+        Bootstrap.transferred(downloader.download(uri, dest));
+        return sha256(dest);
+    }
+
+    /**
+     * 从ZIP中提取xray可执行文件
+     */
+    private void extractXray(Path zip, Path dest) throws IOException {
+        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (entry.getName().equals("xray")) {
+                    Files.copy(zis, dest, StandardCopyOption.REPLACE_EXISTING);
+                    return;
+                }
+            }
+        }
+        throw new IOException("xray binary not found in archive");
+    }
+
+    /**
+     * 以硬链接+原子重命名安装，跨文件系统时退化为复制
+     */
+    private void link(Path object, Path target) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Path tmp = dir.resolve("." + target.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        Files.deleteIfExists(tmp);
+        try {
+            Files.createLink(tmp, object);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(object, tmp, StandardCopyOption.REPLACE_EXISTING);
+            tmp.toFile().setExecutable(true, false);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("✅ Xray installed");
+    }
+
+    private Path refPath(String version, String arch) {
+        return cacheRoot.resolve("refs").resolve(version + "-linux-" + arch);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.proxy.common;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.proxy.common.api.XrayApiClient;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 启动器公共部分：Xray安装、架构检测、多入站配置生成、用户管理、流量统计、节点上传和命名
+ * 单协议服务器（只有一个协议的情况）、合并启动器和集群模式共用
+ */
+public final class XrayLauncher {
+
+    public static final String XRAY_VERSION = "1.8.24";
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    // 节点管理API配置（交互式选择时的默认地址）
+    private static final String DEFAULT_API_URL = "http://103.69.129.79:8081/api/v1/groups/2/nodes";
+
+    private XrayLauncher() {
+    }
+
+    /**
+     * 下载Xray到当前目录（如果不存在）
+     */
+    public static void installXray(String version) throws Exception {
+        Path xrayPath = Paths.get("xray");
+
+        if (Files.exists(xrayPath)) {
+            System.out.println("✅ Xray already exists");
+            return;
+        }
+
+        // 通过主机级共享缓存安装，命中时无网络请求
+        new XrayBinaryCache().install(version, detectArchitecture(), xrayPath);
+    }
+
+    /**
+     * 检测系统架构
+     */
+    public static String detectArchitecture() {
+        String osArch = System.getProperty("os.arch").toLowerCase();
+
+        if (osArch.contains("amd64") || osArch.contains("x86_64")) {
+            return "64";
+        } else if (osArch.contains("aarch64") || osArch.contains("arm64")) {
+            return "arm64-v8a";
+        } else if (osArch.contains("arm")) {
+            return "arm32-v7a";
+        }
+
+        System.out.println("⚠️  Unknown architecture: " + osArch + ", defaulting to 64-bit");
+        return "64";
+    }
+
+    /**
+     * 生成Xray配置文件：每个协议一个入站，共用出站、API和调优参数
+     * usersFile 不为空时各入站的clients数组从用户文件流式写出（紧凑格式）
+     */
+    public static void renderConfig(List<? extends ProtocolProvider> providers, Path usersFile, int apiPort,
+                                    XrayTuning tuning, XrayWorkers workers) throws IOException {
+        JsonObject config = new JsonObject();
+
+        // Log配置
+        JsonObject log = new JsonObject();
+        log.addProperty("loglevel", "warning");
+        config.add("log", log);
+
+        // Inbound配置
+        JsonArray inboundsArray = new JsonArray();
+        StreamingConfigWriter streaming = new StreamingConfigWriter();
+        for (ProtocolProvider provider : providers) {
+            JsonObject inbound = provider.inbound();
+            inboundsArray.add(inbound);
+            if (usersFile != null) {
+                JsonArray clientsArray = inbound.getAsJsonObject("settings").getAsJsonArray("clients");
+                streaming.stream(clientsArray, usersFile, provider::writeClient);
+            }
+        }
+        config.add("inbounds", inboundsArray);
+
+        // Outbound配置
+        JsonObject outbound = new JsonObject();
+        outbound.addProperty("protocol", "freedom");
+        outbound.addProperty("tag", "direct");
+
+        JsonArray outboundsArray = new JsonArray();
+        outboundsArray.add(outbound);
+        config.add("outbounds", outboundsArray);
+
+        // API入站（HandlerService/StatsService）
+        if (apiPort > 0) {
+            XrayApiClient.enable(config, apiPort);
+        }
+
+        // 按主机调优 sockopt 和 policy（XRAY_TUNING）
+        tuning.apply(config);
+
+        // 写入配置文件（多进程模式下每个进程一份）
+        XrayWorkers.ConfigWriter writer;
+        if (usersFile != null) {
+            writer = streaming::write;
+        } else {
+            writer = (json, target) -> Files.writeString(target, GSON.toJson(json));
+        }
+        workers.render(config, apiPort, writer);
+    }
+
+    /**
+     * 启动用户管理：每个协议、每个工作进程一个管理器，每个协议一个监视任务；
+     * 用户文件变化时通过API下发增删，并由第一个协议的监视任务重新生成配置供下次重启使用
+     */
+    public static void startUserManagers(List<? extends ProtocolProvider> providers, Path usersFile, int apiPort,
+                                         XrayTuning tuning, XrayWorkers workers) throws IOException {
+        int users = 0;
+        boolean first = true;
+        for (ProtocolProvider provider : providers) {
+            List<User> pinned = List.of(new User(provider.getUuid(), null));
+            List<User> initial = new ArrayList<>(pinned);
+            initial.addAll(UserFile.readAll(usersFile, pinned));
+            users = initial.size();
+
+            // 每个工作进程各有一个API端口
+            List<UserManager> managers = new ArrayList<>();
+            for (int i = 0; i < workers.getCount(); i++) {
+                managers.add(new UserManager(new XrayApiClient(workers.apiPort(apiPort, i)),
+                    provider.getInboundTag(), provider::account, initial, 500));
+            }
+            UserManager.watch(managers, usersFile, pinned, 5, !first ? () -> { } : () -> {
+                try {
+                    renderConfig(providers, usersFile, apiPort, tuning, workers);
+                } catch (IOException e) {
+                    System.err.println("⚠️  Failed to regenerate c.json: " + e.getMessage());
+                }
+            });
+            first = false;
+        }
+        System.out.println("👥 Watching " + usersFile + " (" + users + " users"
+            + (providers.size() > 1 ? " x " + providers.size() + " protocols" : "") + ", API port " + apiPort + ")");
+    }
+
+    /**
+     * 启动流量统计采集和 /metrics 端点（多进程时汇总所有进程）
+     */
+    public static void startStatsCollector(XrayWorkers workers, int apiPort, int metricsPort) throws IOException {
+        List<XrayApiClient> apis = new ArrayList<>();
+        for (int i = 0; i < workers.getCount(); i++) {
+            apis.add(new XrayApiClient(workers.apiPort(apiPort, i)));
+        }
+        StatsCollector collector = new StatsCollector(apis);
+        collector.start(10);
+        collector.serve(metricsPort);
+    }
+
+    /**
+     * 注册节点到管理API并启动心跳（每个节点报告各自端口的延迟和连接数，退出时注销）
+     * nodes 与 providers 一一对应；同一时刻提交的注册由 NodeRegistrar 合并为一个批量请求
+     * interactive 时可能在控制台等待输入（最长10秒），不要在 Bootstrap 阶段中调用
+     */
+    public static void uploadNodeInfo(List<? extends ProtocolProvider> providers, List<ProxyNode> nodes,
+                                      String serverIp, XrayWorkers workers, boolean interactive) {
+        String apiUrl = nodeApiUrl(interactive);
+        if (apiUrl == null || apiUrl.trim().isEmpty()) {
+            System.out.println("⏭️  Skipping node upload.");
+            return;
+        }
+        apiUrl = apiUrl.trim();
+
+        System.out.println("");
+        System.out.println("📤 Uploading " + (nodes.size() == 1 ? "node" : nodes.size() + " nodes")
+            + " to management API...");
+        System.out.println("📍 API URL: " + apiUrl);
+
+        // 异步注册，失败自动重试并记录到outbox，不阻塞Xray启动
+        for (int i = 0; i < nodes.size(); i++) {
+            ProxyNode node = nodes.get(i);
+            String nodeName = nodeName(serverIp, providers.get(i).getName(), node.getPort());
+            System.out.println("🏷️  Node Name: " + nodeName);
+            NodeRegistrar.shared()
+                .register(new NodeRegistrar.Registration(apiUrl, nodeName, node.getLink()))
+                .thenAccept(ok -> {
+                    if (!ok) {
+                        System.out.println("ℹ️  Server will continue to run normally.");
+                    }
+                });
+
+            NodeHeartbeat heartbeat = NodeHeartbeat.fromEnv(apiUrl, nodeName, node.getPort(), workers);
+            if (heartbeat != null) {
+                heartbeat.start();
+            }
+        }
+        System.out.println("");
+    }
+
+    /**
+     * 管理API地址：NODE_API_URL，SKIP_NODE_UPLOAD 时为null；
+     * 都未设置且 interactive 时在控制台询问（10秒超时）
+     */
+    static String nodeApiUrl(boolean interactive) {
+        // 优先使用环境变量
+        String envUrl = System.getenv("NODE_API_URL");
+        if (envUrl != null && !envUrl.trim().isEmpty()) {
+            return envUrl;
+        }
+
+        // 检查是否禁用上传
+        String skipUpload = System.getenv("SKIP_NODE_UPLOAD");
+        if (!interactive || "true".equalsIgnoreCase(skipUpload) || "1".equals(skipUpload)) {
+            return null;
+        }
+
+        // 交互式输入（带超时）
+        final String[] result = {null};
+        Thread inputThread = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
+                System.out.println("");
+                System.out.println("==========================================");
+                System.out.println("📤 Node Upload Configuration");
+                System.out.println("==========================================");
+                System.out.println("Would you like to upload node info to management API?");
+                System.out.println("1. Use default API (" + DEFAULT_API_URL + ")");
+                System.out.println("2. Enter custom API URL");
+                System.out.println("3. Skip (press Enter or any other key)");
+                System.out.print("Your choice (10s timeout): ");
+
+                String choice = reader.readLine();
+
+                if ("1".equals(choice)) {
+                    result[0] = DEFAULT_API_URL;
+                } else if ("2".equals(choice)) {
+                    System.out.print("Enter API URL: ");
+                    String customUrl = reader.readLine();
+                    result[0] = customUrl != null && !customUrl.trim().isEmpty() ? customUrl : null;
+                }
+            } catch (Exception e) {
+                // ignore
+            }
+        });
+
+        inputThread.setDaemon(true);
+        inputThread.start();
+
+        try {
+            inputThread.join(10000); // 等待10秒
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (inputThread.isAlive()) {
+            System.out.println("\n⏱️  Timeout (10s), skipping node upload.");
+            return null;
+        }
+
+        return result[0];
+    }
+
+    /**
+     * 生成节点名称（基于服务器IP、协议和端口）
+     */
+    public static String nodeName(String serverIp, String protocol, int port) {
+        return String.format("%s-%s-%d", guessLocationFromIP(serverIp), protocol, port);
+    }
+
+    /**
+     * 从IP推测地理位置
+     */
+    static String guessLocationFromIP(String ip) {
+        // 简单的地理位置推测
+        if (ip.startsWith("103.") || ip.startsWith("119.")) {
+            return "HK";
+        } else if (ip.startsWith("172.") || ip.startsWith("45.")) {
+            return "US";
+        } else if (ip.startsWith("89.")) {
+            return "EU";
+        } else {
+            return "Node";
+        }
+    }
+}
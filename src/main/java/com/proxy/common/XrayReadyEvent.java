@@ -0,0 +1,28 @@
+package com.proxy.common;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR事件：Xray进程端口可连接
+ */
+@Name("com.proxy.XrayReady")
+@Label("Xray Ready")
+@Category({"Xray Proxy", "Startup"})
+@Description("An Xray process accepted its first connection on the probed port")
+class XrayReadyEvent extends Event {
+
+    @Label("Time To Ready")
+    @Timespan(Timespan.MILLISECONDS)
+    long timeToReady;
+
+    @Label("Probed Port")
+    int port;
+
+    @Label("Restarts Before")
+    long restarts;
+}
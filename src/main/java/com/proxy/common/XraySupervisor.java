@@ -0,0 +1,513 @@
+package com.proxy.common;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Xray 进程守护
+ * 退出后按带抖动的指数退避重启（首次快速重试），检测崩溃循环，并统计重启次数、运行时长和就绪耗时。
+ * 计划内重启可使用交接模式：新旧进程通过 SO_REUSEPORT 短暂共用端口，端口始终有进程在监听，
+ * 可选在结束旧进程前等待它上面的连接结束（排空）。
+ */
+public class XraySupervisor {
+
+    /**
+     * 守护统计快照
+     */
+    public static final class Stats {
+        private final long restarts;
+        private final long handoffs;
+        private final long crashLoops;
+        private final boolean running;
+        private final boolean ready;
+        private final boolean crashLooping;
+        private final long uptimeMillis;
+        private final long totalUptimeMillis;
+        private final long lastTimeToReadyMillis;
+        private final int lastExitCode;
+
+        Stats(long restarts, long handoffs, long crashLoops, boolean running, boolean ready, boolean crashLooping,
+              long uptimeMillis, long totalUptimeMillis, long lastTimeToReadyMillis, int lastExitCode) {
+            this.restarts = restarts;
+            this.handoffs = handoffs;
+            this.crashLoops = crashLoops;
+            this.running = running;
+            this.ready = ready;
+            this.crashLooping = crashLooping;
+            this.uptimeMillis = uptimeMillis;
+            this.totalUptimeMillis = totalUptimeMillis;
+            this.lastTimeToReadyMillis = lastTimeToReadyMillis;
+            this.lastExitCode = lastExitCode;
+        }
+
+        /** 累计重启次数 */
+        public long getRestarts() {
+            return restarts;
+        }
+
+        /** 交接次数（计划内重启，不计入 restarts） */
+        public long getHandoffs() {
+            return handoffs;
+        }
+
+        /** 进入崩溃循环的次数 */
+        public long getCrashLoops() {
+            return crashLoops;
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        public boolean isReady() {
+            return ready;
+        }
+
+        public boolean isCrashLooping() {
+            return crashLooping;
+        }
+
+        /** 当前进程已运行时长，未运行时为0 */
+        public long getUptimeMillis() {
+            return uptimeMillis;
+        }
+
+        /** 所有进程累计运行时长 */
+        public long getTotalUptimeMillis() {
+            return totalUptimeMillis;
+        }
+
+        /** 最近一次启动到端口可连接的耗时，-1表示尚未就绪 */
+        public long getLastTimeToReadyMillis() {
+            return lastTimeToReadyMillis;
+        }
+
+        public int getLastExitCode() {
+            return lastExitCode;
+        }
+
+        @Override
+        public String toString() {
+            return "restarts=" + restarts + ", handoffs=" + handoffs + ", crashLoops=" + crashLoops + ", running=" + running
+                + ", ready=" + ready + ", uptime=" + uptimeMillis + "ms, timeToReady=" + lastTimeToReadyMillis + "ms";
+        }
+    }
+
+    // 交接时等待新进程监听端口的最长时间
+    private static final long HANDOFF_READY_MILLIS = 15_000;
+
+    private final List<String> command;
+    private final int readyPort;
+    private final long firstRetryMillis;
+    private final long maxBackoffMillis;
+    private final long stableMillis;
+    private final int crashLoopThreshold;
+    private final long crashLoopWindowMillis;
+    private final OutputPump output;
+    private final boolean handoff;
+    private final long exitTimeoutMillis;
+
+    private final AtomicLong restarts = new AtomicLong();
+    private final AtomicLong handoffs = new AtomicLong();
+    private final AtomicLong crashLoops = new AtomicLong();
+    private final AtomicLong totalUptimeMillis = new AtomicLong();
+    private final Deque<Long> recentExits = new ArrayDeque<>();
+    private final Object swapLock = new Object();
+    // 交接后正在排空或退出的旧进程，stop() 时一并结束
+    private final Set<Process> retiring = ConcurrentHashMap.newKeySet();
+
+    private volatile Process process;
+    private volatile long startedAtNanos;
+    private volatile boolean ready;
+    private volatile boolean crashLooping;
+    private volatile long lastTimeToReadyMillis = -1;
+    private volatile int lastExitCode;
+    private volatile boolean stopped;
+    private volatile boolean plannedRestart;
+    private volatile long outputMark;
+    private volatile LongConsumer readyListener;
+    private volatile long drainTimeoutMillis;
+    private volatile int drainExcludedPort;
+
+    /**
+     * @param command   启动命令，例如 ./xray run -c c.json
+     * @param readyPort 就绪探测端口（127.0.0.1），0表示不探测
+     */
+    public XraySupervisor(List<String> command, int readyPort) {
+        this(command, readyPort, false, 0);
+    }
+
+    /**
+     * @param handoff     计划内重启时先启动新进程再结束旧进程（配置中的入站需开启 SO_REUSEPORT）
+     * @param exitTimeoutMillis 旧进程收到SIGTERM后等待其退出的时间，超时强制结束（Xray收到SIGTERM即关闭现有连接，这不是排空时间）
+     */
+    public XraySupervisor(List<String> command, int readyPort, boolean handoff, long exitTimeoutMillis) {
+        this(command, readyPort, 100, 30_000, 30_000, 5, 60_000, OutputPump.fromEnv(), handoff, exitTimeoutMillis);
+    }
+
+    public XraySupervisor(List<String> command, int readyPort, long firstRetryMillis, long maxBackoffMillis,
+                          long stableMillis, int crashLoopThreshold, long crashLoopWindowMillis, OutputPump output,
+                          boolean handoff, long exitTimeoutMillis) {
+        this.command = List.copyOf(command);
+        this.readyPort = readyPort;
+        this.firstRetryMillis = firstRetryMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.stableMillis = stableMillis;
+        this.crashLoopThreshold = crashLoopThreshold;
+        this.crashLoopWindowMillis = crashLoopWindowMillis;
+        this.output = output;
+        this.handoff = handoff;
+        this.exitTimeoutMillis = exitTimeoutMillis;
+    }
+
+    /**
+     * 启动并守护进程，直到 stop() 被调用（阻塞）
+     */
+    public void run() throws InterruptedException {
+        int attempt = 0;
+
+        while (!stopped) {
+            long start = System.nanoTime();
+            outputMark = output.getRing().written();
+            int exitCode;
+            try {
+                ready = false;
+                startedAtNanos = start;
+                Process p = launch();
+                process = p;
+                startReadinessProbe(p, start);
+
+                // 交接后转而等待接替它的新进程（旧进程在排空期间仍在运行，由交接线程结束）
+                while (true) {
+                    boolean exited = p.waitFor(200, TimeUnit.MILLISECONDS);
+                    Process current = process;
+                    if (current != null && current != p) {
+                        p = current;
+                    } else if (exited) {
+                        exitCode = p.exitValue();
+                        break;
+                    }
+                }
+                output.drain(500);
+            } catch (IOException e) {
+                System.err.println("❌ Error running Xray: " + e.getMessage());
+                exitCode = -1;
+            } finally {
+                process = null;
+                ready = false;
+            }
+
+            long uptime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNanos);
+            totalUptimeMillis.addAndGet(uptime);
+            lastExitCode = exitCode;
+            if (stopped) {
+                break;
+            }
+
+            // 计划内重启：立即重启，不计入崩溃退避
+            if (plannedRestart) {
+                plannedRestart = false;
+                restarts.incrementAndGet();
+                System.out.println("🔄 Restarting Xray (exited with code " + exitCode + " after " + uptime + " ms)");
+                continue;
+            }
+
+            // 运行足够久视为健康，退避从头开始
+            if (uptime >= stableMillis) {
+                attempt = 0;
+            }
+
+            // 输出最后的日志，便于排查崩溃原因
+            output.dumpTail(System.err, outputMark);
+
+            boolean loop = recordExit();
+            if (loop && !crashLooping) {
+                crashLoops.incrementAndGet();
+                System.err.println("🔁 Xray crash loop detected (" + crashLoopThreshold + " exits within "
+                    + crashLoopWindowMillis + " ms), backing off to " + maxBackoffMillis + " ms");
+            }
+            crashLooping = loop;
+
+            long delay = loop ? maxBackoffMillis : backoff(attempt);
+            attempt++;
+            restarts.incrementAndGet();
+
+            System.out.println("\n⚠️  Xray exited with code " + exitCode + " after " + uptime
+                + " ms, restarting in " + delay + " ms...");
+            TimeUnit.MILLISECONDS.sleep(delay);
+        }
+    }
+
+    /**
+     * 停止守护并结束当前进程
+     */
+    public void stop() {
+        Process p;
+        synchronized (swapLock) {
+            stopped = true;
+            p = process;
+        }
+        if (p != null) {
+            p.destroy();
+        }
+        for (Process old : retiring) {
+            old.destroy();
+        }
+    }
+
+    /**
+     * 计划内重启（例如配置变化后）
+     * 交接模式：先启动新进程，确认它已在就绪端口上监听后再接替；旧进程先排空（见 drainOnHandoff），
+     * 再收到SIGTERM，超时未退出则强制结束。端口始终有进程监听，新连接不会被拒绝；
+     * 但Xray收到SIGTERM会关闭旧进程上剩余的连接，客户端需要重连。
+     * 新进程失败、或等待期间旧进程已退出（已由 run() 重启）时放弃交接并返回false。非交接模式：结束当前进程并立即重启。
+     */
+    public synchronized boolean restart() throws InterruptedException {
+        Process old = process;
+        if (stopped || old == null) {
+            return false;
+        }
+        if (!handoff || readyPort <= 0) {
+            plannedRestart = true;
+            old.destroy();
+            return true;
+        }
+
+        long start = System.nanoTime();
+        long mark = output.getRing().written();
+        Process next;
+        try {
+            next = launch();
+        } catch (IOException e) {
+            System.err.println("❌ Handoff failed to start Xray: " + e.getMessage());
+            return false;
+        }
+
+        String failure = awaitListening(next);
+        if (failure == null) {
+            synchronized (swapLock) {
+                if (stopped) {
+                    failure = "supervisor stopped";
+                } else if (process != old) {
+                    // 等待期间旧进程崩溃并被 run() 重启，不能覆盖重启出的进程
+                    failure = "Xray pid " + old.pid() + " exited during handoff";
+                } else {
+                    totalUptimeMillis.addAndGet(TimeUnit.NANOSECONDS.toMillis(start - startedAtNanos));
+                    startedAtNanos = start;
+                    outputMark = mark;
+                    process = next;
+                    handoffs.incrementAndGet();
+                }
+            }
+        }
+        if (failure != null) {
+            next.destroyForcibly();
+            Process current = process;
+            System.err.println("❌ Handoff failed (" + failure + ")"
+                + (current != null ? ", keeping Xray pid " + current.pid() : ""));
+            output.dumpTail(System.err, mark);
+            return false;
+        }
+        markReady(start);
+
+        // 旧进程：排空后SIGTERM，超时未退出则强制结束（run() 在它退出后转而等待新进程）
+        long drainMillis = drainTimeoutMillis;
+        System.out.println("🔀 Xray handed off to pid " + next.pid() + ", stopping pid " + old.pid()
+            + (drainMillis > 0 ? " after its connections close (up to " + drainMillis + " ms)" : ""));
+        retiring.add(old);
+        Thread exitWait = new Thread(() -> {
+            try {
+                drain(old, drainMillis);
+                old.destroy();
+                if (!old.waitFor(exitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    System.err.println("⚠️  Xray pid " + old.pid() + " did not exit after SIGTERM, killing it");
+                    old.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                old.destroyForcibly();
+            } finally {
+                retiring.remove(old);
+            }
+        }, "xray-exit-wait");
+        exitWait.setDaemon(true);
+        exitWait.start();
+        return true;
+    }
+
+    /**
+     * 等待旧进程持有的连接全部结束，最多 timeoutMillis
+     * 旧进程在排空期间仍在监听，会继续分到一部分新连接，负载持续时通常等到超时，剩余连接随SIGTERM断开
+     */
+    private void drain(Process old, long timeoutMillis) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int connections = -1;
+        while (old.isAlive() && System.nanoTime() < deadline) {
+            try {
+                connections = ProcNet.established(old.pid(), drainExcludedPort);
+            } catch (IOException e) {
+                // 无法统计连接（非Linux），不排空
+                return;
+            }
+            if (connections == 0) {
+                System.out.println("✅ Xray pid " + old.pid() + " drained in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+        if (connections > 0 && old.isAlive()) {
+            System.err.println("⚠️  Xray pid " + old.pid() + " still has " + connections + " connection(s) after "
+                + timeoutMillis + " ms, closing them");
+        }
+    }
+
+    /**
+     * 启动进程，输出经管道由输出泵持续读取，写入环形缓冲区
+     */
+    private Process launch() throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectOutput(ProcessBuilder.Redirect.PIPE);
+        pb.redirectError(ProcessBuilder.Redirect.PIPE);
+        Process p = pb.start();
+        output.attach(p);
+        return p;
+    }
+
+    /**
+     * 等待新进程自己持有就绪端口上的监听套接字（端口被新旧进程共用，连接探测无法区分）
+     * 返回null表示就绪，否则为失败原因
+     */
+    private String awaitListening(Process p) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HANDOFF_READY_MILLIS);
+        while (System.nanoTime() < deadline) {
+            if (!p.isAlive()) {
+                return "exited with code " + p.exitValue();
+            }
+            try {
+                if (ProcNet.listens(p.pid(), readyPort)) {
+                    return null;
+                }
+            } catch (IOException e) {
+                return e.getMessage();
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        return "not listening on port " + readyPort + " after " + HANDOFF_READY_MILLIS + " ms";
+    }
+
+    /**
+     * 每次进程就绪时回调，参数为启动到就绪的毫秒数
+     */
+    public void onReady(LongConsumer listener) {
+        this.readyListener = listener;
+    }
+
+    /**
+     * 交接后先等待旧进程上的连接结束（最多 timeoutMillis，0为不等待）再发SIGTERM（在 run() 之前设置）
+     * excludedPort 上的连接不计入（API端口：管理连接长期保持，不属于用户流量）
+     */
+    public void drainOnHandoff(long timeoutMillis, int excludedPort) {
+        this.drainTimeoutMillis = timeoutMillis;
+        this.drainExcludedPort = excludedPort;
+    }
+
+    /**
+     * Xray输出缓冲（可用于读取最近的输出）
+     */
+    public OutputPump getOutput() {
+        return output;
+    }
+
+    /**
+     * 当前统计快照
+     */
+    public Stats stats() {
+        long started = startedAtNanos;
+        boolean running = process != null;
+        long uptime = running ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) : 0;
+        return new Stats(restarts.get(), handoffs.get(), crashLoops.get(), running, ready, crashLooping,
+            uptime, totalUptimeMillis.get() + uptime, lastTimeToReadyMillis, lastExitCode);
+    }
+
+    /**
+     * 带抖动的指数退避：首次重试很快，之后翻倍直到上限，在[上限/2, 上限]内随机
+     */
+    long backoff(int attempt) {
+        if (attempt == 0) {
+            return firstRetryMillis;
+        }
+        long ceiling = Math.min(maxBackoffMillis, firstRetryMillis << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    /**
+     * 记录一次退出，返回滑动窗口内的退出次数是否达到崩溃循环阈值
+     */
+    private boolean recordExit() {
+        long now = System.currentTimeMillis();
+        recentExits.addLast(now);
+        while (!recentExits.isEmpty() && now - recentExits.peekFirst() > crashLoopWindowMillis) {
+            recentExits.removeFirst();
+        }
+        return recentExits.size() >= crashLoopThreshold;
+    }
+
+    /**
+     * 轮询端口直到可连接，记录启动到就绪的耗时
+     */
+    private void startReadinessProbe(Process p, long start) {
+        if (readyPort <= 0) {
+            return;
+        }
+        Thread probe = new Thread(() -> {
+            while (p.isAlive() && !stopped) {
+                try (Socket socket = new Socket()) {
+                    socket.connect(new InetSocketAddress("127.0.0.1", readyPort), 200);
+                    if (process == p) {
+                        markReady(start);
+                    }
+                    return;
+                } catch (IOException e) {
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(50);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        }, "xray-ready-probe");
+        probe.setDaemon(true);
+        probe.start();
+    }
+
+    /**
+     * 记录就绪耗时，提交JFR事件并回调
+     */
+    private void markReady(long start) {
+        lastTimeToReadyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        ready = true;
+        System.out.println("✅ Xray ready in " + lastTimeToReadyMillis + " ms");
+
+        XrayReadyEvent event = new XrayReadyEvent();
+        event.timeToReady = lastTimeToReadyMillis;
+        event.port = readyPort;
+        event.restarts = restarts.get();
+        event.commit();
+
+        LongConsumer listener = readyListener;
+        if (listener != null) {
+            listener.accept(lastTimeToReadyMillis);
+        }
+    }
+}
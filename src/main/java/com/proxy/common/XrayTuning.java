@@ -0,0 +1,231 @@
+package com.proxy.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.proxy.common.api.XrayApiClient;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Xray配置调优
+ * 按主机的CPU核数和内存选择预设，为代理入站和 freedom 出站写入 sockopt，
+ * 为 policy.levels."0" 写入缓冲区大小和各类超时
+ *
+ * 预设：auto（默认，按主机选择）、low-memory、balanced、high-throughput、off（不修改配置）
+ */
+public final class XrayTuning {
+
+    /**
+     * 预设参数
+     */
+    public enum Preset {
+        /** 1核或内存不足1GiB的小VPS：小缓冲、快速回收空闲连接 */
+        LOW_MEMORY("low-memory", 4, 4, 120, 1, 1, 30, 0),
+        /** 常见配置 */
+        BALANCED("balanced", 64, 4, 300, 2, 5, 30, 256),
+        /** 8核8GiB以上：大缓冲、长空闲超时、较长的TFO队列 */
+        HIGH_THROUGHPUT("high-throughput", 512, 8, 600, 5, 10, 60, 4096),
+        /** 不写入任何调优参数 */
+        OFF("off", 0, 0, 0, 0, 0, 0, 0);
+
+        private final String id;
+        final int bufferSizeKb;
+        final int handshake;
+        final int connIdle;
+        final int uplinkOnly;
+        final int downlinkOnly;
+        final int keepAliveInterval;
+        /** 服务端 TCP Fast Open 队列长度，0 表示只启用（true） */
+        final int fastOpenQueue;
+
+        Preset(String id, int bufferSizeKb, int handshake, int connIdle, int uplinkOnly, int downlinkOnly,
+               int keepAliveInterval, int fastOpenQueue) {
+            this.id = id;
+            this.bufferSizeKb = bufferSizeKb;
+            this.handshake = handshake;
+            this.connIdle = connIdle;
+            this.uplinkOnly = uplinkOnly;
+            this.downlinkOnly = downlinkOnly;
+            this.keepAliveInterval = keepAliveInterval;
+            this.fastOpenQueue = fastOpenQueue;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        static Preset parse(String value) {
+            String id = value.trim().toLowerCase(Locale.ROOT);
+            for (Preset preset : values()) {
+                if (preset.id.equals(id)) {
+                    return preset;
+                }
+            }
+            throw new IllegalArgumentException("Unknown XRAY_TUNING preset: " + value
+                + " (expected auto, low-memory, balanced, high-throughput or off)");
+        }
+    }
+
+    private static final long GIB = 1024L * 1024 * 1024;
+
+    private final Preset preset;
+    private final int cpus;
+    private final long memoryBytes;
+    private final String congestion;
+
+    public XrayTuning(Preset preset, int cpus, long memoryBytes, String congestion) {
+        this.preset = preset;
+        this.cpus = cpus;
+        this.memoryBytes = memoryBytes;
+        this.congestion = congestion;
+    }
+
+    /**
+     * 从环境变量 XRAY_TUNING 创建（默认 auto）；拥塞控制优先使用内核允许的 bbr
+     */
+    public static XrayTuning fromEnv() {
+        String value = System.getenv().getOrDefault("XRAY_TUNING", "auto");
+        int cpus = Runtime.getRuntime().availableProcessors();
+        long memory = totalMemory();
+        Preset preset = "auto".equalsIgnoreCase(value.trim()) ? choose(cpus, memory) : Preset.parse(value);
+        return new XrayTuning(preset, cpus, memory, allowedCongestion("bbr"));
+    }
+
+    /**
+     * 按核数和内存选择预设
+     */
+    public static Preset choose(int cpus, long memoryBytes) {
+        if (cpus <= 1 || (memoryBytes > 0 && memoryBytes < GIB)) {
+            return Preset.LOW_MEMORY;
+        }
+        if (cpus >= 8 && memoryBytes >= 8 * GIB) {
+            return Preset.HIGH_THROUGHPUT;
+        }
+        return Preset.BALANCED;
+    }
+
+    public Preset getPreset() {
+        return preset;
+    }
+
+    /**
+     * 写入调优参数（在 XrayApiClient.enable 之后调用，合并已有的 policy 和 sockopt）
+     */
+    public void apply(JsonObject config) {
+        if (preset == Preset.OFF) {
+            return;
+        }
+
+        JsonObject policy = child(config, "policy");
+        JsonObject level = child(child(policy, "levels"), "0");
+        level.addProperty("handshake", preset.handshake);
+        level.addProperty("connIdle", preset.connIdle);
+        level.addProperty("uplinkOnly", preset.uplinkOnly);
+        level.addProperty("downlinkOnly", preset.downlinkOnly);
+        level.addProperty("bufferSize", preset.bufferSizeKb);
+
+        if (config.has("inbounds")) {
+            for (JsonElement element : config.getAsJsonArray("inbounds")) {
+                JsonObject inbound = element.getAsJsonObject();
+                if (inbound.has("tag") && XrayApiClient.API_TAG.equals(inbound.get("tag").getAsString())) {
+                    continue;
+                }
+                JsonObject sockopt = child(child(inbound, "streamSettings"), "sockopt");
+                if (preset.fastOpenQueue > 0) {
+                    sockopt.addProperty("tcpFastOpen", preset.fastOpenQueue);
+                } else {
+                    sockopt.addProperty("tcpFastOpen", true);
+                }
+                applyCommon(sockopt);
+            }
+        }
+
+        if (config.has("outbounds")) {
+            JsonArray outbounds = config.getAsJsonArray("outbounds");
+            for (JsonElement element : outbounds) {
+                JsonObject outbound = element.getAsJsonObject();
+                if (!"freedom".equals(outbound.get("protocol").getAsString())) {
+                    continue;
+                }
+                JsonObject sockopt = child(child(outbound, "streamSettings"), "sockopt");
+                sockopt.addProperty("tcpFastOpen", true);
+                applyCommon(sockopt);
+            }
+        }
+    }
+
+    private void applyCommon(JsonObject sockopt) {
+        sockopt.addProperty("tcpKeepAliveInterval", preset.keepAliveInterval);
+        if (congestion != null) {
+            sockopt.addProperty("tcpcongestion", congestion);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%d cpus, %.1f GiB%s)", preset.id, cpus, memoryBytes / (double) GIB,
+            congestion != null ? ", " + congestion : "");
+    }
+
+    private static JsonObject child(JsonObject parent, String name) {
+        if (parent.has(name) && parent.get(name).isJsonObject()) {
+            return parent.getAsJsonObject(name);
+        }
+        JsonObject child = new JsonObject();
+        parent.add(name, child);
+        return child;
+    }
+
+    /**
+     * 物理内存（取不到时为0）；容器中优先使用 cgroup 内存上限
+     */
+    private static long totalMemory() {
+        long limit = cgroupMemoryLimit();
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        long physical = os instanceof com.sun.management.OperatingSystemMXBean
+            ? ((com.sun.management.OperatingSystemMXBean) os).getTotalMemorySize() : 0;
+        if (limit > 0 && (physical == 0 || limit < physical)) {
+            return limit;
+        }
+        return physical;
+    }
+
+    private static long cgroupMemoryLimit() {
+        for (String file : new String[] {"/sys/fs/cgroup/memory.max", "/sys/fs/cgroup/memory/memory.limit_in_bytes"}) {
+            try {
+                String value = Files.readString(Paths.get(file)).trim();
+                if (!value.equals("max")) {
+                    return Long.parseLong(value);
+                }
+            } catch (IOException | NumberFormatException e) {
+                // 不在容器中或cgroup版本不同
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 非特权进程可选的拥塞控制算法中包含 name 时返回 name，否则返回null（不设置 tcpcongestion，保持系统默认）
+     * 只读 tcp_allowed_congestion_control：available 中有但未被允许的算法，非root进程设置时会得到EPERM
+     */
+    static String allowedCongestion(String name) {
+        Path allowed = Paths.get("/proc/sys/net/ipv4/tcp_allowed_congestion_control");
+        try {
+            for (String algorithm : Files.readString(allowed).trim().split("\\s+")) {
+                if (algorithm.equals(name)) {
+                    return name;
+                }
+            }
+        } catch (IOException e) {
+            // 非Linux
+        }
+        return null;
+    }
+}
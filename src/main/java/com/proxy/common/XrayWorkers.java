@@ -0,0 +1,362 @@
+package com.proxy.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.proxy.common.api.XrayApiClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+
+/**
+ * 多进程 Xray 工作模式
+ * N 个 Xray 进程通过 SO_REUSEPORT 共用同一端口，由内核分配连接；每个进程单独守护，
+ * 一个进程崩溃只影响约 1/N 的连接。每个进程使用自己的配置文件和 API 端口（基础端口 + 序号）。
+ * 交接模式下所有入站都开启 SO_REUSEPORT，计划内重启（restart() 或 SIGHUP）时新进程先监听、旧进程再退出。
+ */
+public class XrayWorkers {
+
+    /**
+     * 配置写出方式（树形或流式）
+     */
+    @FunctionalInterface
+    public interface ConfigWriter {
+        void write(JsonObject config, Path target) throws IOException;
+    }
+
+    // Linux: SOL_SOCKET = 1, SO_REUSEPORT = 15
+    private static final String SOL_SOCKET = "1";
+    private static final String SO_REUSEPORT = "15";
+
+    // 正在运行的进程组，SIGHUP 时依次重启
+    private static final List<XrayWorkers> RUNNING = new CopyOnWriteArrayList<>();
+    private static boolean reloadHandlerInstalled;
+
+    private final int count;
+    private final boolean pinCpus;
+    private final Path configDir;
+    private final boolean handoff;
+    private final long exitTimeoutMillis;
+    private final long drainTimeoutMillis;
+    private final List<XraySupervisor> supervisors = new ArrayList<>();
+    private volatile LongConsumer readyListener;
+
+    public XrayWorkers(int count, boolean pinCpus) {
+        this(count, pinCpus, Paths.get(""));
+    }
+
+    public XrayWorkers(int count, boolean pinCpus, Path configDir) {
+        this(count, pinCpus, configDir, false, 0);
+    }
+
+    public XrayWorkers(int count, boolean pinCpus, Path configDir, boolean handoff, long exitTimeoutMillis) {
+        this(count, pinCpus, configDir, handoff, 0, exitTimeoutMillis);
+    }
+
+    /**
+     * @param handoff     计划内重启使用交接模式
+     * @param drainTimeoutMillis 交接后等待旧进程上的连接结束的最长时间（0为不等待）
+     * @param exitTimeoutMillis 旧进程收到SIGTERM后等待其退出的时间
+     */
+    public XrayWorkers(int count, boolean pinCpus, Path configDir, boolean handoff, long drainTimeoutMillis,
+                       long exitTimeoutMillis) {
+        if (count < 1) {
+            throw new IllegalArgumentException("worker count must be >= 1: " + count);
+        }
+        this.count = count;
+        this.pinCpus = pinCpus;
+        this.configDir = configDir;
+        this.handoff = handoff;
+        this.exitTimeoutMillis = exitTimeoutMillis;
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    /**
+     * 从环境变量创建：XRAY_WORKERS（数字或 auto=CPU核数，默认1），XRAY_PIN_CPUS（true时用taskset绑到允许使用的CPU上）
+     */
+    public static XrayWorkers fromEnv() {
+        String workers = System.getenv().getOrDefault("XRAY_WORKERS", "1").trim();
+        int count = "auto".equalsIgnoreCase(workers)
+            ? Runtime.getRuntime().availableProcessors()
+            : Integer.parseInt(workers);
+        String pin = System.getenv("XRAY_PIN_CPUS");
+        return new XrayWorkers(count, "true".equalsIgnoreCase(pin) || "1".equals(pin), Paths.get(""),
+            handoffFromEnv(), drainTimeoutMillisFromEnv(), exitTimeoutMillisFromEnv());
+    }
+
+    /**
+     * XRAY_HANDOFF（true时计划内重启使用交接模式，默认false）
+     */
+    public static boolean handoffFromEnv() {
+        String handoff = System.getenv("XRAY_HANDOFF");
+        return "true".equalsIgnoreCase(handoff) || "1".equals(handoff);
+    }
+
+    /**
+     * XRAY_DRAIN_TIMEOUT（交接后等待旧进程上的连接结束的秒数，之后才发SIGTERM，默认30秒，0为不等待）
+     */
+    public static long drainTimeoutMillisFromEnv() {
+        return Long.parseLong(System.getenv().getOrDefault("XRAY_DRAIN_TIMEOUT", "30")) * 1000;
+    }
+
+    /**
+     * XRAY_EXIT_TIMEOUT（旧进程收到SIGTERM后等待其退出的秒数，超时强制结束，默认10秒）
+     */
+    public static long exitTimeoutMillisFromEnv() {
+        return Long.parseLong(System.getenv().getOrDefault("XRAY_EXIT_TIMEOUT", "10")) * 1000;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * 第 worker 个进程的配置文件；单进程时仍为 c.json
+     */
+    public Path configPath(int worker) {
+        return configDir.resolve(count == 1 ? "c.json" : "c-" + worker + ".json");
+    }
+
+    /**
+     * 第 worker 个进程的 API 端口（apiPort 为0时不启用）
+     */
+    public int apiPort(int apiPort, int worker) {
+        return apiPort > 0 ? apiPort + worker : 0;
+    }
+
+    /**
+     * 为每个进程写出配置：多进程时对业务入站开启 SO_REUSEPORT，并依次改写 API 入站端口；
+     * 交接模式下 API 入站也开启（新旧进程交接期间共用同一 API 端口）
+     */
+    public void render(JsonObject config, int apiPort, ConfigWriter writer) throws IOException {
+        if (count == 1 && !handoff) {
+            writer.write(config, configPath(0));
+            return;
+        }
+
+        JsonObject api = null;
+        for (JsonElement element : config.getAsJsonArray("inbounds")) {
+            JsonObject inbound = element.getAsJsonObject();
+            boolean isApi = inbound.has("tag") && XrayApiClient.API_TAG.equals(inbound.get("tag").getAsString());
+            if (isApi) {
+                api = inbound;
+            }
+            if (!isApi || handoff) {
+                enableReusePort(inbound);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (api != null) {
+                api.addProperty("port", apiPort(apiPort, i));
+            }
+            writer.write(config, configPath(i));
+        }
+        if (api != null) {
+            api.addProperty("port", apiPort);
+        }
+    }
+
+    /**
+     * 通过 sockopt.customSockopt 设置 SO_REUSEPORT（Xray 在 bind 之前应用）
+     */
+    public static void enableReusePort(JsonObject inbound) {
+        JsonObject streamSettings = inbound.has("streamSettings")
+            ? inbound.getAsJsonObject("streamSettings") : new JsonObject();
+        JsonObject sockopt = streamSettings.has("sockopt")
+            ? streamSettings.getAsJsonObject("sockopt") : new JsonObject();
+
+        JsonObject reusePort = new JsonObject();
+        reusePort.addProperty("system", "linux");
+        reusePort.addProperty("type", "int");
+        reusePort.addProperty("level", SOL_SOCKET);
+        reusePort.addProperty("opt", SO_REUSEPORT);
+        reusePort.addProperty("value", "1");
+
+        JsonArray custom = sockopt.has("customSockopt") ? sockopt.getAsJsonArray("customSockopt") : new JsonArray();
+        custom.add(reusePort);
+        sockopt.add("customSockopt", custom);
+        streamSettings.add("sockopt", sockopt);
+        inbound.add("streamSettings", streamSettings);
+    }
+
+    /**
+     * 启动并守护所有进程，直到全部停止（阻塞）
+     * 多进程时就绪探测使用各自的 API 端口，业务端口被共享无法区分进程
+     */
+    public void run(String xray, int port, int apiPort) throws InterruptedException {
+        List<Integer> cpus = List.of();
+        if (pinCpus && count > 1) {
+            if (!Files.isExecutable(Paths.get("/usr/bin/taskset"))) {
+                System.err.println("⚠️  taskset not found, running workers without CPU pinning");
+            } else {
+                cpus = allowedCpus();
+                if (cpus.isEmpty()) {
+                    System.err.println("⚠️  Allowed CPUs unknown, running workers without CPU pinning");
+                }
+            }
+        }
+        boolean pin = !cpus.isEmpty();
+
+        synchronized (supervisors) {
+            supervisors.clear();
+            for (int i = 0; i < count; i++) {
+                List<String> command = new ArrayList<>();
+                if (pin) {
+                    command.addAll(List.of("/usr/bin/taskset", "-c", String.valueOf(cpus.get(i % cpus.size()))));
+                }
+                command.addAll(List.of(xray, "run", "-c", configPath(i).toString()));
+                int readyPort = count > 1 && apiPort > 0 ? apiPort(apiPort, i) : port;
+                XraySupervisor supervisor = new XraySupervisor(command, readyPort, handoff, exitTimeoutMillis);
+                supervisor.onReady(readyListener);
+                supervisor.drainOnHandoff(drainTimeoutMillis, apiPort(apiPort, i));
+                supervisors.add(supervisor);
+            }
+        }
+
+        RUNNING.add(this);
+        installReloadHandler();
+        try {
+            runAll(port, pin);
+        } finally {
+            RUNNING.remove(this);
+        }
+    }
+
+    /**
+     * 当前进程允许使用的CPU编号（/proc/self/status 的 Cpus_allowed_list，受 cpuset/容器限制），
+     * 读取失败时返回空列表（不绑核）。availableProcessors() 只是数量，编号不一定从0开始连续
+     */
+    static List<Integer> allowedCpus() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("Cpus_allowed_list:")) {
+                    return parseCpuList(line.substring(line.indexOf(':') + 1));
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // 非Linux或格式无法识别
+        }
+        return List.of();
+    }
+
+    /**
+     * 解析 "0-3,8,10-11" 格式的CPU列表
+     */
+    static List<Integer> parseCpuList(String list) {
+        List<Integer> cpus = new ArrayList<>();
+        for (String part : list.trim().split(",")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            int dash = part.indexOf('-');
+            int first = Integer.parseInt(dash < 0 ? part : part.substring(0, dash));
+            int last = dash < 0 ? first : Integer.parseInt(part.substring(dash + 1));
+            for (int cpu = first; cpu <= last; cpu++) {
+                cpus.add(cpu);
+            }
+        }
+        return cpus;
+    }
+
+    /**
+     * 守护各进程直到全部停止，单进程时在当前线程运行
+     */
+    private void runAll(int port, boolean pin) throws InterruptedException {
+        if (count == 1) {
+            supervisors.get(0).run();
+            return;
+        }
+
+        System.out.println("🧵 Starting " + count + " Xray workers on port " + port + (pin ? " (CPU pinned)" : ""));
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            XraySupervisor supervisor = supervisors.get(i);
+            Thread thread = new Thread(() -> {
+                try {
+                    supervisor.run();
+                } catch (InterruptedException e) {
+                    supervisor.stop();
+                }
+            }, "xray-worker-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            stop();
+            throw e;
+        }
+    }
+
+    /**
+     * 任一进程就绪时回调（在 run() 之前设置）
+     */
+    public void onReady(LongConsumer listener) {
+        this.readyListener = listener;
+    }
+
+    /**
+     * 计划内重启：逐个重启各进程（交接模式下每次只有一个进程在交接，其余继续服务）
+     * 返回false表示有进程交接失败（该进程保持原样）
+     */
+    public boolean restart() throws InterruptedException {
+        boolean ok = true;
+        for (XraySupervisor supervisor : getSupervisors()) {
+            ok &= supervisor.restart();
+        }
+        return ok;
+    }
+
+    /**
+     * 收到 SIGHUP 时重启所有正在运行的进程组（例如 systemctl reload，配合交接模式不中断服务）
+     */
+    private static synchronized void installReloadHandler() {
+        if (reloadHandlerInstalled) {
+            return;
+        }
+        reloadHandlerInstalled = true;
+        HangupSignal.handle(() -> {
+            Thread reload = new Thread(() -> {
+                System.out.println("🔄 SIGHUP received, restarting Xray");
+                try {
+                    for (XrayWorkers workers : RUNNING) {
+                        workers.restart();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "xray-reload");
+            reload.setDaemon(true);
+            reload.start();
+        });
+    }
+
+    /**
+     * 停止所有进程
+     */
+    public void stop() {
+        for (XraySupervisor supervisor : getSupervisors()) {
+            supervisor.stop();
+        }
+    }
+
+    /**
+     * 各进程的守护（启动后可读取统计）
+     */
+    public List<XraySupervisor> getSupervisors() {
+        synchronized (supervisors) {
+            return Collections.unmodifiableList(new ArrayList<>(supervisors));
+        }
+    }
+}
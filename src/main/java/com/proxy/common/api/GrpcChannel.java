@@ -0,0 +1,237 @@
+package com.proxy.common.api;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 最小 gRPC 客户端（只支持一元调用）
+ * HTTP/2 明文 + prior knowledge 由 httpclient5 的 H2 客户端处理，这里只负责 gRPC 消息帧和状态；
+ * Xray 的 API 入站只监听本机回环地址，不需要 TLS
+ */
+final class GrpcChannel implements Closeable {
+    private static final ContentType GRPC = ContentType.create("application/grpc");
+
+    /**
+     * 非0的 grpc-status
+     */
+    static final class StatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        StatusException(int status, String message) {
+            super("gRPC status " + status + ": " + message);
+            this.status = status;
+        }
+
+        int getStatus() {
+            return status;
+        }
+    }
+
+    private final String baseUri;
+    private final int timeoutMillis;
+    private CloseableHttpAsyncClient client;
+
+    GrpcChannel(String host, int port, int timeoutMillis) {
+        this.baseUri = "http://" + host + ":" + port;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 执行一次一元调用，返回响应消息体（protobuf编码）
+     */
+    byte[] call(String path, byte[] request) throws IOException {
+        // gRPC消息帧：1字节压缩标志 + 4字节长度 + 消息
+        byte[] message = new byte[5 + request.length];
+        message[1] = (byte) (request.length >>> 24);
+        message[2] = (byte) (request.length >>> 16);
+        message[3] = (byte) (request.length >>> 8);
+        message[4] = (byte) request.length;
+        System.arraycopy(request, 0, message, 5, request.length);
+
+        AsyncRequestProducer producer = AsyncRequestBuilder.post(baseUri + path)
+            .addHeader("te", "trailers")
+            .setEntity(message, GRPC)
+            .build();
+        Future<byte[]> future = client().execute(producer, new ResponseConsumer(), null);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during gRPC call " + path, e);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IOException("gRPC call " + path + " timed out after " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("gRPC call " + path + " failed: " + cause, cause);
+        }
+    }
+
+    /**
+     * 首次调用时创建客户端（连接由客户端维护，Xray 重启后自动重连）
+     */
+    private synchronized CloseableHttpAsyncClient client() {
+        if (client == null) {
+            Timeout timeout = Timeout.ofMilliseconds(timeoutMillis);
+            client = H2AsyncClientBuilder.create()
+                .setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(1).setSoTimeout(timeout).build())
+                .setDefaultConnectionConfig(ConnectionConfig.custom().setConnectTimeout(timeout).build())
+                .setThreadFactory(r -> {
+                    Thread t = new Thread(r, "xray-api");
+                    t.setDaemon(true);
+                    return t;
+                })
+                // AddUser 不是幂等操作，失败由调用方决定是否重试
+                .disableAutomaticRetries()
+                .disableRedirectHandling()
+                .disableCookieManagement()
+                .disableAuthCaching()
+                .build();
+            client.start();
+        }
+        return client;
+    }
+
+    /**
+     * 累积响应数据，流结束时按 grpc-status 完成或失败
+     */
+    private static final class ResponseConsumer implements AsyncResponseConsumer<byte[]> {
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private HttpResponse response;
+        private FutureCallback<byte[]> callback;
+
+        @Override
+        public void consumeResponse(HttpResponse response, EntityDetails entityDetails, HttpContext context,
+                                    FutureCallback<byte[]> callback) {
+            this.response = response;
+            this.callback = callback;
+            if (entityDetails == null) {
+                // Trailers-Only：状态在响应头中
+                complete(Arrays.asList(response.getHeaders()));
+            }
+        }
+
+        @Override
+        public void informationResponse(HttpResponse response, HttpContext context) {
+        }
+
+        @Override
+        public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+            capacityChannel.update(Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void consume(ByteBuffer src) {
+            while (src.hasRemaining()) {
+                data.write(src.get());
+            }
+        }
+
+        @Override
+        public void streamEnd(List<? extends Header> trailers) {
+            complete(trailers != null ? trailers : Arrays.asList(response.getHeaders()));
+        }
+
+        @Override
+        public void failed(Exception cause) {
+            if (callback != null) {
+                callback.failed(cause);
+            }
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+
+        private void complete(List<? extends Header> trailers) {
+            try {
+                callback.completed(parse(response.getCode(), trailers, data.toByteArray()));
+            } catch (IOException e) {
+                callback.failed(e);
+            }
+        }
+    }
+
+    /**
+     * 按 grpc-status 检查响应并去掉消息帧头
+     */
+    static byte[] parse(int httpStatus, List<? extends Header> trailers, byte[] data) throws IOException {
+        String status = value(trailers, "grpc-status");
+        if (status == null) {
+            throw new IOException("gRPC response without grpc-status (HTTP " + httpStatus + ")");
+        }
+        if (!"0".equals(status)) {
+            int code;
+            try {
+                code = Integer.parseInt(status);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid grpc-status: " + status);
+            }
+            String msg = value(trailers, "grpc-message");
+            throw new StatusException(code, msg == null ? "" : URLDecoder.decode(msg, StandardCharsets.UTF_8));
+        }
+
+        if (data.length < 5) {
+            return new byte[0];
+        }
+        if (data[0] != 0) {
+            throw new IOException("Compressed gRPC responses are not supported");
+        }
+        long length = ((data[1] & 0xffL) << 24) | ((data[2] & 0xff) << 16) | ((data[3] & 0xff) << 8) | (data[4] & 0xff);
+        // 长度来自对端，不能超过实际收到的数据
+        if (length > data.length - 5) {
+            throw new IOException("gRPC message length " + length + " exceeds received " + (data.length - 5) + " bytes");
+        }
+        return Arrays.copyOfRange(data, 5, 5 + (int) length);
+    }
+
+    private static String value(List<? extends Header> headers, String name) {
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (client != null) {
+            client.close(CloseMode.IMMEDIATE);
+            client = null;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.proxy.common.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Protobuf 最小编解码（只覆盖 Xray API 用到的 varint 和 length-delimited 字段）
+ */
+final class Proto {
+    static final int VARINT = 0;
+    static final int FIXED64 = 1;
+    static final int LENGTH_DELIMITED = 2;
+    static final int FIXED32 = 5;
+
+    private Proto() {
+    }
+
+    /**
+     * 消息写入器
+     */
+    static final class Writer {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+
+        Writer string(int field, String value) {
+            if (value != null && !value.isEmpty()) {
+                bytes(field, value.getBytes(StandardCharsets.UTF_8));
+            }
+            return this;
+        }
+
+        Writer bytes(int field, byte[] value) {
+            tag(field, LENGTH_DELIMITED);
+            varint(value.length);
+            out.write(value, 0, value.length);
+            return this;
+        }
+
+        Writer message(int field, Writer message) {
+            return bytes(field, message.toByteArray());
+        }
+
+        Writer uint(int field, long value) {
+            if (value != 0) {
+                tag(field, VARINT);
+                varint(value);
+            }
+            return this;
+        }
+
+        Writer bool(int field, boolean value) {
+            return uint(field, value ? 1 : 0);
+        }
+
+        private void tag(int field, int wireType) {
+            varint(((long) field << 3) | wireType);
+        }
+
+        private void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * 消息读取器，按字段顺序遍历
+     */
+    static final class Reader {
+        private final byte[] data;
+        private int pos;
+        private final int end;
+        private int field;
+        private int wireType;
+
+        Reader(byte[] data) {
+            this(data, 0, data.length);
+        }
+
+        Reader(byte[] data, int offset, int length) {
+            this.data = data;
+            this.pos = offset;
+            this.end = offset + length;
+        }
+
+        /**
+         * 前进到下一个字段，没有更多字段时返回false
+         */
+        boolean next() throws IOException {
+            if (pos >= end) {
+                return false;
+            }
+            long tag = varint();
+            field = (int) (tag >>> 3);
+            wireType = (int) (tag & 7);
+            return true;
+        }
+
+        int field() {
+            return field;
+        }
+
+        long readVarint() throws IOException {
+            return varint();
+        }
+
+        String readString() throws IOException {
+            int length = (int) varint();
+            check(length);
+            String s = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        Reader readMessage() throws IOException {
+            int length = (int) varint();
+            check(length);
+            Reader reader = new Reader(data, pos, length);
+            pos += length;
+            return reader;
+        }
+
+        void skip() throws IOException {
+            switch (wireType) {
+                case VARINT:
+                    varint();
+                    break;
+                case FIXED64:
+                    check(8);
+                    pos += 8;
+                    break;
+                case LENGTH_DELIMITED:
+                    int length = (int) varint();
+                    check(length);
+                    pos += length;
+                    break;
+                case FIXED32:
+                    check(4);
+                    pos += 4;
+                    break;
+                default:
+                    throw new IOException("Unsupported protobuf wire type " + wireType);
+            }
+        }
+
+        private long varint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                check(1);
+                int b = data[pos++] & 0xff;
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed protobuf varint");
+        }
+
+        private void check(int length) throws IOException {
+            if (length < 0 || pos + length > end) {
+                throw new IOException("Truncated protobuf message");
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.proxy.common.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.proxy.common.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Xray gRPC API 客户端（HandlerService / StatsService）
+ */
+public class XrayApiClient implements Closeable {
+    public static final String API_TAG = "api";
+
+    public static final int NOT_FOUND = 5;
+    public static final int ALREADY_EXISTS = 6;
+
+    private static final String ALTER_INBOUND = "/xray.app.proxyman.command.HandlerService/AlterInbound";
+    private static final String QUERY_STATS = "/xray.app.stats.command.StatsService/QueryStats";
+
+    /**
+     * 协议账号（TypedMessage 的类型名 + 序列化后的内容）
+     */
+    public static final class Account {
+        final String type;
+        final byte[] value;
+
+        private Account(String type, byte[] value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private final GrpcChannel channel;
+
+    public XrayApiClient(int port) {
+        this("127.0.0.1", port);
+    }
+
+    public XrayApiClient(String host, int port) {
+        this.channel = new GrpcChannel(host, port, 5000);
+    }
+
+    /**
+     * 在生成的配置中启用 API 入站（仅监听127.0.0.1）、HandlerService/StatsService 及用户/入站流量统计
+     */
+    public static void enable(JsonObject config, int apiPort) {
+        JsonObject api = new JsonObject();
+        api.addProperty("tag", API_TAG);
+        JsonArray services = new JsonArray();
+        services.add("HandlerService");
+        services.add("StatsService");
+        api.add("services", services);
+        config.add("api", api);
+
+        if (!config.has("stats")) {
+            config.add("stats", new JsonObject());
+        }
+
+        // 开启按用户（需要email）和按入站的流量计数
+        JsonObject level = new JsonObject();
+        level.addProperty("statsUserUplink", true);
+        level.addProperty("statsUserDownlink", true);
+        JsonObject levels = new JsonObject();
+        levels.add("0", level);
+        JsonObject system = new JsonObject();
+        system.addProperty("statsInboundUplink", true);
+        system.addProperty("statsInboundDownlink", true);
+        JsonObject policy = config.has("policy") ? config.getAsJsonObject("policy") : new JsonObject();
+        policy.add("levels", levels);
+        policy.add("system", system);
+        config.add("policy", policy);
+
+        JsonObject inbound = new JsonObject();
+        inbound.addProperty("listen", "127.0.0.1");
+        inbound.addProperty("port", apiPort);
+        inbound.addProperty("protocol", "dokodemo-door");
+        JsonObject settings = new JsonObject();
+        settings.addProperty("address", "127.0.0.1");
+        inbound.add("settings", settings);
+        inbound.addProperty("tag", API_TAG);
+        config.getAsJsonArray("inbounds").add(inbound);
+
+        JsonObject rule = new JsonObject();
+        rule.addProperty("type", "field");
+        JsonArray inboundTag = new JsonArray();
+        inboundTag.add(API_TAG);
+        rule.add("inboundTag", inboundTag);
+        rule.addProperty("outboundTag", API_TAG);
+
+        JsonObject routing = config.has("routing") ? config.getAsJsonObject("routing") : new JsonObject();
+        JsonArray rules = routing.has("rules") ? routing.getAsJsonArray("rules") : new JsonArray();
+        rules.add(rule);
+        routing.add("rules", rules);
+        config.add("routing", routing);
+    }
+
+    /**
+     * VMess账号
+     */
+    public static Account vmessAccount(User user) {
+        return new Account("xray.proxy.vmess.Account", new Proto.Writer()
+            .string(1, user.getId())
+            .toByteArray());
+    }
+
+    /**
+     * VLESS账号
+     */
+    public static Account vlessAccount(User user, String flow) {
+        return new Account("xray.proxy.vless.Account", new Proto.Writer()
+            .string(1, user.getId())
+            .string(2, flow)
+            .string(3, "none")
+            .toByteArray());
+    }
+
+    /**
+     * 向入站添加用户
+     */
+    public void addUser(String inboundTag, User user, Account account) throws IOException {
+        Proto.Writer protocolUser = new Proto.Writer()
+            .string(2, user.getEmail())
+            .message(3, typedMessage(account.type, account.value));
+
+        Proto.Writer operation = new Proto.Writer().message(1, protocolUser);
+        alterInbound(inboundTag, "xray.app.proxyman.command.AddUserOperation", operation.toByteArray());
+    }
+
+    /**
+     * 按email从入站移除用户
+     */
+    public void removeUser(String inboundTag, String email) throws IOException {
+        Proto.Writer operation = new Proto.Writer().string(1, email);
+        alterInbound(inboundTag, "xray.app.proxyman.command.RemoveUserOperation", operation.toByteArray());
+    }
+
+    /**
+     * 查询统计计数器，reset为true时读取后清零
+     */
+    public Map<String, Long> queryStats(String pattern, boolean reset) throws IOException {
+        byte[] request = new Proto.Writer()
+            .string(1, pattern)
+            .bool(2, reset)
+            .toByteArray();
+
+        Map<String, Long> stats = new LinkedHashMap<>();
+        Proto.Reader response = new Proto.Reader(channel.call(QUERY_STATS, request));
+        while (response.next()) {
+            if (response.field() != 1) {
+                response.skip();
+                continue;
+            }
+            Proto.Reader stat = response.readMessage();
+            String name = null;
+            long value = 0;
+            while (stat.next()) {
+                if (stat.field() == 1) {
+                    name = stat.readString();
+                } else if (stat.field() == 2) {
+                    value = stat.readVarint();
+                } else {
+                    stat.skip();
+                }
+            }
+            if (name != null) {
+                stats.put(name, value);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * gRPC状态码（非API错误时返回-1）
+     */
+    public static int statusOf(IOException e) {
+        return e instanceof GrpcChannel.StatusException ? ((GrpcChannel.StatusException) e).getStatus() : -1;
+    }
+
+    /**
+     * 添加的用户已存在；Xray 不设置状态码，以 Unknown 返回 "User xxx already exists."
+     */
+    public static boolean alreadyExists(IOException e) {
+        int status = statusOf(e);
+        return status == ALREADY_EXISTS || (status > 0 && e.getMessage().contains("already exists"));
+    }
+
+    /**
+     * 删除的用户不存在；Xray 以 Unknown 返回 "User xxx not found."
+     */
+    public static boolean notFound(IOException e) {
+        int status = statusOf(e);
+        return status == NOT_FOUND || (status > 0 && e.getMessage().contains("not found"));
+    }
+
+    private void alterInbound(String tag, String operationType, byte[] operation) throws IOException {
+        byte[] request = new Proto.Writer()
+            .string(1, tag)
+            .message(2, typedMessage(operationType, operation))
+            .toByteArray();
+        channel.call(ALTER_INBOUND, request);
+    }
+
+    private static Proto.Writer typedMessage(String type, byte[] value) {
+        return new Proto.Writer()
+            .string(1, type)
+            .bytes(2, value);
+    }
+
+    @Override
+    public void close() {
+        channel.close();
+    }
+}
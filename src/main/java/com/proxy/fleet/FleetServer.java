@@ -0,0 +1,463 @@
+package com.proxy.fleet;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.proxy.common.Bootstrap;
+import com.proxy.common.NodeHeartbeat;
+import com.proxy.common.NodeRegistrar;
+import com.proxy.common.ProtocolProvider;
+import com.proxy.common.ProxyNode;
+import com.proxy.common.PublicIpResolver;
+import com.proxy.common.RealityDestProber;
+import com.proxy.common.SubscriptionServer;
+import com.proxy.common.User;
+import com.proxy.common.UserFile;
+import com.proxy.common.UserManager;
+import com.proxy.common.XrayLauncher;
+import com.proxy.common.XrayTuning;
+import com.proxy.common.XrayWorkers;
+import com.proxy.common.api.XrayApiClient;
+import com.proxy.vless.VLessRealityServer;
+import com.proxy.vmess.VMessServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 集群模式：按清单文件在一台主机上启动多个节点（每个节点一个Xray进程）
+ * 所有节点共用一次公网IP探测、一次Reality测速、一份Xray二进制缓存和一个节点注册客户端；
+ * 配置并发生成，Xray按 FLEET_PARALLELISM 限制同时启动的数量，最后报告每个节点和整体的启动耗时
+ *
+ * 清单（JSON）：
+ * <pre>
+ * {"nodes": [
+ *   {"name": "hk-1", "protocol": "vless", "port": 443, "uuid": "...", "dest": "www.apple.com:443", "serverNames": "www.apple.com"},
+ *   {"protocol": "vmess", "port": 8080, "uuid": "...", "usersFile": "users-8080.csv"}
+ * ]}
+ * </pre>
+ * 顶层也可以直接是节点数组；省略 name 时为 协议-端口，省略 uuid 时随机生成
+ */
+public class FleetServer {
+
+    /**
+     * 清单中的一个节点
+     */
+    static final class Spec {
+        final String name;
+        final String protocol;
+        final int port;
+        final String uuid;
+        final Path usersFile;
+        final String dest;
+        final String serverNames;
+
+        Spec(String name, String protocol, int port, String uuid, Path usersFile, String dest, String serverNames) {
+            this.name = name;
+            this.protocol = protocol;
+            this.port = port;
+            this.uuid = uuid;
+            this.usersFile = usersFile;
+            this.dest = dest;
+            this.serverNames = serverNames;
+        }
+    }
+
+    /**
+     * 运行中的节点及其启动耗时
+     */
+    private static final class Node {
+        final Spec spec;
+        final ProtocolProvider provider;
+        final XrayWorkers workers;
+        final int apiPort;
+        ProxyNode proxyNode;
+        long renderMillis;
+        volatile long readyMillis = -1;
+        volatile long upAtMillis = -1;
+
+        Node(Spec spec, ProtocolProvider provider, XrayWorkers workers, int apiPort) {
+            this.spec = spec;
+            this.provider = provider;
+            this.workers = workers;
+            this.apiPort = apiPort;
+        }
+    }
+
+    private final List<Spec> specs;
+    private final Path fleetDir;
+    private final int parallelism;
+    private final int apiPortBase;
+    private final long startTimeoutMillis;
+    private final XrayTuning tuning;
+    private final List<Node> nodes = new ArrayList<>();
+    private SubscriptionServer subscriptionServer;
+    private String serverIp;
+    private String dest;
+    private String serverNames;
+
+    public FleetServer(List<Spec> specs, Path fleetDir, int parallelism) {
+        if (specs.isEmpty()) {
+            throw new IllegalArgumentException("Inventory has no nodes");
+        }
+        this.specs = specs;
+        this.fleetDir = fleetDir;
+        this.parallelism = Math.max(1, parallelism);
+        this.apiPortBase = Integer.parseInt(System.getenv().getOrDefault("FLEET_API_PORT", "10085"));
+        this.startTimeoutMillis = Long.parseLong(System.getenv().getOrDefault("FLEET_START_TIMEOUT", "30")) * 1000;
+        this.tuning = XrayTuning.fromEnv();
+        this.dest = System.getenv().getOrDefault("REALITY_DEST", "www.microsoft.com:443");
+        this.serverNames = System.getenv().getOrDefault("REALITY_SERVER_NAMES", "www.microsoft.com");
+    }
+
+    /**
+     * 从环境变量创建：FLEET_DIR（默认 fleet）、FLEET_PARALLELISM（默认CPU核数）
+     */
+    public static FleetServer fromEnv(Path inventory) throws IOException {
+        int parallelism = Integer.parseInt(System.getenv().getOrDefault("FLEET_PARALLELISM",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+        return new FleetServer(readInventory(inventory),
+            Paths.get(System.getenv().getOrDefault("FLEET_DIR", "fleet")), parallelism);
+    }
+
+    public static void main(String[] args) {
+        System.out.println("🚀 Xray Fleet (Java)");
+
+        try {
+            Path inventory = Paths.get(args.length > 0 ? args[0]
+                : System.getenv().getOrDefault("FLEET_INVENTORY", "fleet.json"));
+            FleetServer fleet = FleetServer.fromEnv(inventory);
+            fleet.start();
+        } catch (Exception e) {
+            System.err.println("❌ Fatal error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 读取清单，校验协议、端口和名称不重复
+     */
+    static List<Spec> readInventory(Path inventory) throws IOException {
+        JsonElement root = JsonParser.parseString(Files.readString(inventory, StandardCharsets.UTF_8));
+        JsonArray array = root.isJsonArray() ? root.getAsJsonArray() : root.getAsJsonObject().getAsJsonArray("nodes");
+        if (array == null) {
+            throw new IOException("Inventory " + inventory + " has no \"nodes\" array");
+        }
+
+        List<Spec> specs = new ArrayList<>();
+        Set<Integer> ports = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        for (JsonElement element : array) {
+            JsonObject json = element.getAsJsonObject();
+            String protocol = json.get("protocol").getAsString().trim().toLowerCase(Locale.ROOT);
+            if (!protocol.equals("vless") && !protocol.equals("vmess")) {
+                throw new IOException("Unknown protocol " + protocol + " in " + inventory + " (expected vless or vmess)");
+            }
+            int port = json.get("port").getAsInt();
+            String name = json.has("name") ? json.get("name").getAsString() : protocol + "-" + port;
+            if (!ports.add(port)) {
+                throw new IOException("Duplicate port " + port + " in " + inventory);
+            }
+            if (!names.add(name)) {
+                throw new IOException("Duplicate node name " + name + " in " + inventory);
+            }
+            specs.add(new Spec(name, protocol, port,
+                json.has("uuid") ? json.get("uuid").getAsString() : UUID.randomUUID().toString(),
+                json.has("usersFile") ? inventory.toAbsolutePath().resolveSibling(json.get("usersFile").getAsString()) : null,
+                json.has("dest") ? json.get("dest").getAsString() : null,
+                json.has("serverNames") ? json.get("serverNames").getAsString() : null));
+        }
+        return specs;
+    }
+
+    public void start() throws Exception {
+        long fleetStart = System.nanoTime();
+        System.out.println("📋 " + specs.size() + " nodes, parallelism " + parallelism);
+        System.out.println("⚙️  Tuning: " + tuning);
+
+        // 共用阶段：IP探测、Xray下载、Reality测速只执行一次
+        Bootstrap boot = new Bootstrap();
+
+        boot.phase("getServerIP", () -> {
+            serverIp = PublicIpResolver.fromEnv().resolve();
+            System.out.println("✅ Server IP: " + serverIp);
+        });
+
+        boot.phase("downloadXrayIfNeeded", () -> XrayLauncher.installXray(XrayLauncher.XRAY_VERSION));
+
+        boot.phase("probeRealityDest", this::probeRealityDest);
+
+        // 各节点并发准备密钥、生成配置和链接
+        boot.phase("renderNodes", this::renderNodes, "getServerIP", "probeRealityDest");
+
+        boot.phase("writeLinks", this::writeLinks, "renderNodes");
+
+        // 内置订阅服务（设置 SUB_PORT 时启用），包含所有节点
+        boot.phase("startSubscriptionServer", () -> {
+            List<ProxyNode> proxyNodes = new ArrayList<>();
+            for (Node node : nodes) {
+                proxyNodes.add(node.proxyNode);
+            }
+            subscriptionServer = SubscriptionServer.fromEnv(proxyNodes);
+            if (subscriptionServer != null) {
+                subscriptionServer.start();
+            }
+        }, "renderNodes");
+
+        boot.phase("uploadNodeInfo", this::uploadNodeInfo, "renderNodes");
+
+        try {
+            boot.await();
+        } finally {
+            boot.writeReport(Paths.get("boot-report.json"));
+        }
+        boot.printReport();
+
+        startUserManagers();
+        startAll(fleetStart);
+    }
+
+    /**
+     * REALITY_DEST=auto 且有节点未指定 dest 时测速一次，所有这样的节点共用结果
+     */
+    private void probeRealityDest() {
+        if (!"auto".equalsIgnoreCase(dest.trim())) {
+            return;
+        }
+        dest = "www.microsoft.com:443";
+        boolean needed = specs.stream().anyMatch(spec -> spec.protocol.equals("vless") && spec.dest == null);
+        if (!needed) {
+            return;
+        }
+        System.out.println("📶 Probing Reality dest candidates...");
+        List<RealityDestProber.Result> ranking = RealityDestProber.fromEnv().probe();
+        RealityDestProber.printRanking(ranking);
+        RealityDestProber.Result best = RealityDestProber.best(ranking);
+        if (best == null) {
+            System.out.println("⚠️  No usable Reality dest candidate, using " + dest);
+            return;
+        }
+        dest = best.getDest();
+        serverNames = best.getHost();
+        System.out.println("✅ Reality dest: " + dest);
+    }
+
+    /**
+     * 并发生成所有节点：准备（密钥）、写入 {FLEET_DIR}/{name}/c.json、生成链接
+     */
+    private void renderNodes() throws Exception {
+        Files.createDirectories(fleetDir);
+        int nextApiPort = apiPortBase;
+        for (Spec spec : specs) {
+            ProtocolProvider provider = spec.protocol.equals("vless")
+                ? VLessRealityServer.provider(spec.name, spec.port, spec.uuid,
+                    spec.dest != null ? spec.dest : dest,
+                    spec.serverNames != null ? spec.serverNames : serverNames)
+                : VMessServer.provider(spec.name, spec.port, spec.uuid);
+            // 只有多用户节点需要API入站，端口从 FLEET_API_PORT 依次分配
+            int apiPort = spec.usersFile != null ? nextApiPort++ : 0;
+            nodes.add(new Node(spec, provider, new XrayWorkers(1, false, fleetDir.resolve(spec.name),
+                XrayWorkers.handoffFromEnv(), XrayWorkers.drainTimeoutMillisFromEnv(),
+                XrayWorkers.exitTimeoutMillisFromEnv()), apiPort));
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "fleet-render-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Node node : nodes) {
+                futures.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    Files.createDirectories(fleetDir.resolve(node.spec.name));
+                    node.provider.prepare();
+                    renderConfig(node);
+                    node.proxyNode = node.provider.node(serverIp);
+                    node.renderMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.println("✅ Rendered " + nodes.size() + " node configs in " + fleetDir);
+    }
+
+    private void renderConfig(Node node) throws IOException {
+        XrayLauncher.renderConfig(List.of(node.provider), node.spec.usersFile, node.apiPort, tuning, node.workers);
+    }
+
+    /**
+     * link.txt 每行一条，顺序与清单一致
+     */
+    private void writeLinks() throws IOException {
+        StringBuilder links = new StringBuilder();
+        for (Node node : nodes) {
+            links.append(node.proxyNode.getLink()).append('\n');
+        }
+        Files.writeString(Paths.get("link.txt"), links.toString());
+        System.out.println("🔗 " + nodes.size() + " links written to link.txt");
+    }
+
+    /**
+     * 一次性注册所有节点（NODE_API_URL 未设置时跳过），由 NodeRegistrar 合并为批量请求
+     */
+    private void uploadNodeInfo() {
+        String apiUrl = System.getenv("NODE_API_URL");
+        String skipUpload = System.getenv("SKIP_NODE_UPLOAD");
+        if (apiUrl == null || apiUrl.trim().isEmpty()
+                || "true".equalsIgnoreCase(skipUpload) || "1".equals(skipUpload)) {
+            System.out.println("⏭️  Skipping node upload.");
+            return;
+        }
+
+        System.out.println("📤 Uploading " + nodes.size() + " nodes to " + apiUrl);
+        AtomicInteger failed = new AtomicInteger();
+        for (Node node : nodes) {
+            NodeRegistrar.shared()
+                .register(new NodeRegistrar.Registration(apiUrl.trim(), node.spec.name, node.proxyNode.getLink()))
+                .thenAccept(ok -> {
+                    if (!ok && failed.incrementAndGet() == 1) {
+                        System.out.println("ℹ️  Fleet will continue to run normally.");
+                    }
+                });
+
+            // 心跳共用一个客户端和调度线程，随机抖动错开各节点的请求
+            NodeHeartbeat heartbeat = NodeHeartbeat.fromEnv(apiUrl, node.spec.name, node.spec.port, node.workers);
+            if (heartbeat != null) {
+                heartbeat.start();
+            }
+        }
+    }
+
+    /**
+     * 多用户节点：监听各自的用户文件，通过API热增删用户
+     */
+    private void startUserManagers() throws IOException {
+        for (Node node : nodes) {
+            if (node.spec.usersFile == null) {
+                continue;
+            }
+            List<User> pinned = List.of(new User(node.provider.getUuid(), null));
+            List<User> initial = new ArrayList<>(pinned);
+            initial.addAll(UserFile.readAll(node.spec.usersFile, pinned));
+            UserManager manager = new UserManager(new XrayApiClient(node.apiPort), node.provider.getInboundTag(),
+                node.provider::account, initial, 500);
+            manager.watch(node.spec.usersFile, pinned, 5, () -> {
+                try {
+                    renderConfig(node);
+                } catch (IOException e) {
+                    System.err.println("⚠️  Failed to regenerate " + node.spec.name + " config: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * 启动所有节点：同时处于启动中的Xray不超过 parallelism 个（就绪或超时后让出名额），
+     * 全部就绪或超时后打印启动报告，然后守护所有进程
+     */
+    private void startAll(long fleetStart) throws InterruptedException {
+        System.out.println("🚀 Starting " + nodes.size() + " Xray processes...");
+        String xray = Paths.get("xray").toAbsolutePath().toString();
+        Semaphore starting = new Semaphore(parallelism);
+        CountDownLatch settled = new CountDownLatch(nodes.size());
+        List<Thread> threads = new ArrayList<>();
+
+        for (Node node : nodes) {
+            starting.acquire();
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    starting.release();
+                    settled.countDown();
+                }
+            };
+            node.workers.onReady(millis -> {
+                if (node.readyMillis < 0) {
+                    node.readyMillis = millis;
+                    node.upAtMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fleetStart);
+                }
+                release.run();
+            });
+
+            Thread thread = new Thread(() -> {
+                try {
+                    node.workers.run(xray, node.spec.port, node.apiPort);
+                } catch (InterruptedException e) {
+                    node.workers.stop();
+                }
+            }, "fleet-" + node.spec.name);
+            threads.add(thread);
+            thread.start();
+
+            // 启动超时：不阻塞后续节点，报告中标记为未就绪
+            Thread timeout = new Thread(() -> {
+                try {
+                    Thread.sleep(startTimeoutMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (node.readyMillis < 0) {
+                    System.err.println("⚠️  " + node.spec.name + " not ready after " + startTimeoutMillis + " ms");
+                }
+                release.run();
+            }, "fleet-timeout-" + node.spec.name);
+            timeout.setDaemon(true);
+            timeout.start();
+        }
+
+        settled.await();
+        printReport(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fleetStart));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> nodes.forEach(node -> node.workers.stop())));
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void printReport(long totalMillis) {
+        System.out.println("");
+        System.out.println("==========================================");
+        System.out.println("📊 Fleet bring-up");
+        System.out.println("==========================================");
+        System.out.printf("   %-20s %-6s %6s %9s %9s %9s%n", "node", "proto", "port", "render", "ready", "up at");
+        int ready = 0;
+        for (Node node : nodes) {
+            if (node.readyMillis >= 0) {
+                ready++;
+            }
+            System.out.printf("   %-20s %-6s %6d %6d ms %9s %9s%n", node.spec.name, node.spec.protocol,
+                node.spec.port, node.renderMillis,
+                node.readyMillis >= 0 ? node.readyMillis + " ms" : "-",
+                node.upAtMillis >= 0 ? node.upAtMillis + " ms" : "-");
+        }
+        System.out.println("✅ " + ready + "/" + nodes.size() + " nodes ready, total bring-up " + totalMillis + " ms");
+        System.out.println("==========================================");
+    }
+}
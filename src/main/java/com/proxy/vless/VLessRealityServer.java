@@ -1,60 +1,120 @@
 package com.proxy.vless;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
+import com.google.gson.stream.JsonWriter;
+import com.proxy.common.Bootstrap;
+import com.proxy.common.BulkLinkWriter;
+import com.proxy.common.InboundProbe;
+import com.proxy.common.ProtocolProvider;
+import com.proxy.common.ProxyNode;
+import com.proxy.common.PublicIpResolver;
+import com.proxy.common.RealityDestProber;
+import com.proxy.common.X25519Keys;
+import com.proxy.common.SubscriptionServer;
+import com.proxy.common.User;
+import com.proxy.common.XrayLauncher;
+import com.proxy.common.XraySupervisor;
+import com.proxy.common.XrayTuning;
+import com.proxy.common.XrayWorkers;
+import com.proxy.common.api.XrayApiClient;
 
 import java.io.*;
-import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.SecureRandom;
-import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 /**
  * VLESS+Reality 代理服务器
  * 自动下载和配置 Xray，启动 VLESS+Reality 服务
  */
-public class VLessRealityServer {
-    private static final String XRAY_VERSION = "1.8.24";
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+public class VLessRealityServer implements ProtocolProvider {
+    private static final String XRAY_VERSION = XrayLauncher.XRAY_VERSION;
 
+    private final String nodeName;
     private final int port;
     private final String uuid;
-    private final String dest;
-    private final String serverNames;
-    private String serverIp;
+    private final Path usersFile;
+    private final int apiPort;
+    private final int metricsPort;
+    private final XrayWorkers workers;
+    private final XrayTuning tuning;
+    private SubscriptionServer subscriptionServer;
+    private final boolean autoDest;
+    private String dest;
+    private String serverNames;
+    String serverIp;
     private String publicKey;
     private String privateKey;
     private String shortId;
     private String vlessLink;
 
-    // 节点管理API配置
-    private static final String DEFAULT_API_URL = "http://103.69.129.79:8081/api/v1/groups/2/nodes";
-
     public VLessRealityServer() {
-        this.port = Integer.parseInt(System.getenv().getOrDefault("PORT",
-                                     System.getenv().getOrDefault("SERVER_PORT", "20041")));
-        this.uuid = System.getenv().getOrDefault("VLESS_UUID", generateUUID());
-        this.dest = System.getenv().getOrDefault("REALITY_DEST", "www.microsoft.com:443");
-        this.serverNames = System.getenv().getOrDefault("REALITY_SERVER_NAMES", "www.microsoft.com");
+        this(Integer.parseInt(System.getenv().getOrDefault("PORT",
+                              System.getenv().getOrDefault("SERVER_PORT", "20041"))),
+             System.getenv().getOrDefault("VLESS_UUID", generateUUID()),
+             System.getenv("USERS_FILE") != null ? Paths.get(System.getenv("USERS_FILE")) : null,
+             // 多进程模式（XRAY_WORKERS），默认单进程
+             XrayWorkers.fromEnv());
+    }
+
+    /**
+     * 作为合并启动器中的协议使用（UUID取 VLESS_UUID，进程和用户文件由启动器管理）
+     */
+    public static VLessRealityServer provider(int port) {
+        return new VLessRealityServer(port, System.getenv().getOrDefault("VLESS_UUID", generateUUID()),
+            null, new XrayWorkers(1, false));
+    }
+
+    /**
+     * 指定节点名、UUID和Reality目标的协议实例（集群模式使用，不再测速）
+     */
+    public static VLessRealityServer provider(String name, int port, String uuid, String dest, String serverNames) {
+        return new VLessRealityServer(name, port, uuid != null ? uuid : generateUUID(), null,
+            new XrayWorkers(1, false), dest, serverNames);
+    }
+
+    /**
+     * 指定端口、UUID、用户文件和工作进程（基准测试使用，配置写入 workers 的目录）
+     */
+    VLessRealityServer(int port, String uuid, Path usersFile, XrayWorkers workers) {
+        // REALITY_DEST=auto：启动时测速候选站点，选最快的作为目标和SNI
+        this("VLESS-Reality", port, uuid, usersFile, workers,
+             System.getenv().getOrDefault("REALITY_DEST", "www.microsoft.com:443"),
+             System.getenv().getOrDefault("REALITY_SERVER_NAMES", "www.microsoft.com"));
+    }
+
+    private VLessRealityServer(String nodeName, int port, String uuid, Path usersFile, XrayWorkers workers,
+                               String configuredDest, String serverNames) {
+        this.nodeName = nodeName;
+        this.port = port;
+        this.uuid = uuid;
+        this.usersFile = usersFile;
+        this.metricsPort = Integer.parseInt(System.getenv().getOrDefault("METRICS_PORT", "0"));
+        // 多用户模式和流量统计默认启用API入站
+        this.apiPort = Integer.parseInt(System.getenv().getOrDefault("XRAY_API_PORT",
+                                        usersFile != null || metricsPort > 0 ? "10085" : "0"));
+        this.workers = workers;
+        this.tuning = XrayTuning.fromEnv();
+        this.autoDest = "auto".equalsIgnoreCase(configuredDest.trim());
+        this.dest = autoDest ? "www.microsoft.com:443" : configuredDest;
+        this.serverNames = serverNames;
     }
 
     public static void main(String[] args) {
         System.out.println("🚀 VLESS+Reality Server (Java)");
 
         try {
+            // 批量生成链接：links <users-file> <output> [server-ip]
+            if (args.length > 0 && args[0].equals("links")) {
+                writeLinks(args);
+                return;
+            }
+
             VLessRealityServer server = new VLessRealityServer();
             server.start();
         } catch (Exception e) {
@@ -64,178 +124,140 @@ public class VLessRealityServer {
         }
     }
 
+    /**
+     * Xray守护（启动后可用于读取重启/运行时长/就绪耗时统计）
+     */
+    public XraySupervisor getSupervisor() {
+        List<XraySupervisor> supervisors = workers.getSupervisors();
+        return supervisors.isEmpty() ? null : supervisors.get(0);
+    }
+
+    /**
+     * Xray工作进程（多进程模式下每个进程一个守护）
+     */
+    public XrayWorkers getWorkers() {
+        return workers;
+    }
+
     public void start() throws Exception {
         System.out.println("📌 Port: " + port);
+        System.out.println("⚙️  Tuning: " + tuning);
+
+        // 启动阶段按依赖并行执行：IP探测、Xray下载、密钥与配置生成互相重叠
+        Bootstrap boot = new Bootstrap();
 
         // 获取服务器IP
-        serverIp = getServerIP();
-        System.out.println("✅ Server IP: " + serverIp);
+        boot.phase("getServerIP", () -> {
+            serverIp = getServerIP();
+            System.out.println("✅ Server IP: " + serverIp);
+        });
 
         // 下载Xray
-        downloadXrayIfNeeded();
+        boot.phase("downloadXrayIfNeeded", this::downloadXrayIfNeeded);
 
-        // 生成Reality密钥
-        generateRealityKeys();
+        // 生成Reality密钥（进程内生成，与下载并行）
+        boot.phase("generateRealityKeys", this::generateRealityKeys);
+
+        // 测速选择Reality目标（REALITY_DEST=auto 时，与下载并行）
+        boot.phase("probeRealityDest", this::probeRealityDest);
 
         // 生成配置
-        generateConfig();
+        boot.phase("generateConfig", this::generateConfig, "generateRealityKeys", "probeRealityDest");
+
+        // 生成VLESS链接并显示信息
+        boot.phase("generateVLessLink", () -> {
+            vlessLink = generateVLessLink();
+            Files.writeString(Paths.get("link.txt"), vlessLink);
+            printServerInfo(vlessLink);
+        }, "getServerIP", "generateRealityKeys", "probeRealityDest");
+
+        // 内置订阅服务（设置 SUB_PORT 时启用）
+        boot.phase("startSubscriptionServer", () -> {
+            subscriptionServer = SubscriptionServer.fromEnv(List.of(proxyNode()));
+            if (subscriptionServer != null) {
+                subscriptionServer.start();
+            }
+        }, "generateVLessLink");
+
+        // 启动报告写在 link.txt 旁边，Xray首次就绪时补充就绪时间
+        try {
+            boot.await();
+        } finally {
+            boot.writeReport(Paths.get("boot-report.json"));
+        }
+        boot.printReport();
+        workers.onReady(boot::xrayReady);
 
-        // 生成VLESS链接
-        vlessLink = generateVLessLink();
-        Files.writeString(Paths.get("link.txt"), vlessLink);
+        // 上传节点信息到管理API：可能在控制台询问地址，放在启动阶段之后，避免与各阶段输出交错、占用关键路径
+        XrayLauncher.uploadNodeInfo(List.of(this), List.of(proxyNode()), serverIp, workers, true);
 
-        // 显示信息
-        printServerInfo(vlessLink);
+        // 多用户模式：监听用户文件，通过API热增删用户
+        if (usersFile != null && apiPort > 0) {
+            XrayLauncher.startUserManagers(List.of(this), usersFile, apiPort, tuning, workers);
+        }
 
-        // 上传节点信息到管理API
-        uploadNodeInfo();
+        // 流量统计：定期采集计数器，提供Prometheus指标
+        if (metricsPort > 0 && apiPort > 0) {
+            XrayLauncher.startStatsCollector(workers, apiPort, metricsPort);
+        }
 
         // 启动Xray
         startXray();
     }
 
     /**
-     * 获取服务器公网IP
+     * REALITY_DEST=auto 时测速候选站点，最快的作为 dest 和 serverNames
+     * 只在启动时测速：运行中更换SNI会使已分发的链接失效，重启时会重新选择
      */
-    private String getServerIP() throws Exception {
-        String[] urls = {
-            "https://api64.ipify.org",
-            "https://ifconfig.me"
-        };
-
-        HttpClient client = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(3))
-            .build();
-
-        for (String url : urls) {
-            try {
-                HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(3))
-                    .build();
-
-                HttpResponse<String> response = client.send(request,
-                    HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    return response.body().trim();
-                }
-            } catch (Exception e) {
-                // 尝试下一个URL
-            }
+    private void probeRealityDest() {
+        if (!autoDest) {
+            return;
         }
+        System.out.println("📶 Probing Reality dest candidates...");
+        List<RealityDestProber.Result> ranking = RealityDestProber.fromEnv().probe();
+        RealityDestProber.printRanking(ranking);
 
-        return "UNKNOWN";
+        RealityDestProber.Result best = RealityDestProber.best(ranking);
+        if (best == null) {
+            System.out.println("⚠️  No usable Reality dest candidate, using " + dest);
+            return;
+        }
+        dest = best.getDest();
+        serverNames = best.getHost();
+        System.out.println("✅ Reality dest: " + dest);
     }
 
     /**
-     * 下载Xray（如果不存在）
+     * 获取服务器公网IP
      */
-    private void downloadXrayIfNeeded() throws Exception {
-        Path xrayPath = Paths.get("xray");
-
-        if (Files.exists(xrayPath)) {
-            System.out.println("✅ Xray already exists");
-            return;
-        }
-
-        System.out.println("📥 Downloading Xray...");
-
-        String arch = detectArchitecture();
-        String downloadUrl = String.format(
-            "https://github.com/XTLS/Xray-core/releases/download/v%s/Xray-linux-%s.zip",
-            XRAY_VERSION, arch
-        );
-
-        System.out.println("📦 Download URL: " + downloadUrl);
-
-        // 下载ZIP文件
-        HttpClient client = HttpClient.newBuilder()
-            .followRedirects(HttpClient.Redirect.ALWAYS)
-            .build();
-
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(downloadUrl))
-            .timeout(Duration.ofSeconds(60))
-            .build();
-
-        HttpResponse<InputStream> response = client.send(request,
-            HttpResponse.BodyHandlers.ofInputStream());
-
-        if (response.statusCode() != 200) {
-            throw new IOException("Failed to download Xray: HTTP " + response.statusCode());
-        }
-
-        // 解压ZIP文件
-        try (ZipInputStream zis = new ZipInputStream(response.body())) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                if (entry.getName().equals("xray")) {
-                    Files.copy(zis, xrayPath);
-                    break;
-                }
-            }
-        }
-
-        // 设置可执行权限
-        xrayPath.toFile().setExecutable(true);
-
-        System.out.println("✅ Xray installed");
+    private String getServerIP() {
+        return PublicIpResolver.fromEnv().resolve();
     }
 
     /**
-     * 检测系统架构
+     * 下载Xray（如果不存在）
      */
-    private String detectArchitecture() {
-        String osArch = System.getProperty("os.arch").toLowerCase();
-
-        if (osArch.contains("amd64") || osArch.contains("x86_64")) {
-            return "64";
-        } else if (osArch.contains("aarch64") || osArch.contains("arm64")) {
-            return "arm64-v8a";
-        } else if (osArch.contains("arm")) {
-            return "arm32-v7a";
-        }
-
-        System.out.println("⚠️  Unknown architecture: " + osArch + ", defaulting to 64-bit");
-        return "64";
+    private void downloadXrayIfNeeded() throws Exception {
+        XrayLauncher.installXray(XRAY_VERSION);
     }
 
     /**
      * 生成UUID
      */
-    private String generateUUID() {
+    private static String generateUUID() {
         return UUID.randomUUID().toString();
     }
 
     /**
      * 生成Reality密钥对
      */
-    private void generateRealityKeys() throws Exception {
+    void generateRealityKeys() throws Exception {
         System.out.println("🔐 Generating Reality keys...");
 
-        ProcessBuilder pb = new ProcessBuilder("./xray", "x25519");
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-
-        BufferedReader reader = new BufferedReader(
-            new InputStreamReader(process.getInputStream())
-        );
-
-        String line;
-        while ((line = reader.readLine()) != null) {
-            if (line.contains("Private key:")) {
-                privateKey = line.split(":\\s*")[1].trim();
-            } else if (line.contains("Public key:")) {
-                publicKey = line.split(":\\s*")[1].trim();
-            }
-        }
-
-        process.waitFor();
-
-        if (privateKey == null || publicKey == null) {
-            throw new Exception("Failed to generate Reality keys");
-        }
+        // 进程内生成，无需等待xray二进制下载
+        X25519Keys keys = X25519Keys.generate();
+        privateKey = keys.getPrivateKey();
+        publicKey = keys.getPublicKey();
 
         // 生成ShortId（8字节十六进制）
         SecureRandom random = new SecureRandom();
@@ -258,17 +280,14 @@ public class VLessRealityServer {
     }
 
     /**
-     * 生成Xray配置文件
+     * 生成Xray配置文件（与合并启动器同一路径，只有本协议一个入站）
      */
-    private void generateConfig() throws IOException {
-        JsonObject config = new JsonObject();
-
-        // Log配置
-        JsonObject log = new JsonObject();
-        log.addProperty("loglevel", "warning");
-        config.add("log", log);
+    void generateConfig() throws IOException {
+        XrayLauncher.renderConfig(List.of(this), usersFile, apiPort, tuning, workers);
+    }
 
-        // Inbound配置
+    @Override
+    public JsonObject inbound() {
         JsonObject inbound = new JsonObject();
         inbound.addProperty("port", port);
         inbound.addProperty("protocol", "vless");
@@ -277,6 +296,8 @@ public class VLessRealityServer {
         JsonObject client = new JsonObject();
         client.addProperty("id", uuid);
         client.addProperty("flow", "xtls-rprx-vision");
+        // email与用户文件中省略email时的默认值一致（UUID的哈希），用于按用户统计流量
+        client.addProperty("email", User.defaultEmail(uuid));
 
         JsonArray clientsArray = new JsonArray();
         clientsArray.add(client);
@@ -285,6 +306,7 @@ public class VLessRealityServer {
         settings.add("clients", clientsArray);
         settings.addProperty("decryption", "none");
         inbound.add("settings", settings);
+        inbound.addProperty("tag", "vless");
 
         // Stream配置 - Reality
         JsonObject streamSettings = new JsonObject();
@@ -319,34 +341,70 @@ public class VLessRealityServer {
         sniffing.add("destOverride", destOverrideArray);
         inbound.add("sniffing", sniffing);
 
-        JsonArray inboundsArray = new JsonArray();
-        inboundsArray.add(inbound);
-        config.add("inbounds", inboundsArray);
+        return inbound;
+    }
 
-        // Outbound配置
-        JsonObject outbound = new JsonObject();
-        outbound.addProperty("protocol", "freedom");
-        outbound.addProperty("tag", "direct");
+    @Override
+    public void writeClient(JsonWriter out, User user) throws IOException {
+        out.beginObject();
+        out.name("id").value(user.getId());
+        out.name("flow").value("xtls-rprx-vision");
+        out.name("email").value(user.getEmail());
+        out.endObject();
+    }
 
-        JsonArray outboundsArray = new JsonArray();
-        outboundsArray.add(outbound);
-        config.add("outbounds", outboundsArray);
+    @Override
+    public XrayApiClient.Account account(User user) {
+        return XrayApiClient.vlessAccount(user, "xtls-rprx-vision");
+    }
+
+    @Override
+    public ProxyNode node(String serverIp) throws Exception {
+        this.serverIp = serverIp;
+        return ProxyNode.vless(nodeName, serverIp, port, uuid, serverNames, publicKey, shortId,
+            generateVLessLink());
+    }
 
-        // 写入配置文件
-        Files.writeString(Paths.get("c.json"), GSON.toJson(config));
+    @Override
+    public String getName() {
+        return "VLESS-Reality";
+    }
+
+    @Override
+    public String getInboundTag() {
+        return "vless";
+    }
+
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * 测速选择Reality目标并生成密钥
+     */
+    @Override
+    public void prepare() throws Exception {
+        probeRealityDest();
+        generateRealityKeys();
     }
 
     /**
      * 生成VLESS订阅链接
      */
-    private String generateVLessLink() throws Exception {
+    String generateVLessLink() throws Exception {
         // vless://UUID@IP:PORT?encryption=none&flow=xtls-rprx-vision&security=reality&sni=SNI&fp=chrome&pbk=PUBLIC_KEY&sid=SHORT_ID&type=tcp&headerType=none#NAME
 
         StringBuilder sb = new StringBuilder();
         sb.append("vless://");
         sb.append(uuid);
         sb.append("@");
-        sb.append(serverIp);
+        sb.append(PublicIpResolver.uriHost(serverIp));
         sb.append(":");
         sb.append(port);
         sb.append("?encryption=none");
@@ -358,11 +416,72 @@ public class VLessRealityServer {
         sb.append("&sid=").append(shortId);
         sb.append("&type=tcp");
         sb.append("&headerType=none");
-        sb.append("#VLESS-Reality");
+        sb.append("#").append(URLEncoder.encode(nodeName, StandardCharsets.UTF_8).replace("+", "%20"));
 
         return sb.toString();
     }
 
+    /**
+     * 按已生成的配置为用户文件中的每个用户生成一条VLESS链接（每行一条，备注为用户email）
+     */
+    static void writeLinks(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: links <users-file> <output> [server-ip]");
+            System.exit(2);
+        }
+        Path usersFile = Paths.get(args[1]);
+        Path output = Paths.get(args[2]);
+
+        // 公钥、SNI、ShortId 与运行中的Xray一致
+        InboundProbe inbound = InboundProbe.read(XrayWorkers.fromEnv().configPath(0));
+        if (inbound.getPrivateKey() == null) {
+            throw new IOException("No Reality settings in the generated config");
+        }
+        String serverIp = args.length > 3 ? args[3] : System.getenv("SERVER_IP");
+        if (serverIp == null) {
+            serverIp = readLinkHost(Paths.get("link.txt"));
+        }
+
+        long start = System.nanoTime();
+        long count = new BulkLinkWriter().write(usersFile, output, linkFormat(serverIp, inbound.getPort(),
+            inbound.getServerName(), X25519Keys.derivePublicKey(inbound.getPrivateKey()), inbound.getShortId()));
+        System.out.println("✅ Wrote " + count + " links to " + output + " in "
+            + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * 批量链接格式：除 UUID 和名称（email）外都是常量，预先拼好
+     */
+    static BulkLinkWriter.LinkFormat linkFormat(String serverIp, int port, String serverName,
+                                                String publicKey, String shortId) {
+        String query = "@" + PublicIpResolver.uriHost(serverIp) + ":" + port
+            + "?encryption=none"
+            + "&flow=xtls-rprx-vision"
+            + "&security=reality"
+            + "&sni=" + serverName
+            + "&fp=chrome"
+            + "&pbk=" + publicKey
+            + "&sid=" + shortId
+            + "&type=tcp"
+            + "&headerType=none"
+            + "#";
+        return (out, scratch, user) ->
+            out.ascii("vless://").ascii(user.getId()).ascii(query).percent(user.getEmail());
+    }
+
+    /**
+     * 从 link.txt 中的VLESS链接读取服务器地址（@ 与端口之间，IPv6去掉方括号）
+     */
+    private static String readLinkHost(Path linkFile) throws IOException {
+        if (!Files.exists(linkFile)) {
+            throw new IOException("Server IP unknown: pass it as an argument, set SERVER_IP, or run the server once");
+        }
+        String link = Files.readString(linkFile).trim();
+        int query = link.indexOf('?');
+        String host = link.substring(link.indexOf('@') + 1, link.lastIndexOf(':', query));
+        return host.startsWith("[") && host.endsWith("]") ? host.substring(1, host.length() - 1) : host;
+    }
+
     /**
      * 打印服务器信息
      */
@@ -371,7 +490,7 @@ public class VLessRealityServer {
         System.out.println("==========================================");
         System.out.println("🎉 VLESS+Reality Server Ready!");
         System.out.println("==========================================");
-        System.out.println("📍 Server: " + serverIp + ":" + port);
+        System.out.println("📍 Server: " + PublicIpResolver.uriHost(serverIp) + ":" + port);
         System.out.println("🔑 UUID: " + uuid);
         System.out.println("🔒 Public Key: " + publicKey);
         System.out.println("🆔 Short ID: " + shortId);
@@ -387,132 +506,10 @@ public class VLessRealityServer {
     }
 
     /**
-     * 上传节点信息到管理API
-     */
-    private void uploadNodeInfo() {
-        try {
-            // 获取API地址
-            String apiUrl = getApiUrl();
-            if (apiUrl == null || apiUrl.trim().isEmpty()) {
-                System.out.println("⏭️  Skipping node upload.");
-                return;
-            }
-
-            // 生成节点名称
-            String nodeName = generateNodeName();
-
-            // 构建请求体
-            JsonObject requestBody = new JsonObject();
-            requestBody.addProperty("name", nodeName);
-            requestBody.addProperty("config", vlessLink);
-
-            System.out.println("");
-            System.out.println("📤 Uploading node to management API...");
-            System.out.println("📍 API URL: " + apiUrl);
-            System.out.println("🏷️  Node Name: " + nodeName);
-
-            // 发送POST请求
-            HttpClient client = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
-
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(apiUrl))
-                .header("Content-Type", "application/json")
-                .timeout(Duration.ofSeconds(10))
-                .POST(HttpRequest.BodyPublishers.ofString(GSON.toJson(requestBody)))
-                .build();
-
-            HttpResponse<String> response = client.send(request,
-                HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                System.out.println("✅ Node uploaded successfully!");
-                System.out.println("📊 Response: " + response.body());
-            } else {
-                System.out.println("⚠️  Upload failed with status: " + response.statusCode());
-                System.out.println("📊 Response: " + response.body());
-            }
-            System.out.println("");
-
-        } catch (Exception e) {
-            System.err.println("⚠️  Failed to upload node: " + e.getMessage());
-            System.out.println("ℹ️  Server will continue to run normally.");
-            System.out.println("");
-        }
-    }
-
-    /**
-     * 获取API地址（支持环境变量和交互式输入）
-     */
-    private String getApiUrl() {
-        // 优先使用环境变量
-        String envUrl = System.getenv("NODE_API_URL");
-        if (envUrl != null && !envUrl.trim().isEmpty()) {
-            return envUrl;
-        }
-
-        // 检查是否禁用上传
-        String skipUpload = System.getenv("SKIP_NODE_UPLOAD");
-        if ("true".equalsIgnoreCase(skipUpload) || "1".equals(skipUpload)) {
-            return null;
-        }
-
-        // 交互式输入
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
-            System.out.println("");
-            System.out.println("==========================================");
-            System.out.println("📤 Node Upload Configuration");
-            System.out.println("==========================================");
-            System.out.println("Would you like to upload node info to management API?");
-            System.out.println("1. Use default API (" + DEFAULT_API_URL + ")");
-            System.out.println("2. Enter custom API URL");
-            System.out.println("3. Skip (press Enter or any other key)");
-            System.out.print("Your choice: ");
-
-            String choice = reader.readLine();
-
-            if ("1".equals(choice)) {
-                return DEFAULT_API_URL;
-            } else if ("2".equals(choice)) {
-                System.out.print("Enter API URL: ");
-                String customUrl = reader.readLine();
-                return customUrl != null && !customUrl.trim().isEmpty() ? customUrl : null;
-            } else {
-                return null;
-            }
-        } catch (Exception e) {
-            System.err.println("⚠️  Input error: " + e.getMessage());
-            return null;
-        }
-    }
-
-    /**
-     * 生成节点名称（基于服务器IP和协议）
+     * 订阅和注册使用的节点
      */
-    private String generateNodeName() {
-        // 从IP推测地理位置（简单示例，可以扩展为调用IP查询API）
-        String location = guessLocationFromIP(serverIp);
-        String protocol = "VLESS-Reality";
-
-        return String.format("%s-%s-%d", location, protocol, port);
-    }
-
-    /**
-     * 从IP推测地理位置
-     */
-    private String guessLocationFromIP(String ip) {
-        // 简单的地理位置推测
-        // 实际应用中可以调用IP地理位置API
-        if (ip.startsWith("103.") || ip.startsWith("119.")) {
-            return "HK";
-        } else if (ip.startsWith("172.") || ip.startsWith("45.")) {
-            return "US";
-        } else if (ip.startsWith("89.")) {
-            return "EU";
-        } else {
-            return "Node";
-        }
+    private ProxyNode proxyNode() {
+        return ProxyNode.vless(nodeName, serverIp, port, uuid, serverNames, publicKey, shortId, vlessLink);
     }
 
     /**
@@ -520,24 +517,9 @@ public class VLessRealityServer {
      */
     private void startXray() throws Exception {
         System.out.println("🚀 Starting Xray...");
-        System.out.println("ℹ️  Xray logs are suppressed. Check c.json if you need to debug.");
+        System.out.println("ℹ️  Xray output is buffered; the tail is printed if Xray exits. Check c.json if you need to debug.");
         System.out.println("");
 
-        while (true) {
-            try {
-                ProcessBuilder pb = new ProcessBuilder("./xray", "run", "-c", "c.json");
-                // 重定向所有输出到null（类似 1>/dev/null 2>&1）
-                pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
-                pb.redirectError(ProcessBuilder.Redirect.DISCARD);
-                Process process = pb.start();
-
-                int exitCode = process.waitFor();
-                System.out.println("\n⚠️  Xray exited with code " + exitCode + ", restarting in 3 seconds...");
-                TimeUnit.SECONDS.sleep(3);
-            } catch (Exception e) {
-                System.err.println("❌ Error running Xray: " + e.getMessage());
-                TimeUnit.SECONDS.sleep(3);
-            }
-        }
+        workers.run("./xray", port, apiPort);
     }
 }
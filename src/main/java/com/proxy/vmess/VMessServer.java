@@ -4,48 +4,103 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.proxy.common.Bootstrap;
+import com.proxy.common.BulkLinkWriter;
+import com.proxy.common.InboundProbe;
+import com.proxy.common.ProtocolProvider;
+import com.proxy.common.ProxyNode;
+import com.proxy.common.PublicIpResolver;
+import com.proxy.common.SubscriptionServer;
+import com.proxy.common.User;
+import com.proxy.common.XrayLauncher;
+import com.proxy.common.XraySupervisor;
+import com.proxy.common.XrayTuning;
+import com.proxy.common.XrayWorkers;
+import com.proxy.common.api.XrayApiClient;
 
 import java.io.*;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 /**
  * VMess 代理服务器
  * 自动下载和配置 Xray，启动 VMess 服务
  */
-public class VMessServer {
-    private static final String XRAY_VERSION = "1.8.24";
+public class VMessServer implements ProtocolProvider {
+    private static final String XRAY_VERSION = XrayLauncher.XRAY_VERSION;
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
+    private final String nodeName;
     private final int port;
     private final String uuid;
-    private String serverIp;
+    private final Path usersFile;
+    private final int apiPort;
+    private final int metricsPort;
+    private final XrayWorkers workers;
+    private final XrayTuning tuning;
+    private SubscriptionServer subscriptionServer;
+    String serverIp;
     private String vmessLink;
 
-    // 节点管理API配置
-    private static final String DEFAULT_API_URL = "http://103.69.129.79:8081/api/v1/groups/2/nodes";
-
     public VMessServer() {
-        this.port = Integer.parseInt(System.getenv().getOrDefault("PORT",
-                                     System.getenv().getOrDefault("SERVER_PORT", "20041")));
-        this.uuid = System.getenv().getOrDefault("VMESS_UUID", "55e12d57-6f93-4756-a20a-a35a081d6c9f");
+        this(Integer.parseInt(System.getenv().getOrDefault("PORT",
+                              System.getenv().getOrDefault("SERVER_PORT", "20041"))),
+             System.getenv().getOrDefault("VMESS_UUID", "55e12d57-6f93-4756-a20a-a35a081d6c9f"),
+             System.getenv("USERS_FILE") != null ? Paths.get(System.getenv("USERS_FILE")) : null,
+             // 多进程模式（XRAY_WORKERS），默认单进程
+             XrayWorkers.fromEnv());
+    }
+
+    /**
+     * 作为合并启动器中的协议使用（UUID取 VMESS_UUID，进程和用户文件由启动器管理）
+     */
+    public static VMessServer provider(int port) {
+        return new VMessServer(port, System.getenv().getOrDefault("VMESS_UUID", "55e12d57-6f93-4756-a20a-a35a081d6c9f"),
+            null, new XrayWorkers(1, false));
+    }
+
+    /**
+     * 指定节点名和UUID的协议实例（集群模式使用）
+     */
+    public static VMessServer provider(String name, int port, String uuid) {
+        return new VMessServer(name, port, uuid, null, new XrayWorkers(1, false));
+    }
+
+    /**
+     * 指定端口、UUID、用户文件和工作进程（基准测试使用，配置写入 workers 的目录）
+     */
+    VMessServer(int port, String uuid, Path usersFile, XrayWorkers workers) {
+        this("VMess-Server", port, uuid, usersFile, workers);
+    }
+
+    private VMessServer(String nodeName, int port, String uuid, Path usersFile, XrayWorkers workers) {
+        this.nodeName = nodeName;
+        this.port = port;
+        this.uuid = uuid;
+        this.usersFile = usersFile;
+        this.metricsPort = Integer.parseInt(System.getenv().getOrDefault("METRICS_PORT", "0"));
+        // 多用户模式和流量统计默认启用API入站
+        this.apiPort = Integer.parseInt(System.getenv().getOrDefault("XRAY_API_PORT",
+                                        usersFile != null || metricsPort > 0 ? "10085" : "0"));
+        this.workers = workers;
+        this.tuning = XrayTuning.fromEnv();
     }
 
     public static void main(String[] args) {
         System.out.println("🚀 VMess Server (Java)");
 
         try {
+            // 批量生成链接：links <users-file> <output> [server-ip]
+            if (args.length > 0 && args[0].equals("links")) {
+                writeLinks(args);
+                return;
+            }
+
             VMessServer server = new VMessServer();
             server.start();
         } catch (Exception e) {
@@ -55,28 +110,76 @@ public class VMessServer {
         }
     }
 
+    /**
+     * Xray守护（启动后可用于读取重启/运行时长/就绪耗时统计）
+     */
+    public XraySupervisor getSupervisor() {
+        List<XraySupervisor> supervisors = workers.getSupervisors();
+        return supervisors.isEmpty() ? null : supervisors.get(0);
+    }
+
+    /**
+     * Xray工作进程（多进程模式下每个进程一个守护）
+     */
+    public XrayWorkers getWorkers() {
+        return workers;
+    }
+
     public void start() throws Exception {
         System.out.println("📌 Port: " + port);
+        System.out.println("⚙️  Tuning: " + tuning);
+
+        // 启动阶段按依赖并行执行：IP探测、Xray下载、配置生成互不依赖
+        Bootstrap boot = new Bootstrap();
 
         // 获取服务器IP
-        serverIp = getServerIP();
-        System.out.println("✅ Server IP: " + serverIp);
+        boot.phase("getServerIP", () -> {
+            serverIp = getServerIP();
+            System.out.println("✅ Server IP: " + serverIp);
+        });
 
         // 下载Xray
-        downloadXrayIfNeeded();
+        boot.phase("downloadXrayIfNeeded", this::downloadXrayIfNeeded);
 
         // 生成配置
-        generateConfig();
+        boot.phase("generateConfig", this::generateConfig);
+
+        // 生成VMess链接并显示信息
+        boot.phase("generateVMessLink", () -> {
+            vmessLink = generateVMessLink();
+            Files.writeString(Paths.get("link.txt"), vmessLink);
+            printServerInfo(vmessLink);
+        }, "getServerIP");
+
+        // 内置订阅服务（设置 SUB_PORT 时启用）
+        boot.phase("startSubscriptionServer", () -> {
+            subscriptionServer = SubscriptionServer.fromEnv(List.of(proxyNode()));
+            if (subscriptionServer != null) {
+                subscriptionServer.start();
+            }
+        }, "generateVMessLink");
+
+        // 启动报告写在 link.txt 旁边，Xray首次就绪时补充就绪时间
+        try {
+            boot.await();
+        } finally {
+            boot.writeReport(Paths.get("boot-report.json"));
+        }
+        boot.printReport();
+        workers.onReady(boot::xrayReady);
 
-        // 生成VMess链接
-        vmessLink = generateVMessLink();
-        Files.writeString(Paths.get("link.txt"), vmessLink);
+        // 上传节点信息到管理API：可能在控制台询问地址，放在启动阶段之后，避免与各阶段输出交错、占用关键路径
+        XrayLauncher.uploadNodeInfo(List.of(this), List.of(proxyNode()), serverIp, workers, true);
 
-        // 显示信息
-        printServerInfo(vmessLink);
+        // 多用户模式：监听用户文件，通过API热增删用户
+        if (usersFile != null && apiPort > 0) {
+            XrayLauncher.startUserManagers(List.of(this), usersFile, apiPort, tuning, workers);
+        }
 
-        // 上传节点信息到管理API
-        uploadNodeInfo();
+        // 流量统计：定期采集计数器，提供Prometheus指标
+        if (metricsPort > 0 && apiPort > 0) {
+            XrayLauncher.startStatsCollector(workers, apiPort, metricsPort);
+        }
 
         // 启动Xray
         startXray();
@@ -85,108 +188,15 @@ public class VMessServer {
     /**
      * 获取服务器公网IP
      */
-    private String getServerIP() throws Exception {
-        String[] urls = {
-            "https://api64.ipify.org",
-            "https://ifconfig.me"
-        };
-
-        HttpClient client = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(3))
-            .build();
-
-        for (String url : urls) {
-            try {
-                HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(3))
-                    .build();
-
-                HttpResponse<String> response = client.send(request,
-                    HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    return response.body().trim();
-                }
-            } catch (Exception e) {
-                // 尝试下一个URL
-            }
-        }
-
-        return "UNKNOWN";
+    private String getServerIP() {
+        return PublicIpResolver.fromEnv().resolve();
     }
 
     /**
      * 下载Xray（如果不存在）
      */
     private void downloadXrayIfNeeded() throws Exception {
-        Path xrayPath = Paths.get("xray");
-
-        if (Files.exists(xrayPath)) {
-            System.out.println("✅ Xray already exists");
-            return;
-        }
-
-        System.out.println("📥 Downloading Xray...");
-
-        String arch = detectArchitecture();
-        String downloadUrl = String.format(
-            "https://github.com/XTLS/Xray-core/releases/download/v%s/Xray-linux-%s.zip",
-            XRAY_VERSION, arch
-        );
-
-        System.out.println("📦 Download URL: " + downloadUrl);
-
-        // 下载ZIP文件
-        HttpClient client = HttpClient.newBuilder()
-            .followRedirects(HttpClient.Redirect.ALWAYS)
-            .build();
-
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(downloadUrl))
-            .timeout(Duration.ofSeconds(60))
-            .build();
-
-        HttpResponse<InputStream> response = client.send(request,
-            HttpResponse.BodyHandlers.ofInputStream());
-
-        if (response.statusCode() != 200) {
-            throw new IOException("Failed to download Xray: HTTP " + response.statusCode());
-        }
-
-        // 解压ZIP文件
-        try (ZipInputStream zis = new ZipInputStream(response.body())) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                if (entry.getName().equals("xray")) {
-                    Files.copy(zis, xrayPath);
-                    break;
-                }
-            }
-        }
-
-        // 设置可执行权限
-        xrayPath.toFile().setExecutable(true);
-
-        System.out.println("✅ Xray installed");
-    }
-
-    /**
-     * 检测系统架构
-     */
-    private String detectArchitecture() {
-        String osArch = System.getProperty("os.arch").toLowerCase();
-
-        if (osArch.contains("amd64") || osArch.contains("x86_64")) {
-            return "64";
-        } else if (osArch.contains("aarch64") || osArch.contains("arm64")) {
-            return "arm64-v8a";
-        } else if (osArch.contains("arm")) {
-            return "arm32-v7a";
-        }
-
-        System.out.println("⚠️  Unknown architecture: " + osArch + ", defaulting to 64-bit");
-        return "64";
+        XrayLauncher.installXray(XRAY_VERSION);
     }
 
     /**
@@ -197,17 +207,14 @@ public class VMessServer {
     }
 
     /**
-     * 生成Xray配置文件
+     * 生成Xray配置文件（与合并启动器同一路径，只有本协议一个入站）
      */
-    private void generateConfig() throws IOException {
-        JsonObject config = new JsonObject();
-
-        // Log配置
-        JsonObject log = new JsonObject();
-        log.addProperty("loglevel", "none");
-        config.add("log", log);
+    void generateConfig() throws IOException {
+        XrayLauncher.renderConfig(List.of(this), usersFile, apiPort, tuning, workers);
+    }
 
-        // Inbound配置
+    @Override
+    public JsonObject inbound() {
         JsonObject inbound = new JsonObject();
         inbound.addProperty("port", port);
         inbound.addProperty("protocol", "vmess");
@@ -216,6 +223,8 @@ public class VMessServer {
         JsonObject client = new JsonObject();
         client.addProperty("id", uuid);
         client.addProperty("alterId", 0);
+        // email与用户文件中省略email时的默认值一致（UUID的哈希），用于按用户统计流量
+        client.addProperty("email", User.defaultEmail(uuid));
 
         JsonArray clientsArray = new JsonArray();
         clientsArray.add(client);
@@ -262,29 +271,63 @@ public class VMessServer {
 
         inbound.addProperty("tag", "vmess");
 
-        JsonArray inboundsArray = new JsonArray();
-        inboundsArray.add(inbound);
-        config.add("inbounds", inboundsArray);
+        return inbound;
+    }
+
+    @Override
+    public void writeClient(JsonWriter out, User user) throws IOException {
+        out.beginObject();
+        out.name("id").value(user.getId());
+        out.name("alterId").value(0);
+        out.name("email").value(user.getEmail());
+        out.endObject();
+    }
 
-        // Outbound配置
-        JsonObject outbound = new JsonObject();
-        outbound.addProperty("protocol", "freedom");
+    @Override
+    public XrayApiClient.Account account(User user) {
+        return XrayApiClient.vmessAccount(user);
+    }
 
-        JsonArray outboundsArray = new JsonArray();
-        outboundsArray.add(outbound);
-        config.add("outbounds", outboundsArray);
+    @Override
+    public ProxyNode node(String serverIp) {
+        this.serverIp = serverIp;
+        return ProxyNode.vmess(nodeName, serverIp, port, uuid, generateVMessLink());
+    }
 
-        // 写入配置文件
-        Files.writeString(Paths.get("c.json"), GSON.toJson(config));
+    @Override
+    public String getName() {
+        return "VMess";
+    }
+
+    @Override
+    public String getInboundTag() {
+        return "vmess";
+    }
+
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * VMess无需准备
+     */
+    @Override
+    public void prepare() {
     }
 
     /**
      * 生成VMess订阅链接
      */
-    private String generateVMessLink() {
+    String generateVMessLink() {
         JsonObject vmessConfig = new JsonObject();
         vmessConfig.addProperty("v", "2");
-        vmessConfig.addProperty("ps", "VMess-Server");
+        vmessConfig.addProperty("ps", nodeName);
         vmessConfig.addProperty("add", serverIp);
         vmessConfig.addProperty("port", String.valueOf(port));
         vmessConfig.addProperty("id", uuid);
@@ -299,6 +342,59 @@ public class VMessServer {
         return "vmess://" + base64;
     }
 
+    /**
+     * 按已生成的配置为用户文件中的每个用户生成一条VMess链接（每行一条，ps为用户email）
+     */
+    static void writeLinks(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: links <users-file> <output> [server-ip]");
+            System.exit(2);
+        }
+        Path usersFile = Paths.get(args[1]);
+        Path output = Paths.get(args[2]);
+
+        InboundProbe inbound = InboundProbe.read(XrayWorkers.fromEnv().configPath(0));
+        String serverIp = args.length > 3 ? args[3] : System.getenv("SERVER_IP");
+        if (serverIp == null) {
+            serverIp = readLinkHost(Paths.get("link.txt"));
+        }
+
+        long start = System.nanoTime();
+        long count = new BulkLinkWriter().write(usersFile, output, linkFormat(serverIp, inbound.getPort()));
+        System.out.println("✅ Wrote " + count + " links to " + output + " in "
+            + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * 批量链接格式：除 ps 和 id 外所有字段都是常量，预先拼好（紧凑JSON，客户端解析结果与单条链接相同）
+     */
+    static BulkLinkWriter.LinkFormat linkFormat(String serverIp, int port) {
+        Gson compact = new Gson();
+        String head = "{\"v\":\"2\",\"ps\":";
+        String middle = ",\"add\":" + compact.toJson(serverIp)
+            + ",\"port\":\"" + port + "\",\"id\":";
+        String tail = ",\"aid\":\"0\",\"net\":\"tcp\",\"type\":\"http\",\"tls\":\"\"}";
+        return (out, scratch, user) -> {
+            scratch.ascii(head).jsonString(user.getEmail())
+                .ascii(middle).jsonString(user.getId())
+                .ascii(tail);
+            out.ascii("vmess://").base64(scratch, 0);
+        };
+    }
+
+    /**
+     * 从 link.txt 中的VMess链接读取服务器地址
+     */
+    private static String readLinkHost(Path linkFile) throws IOException {
+        if (!Files.exists(linkFile)) {
+            throw new IOException("Server IP unknown: pass it as an argument, set SERVER_IP, or run the server once");
+        }
+        String link = Files.readString(linkFile).trim();
+        String json = new String(Base64.getDecoder().decode(link.substring("vmess://".length())),
+                                 StandardCharsets.UTF_8);
+        return JsonParser.parseString(json).getAsJsonObject().get("add").getAsString();
+    }
+
     /**
      * 打印服务器信息
      */
@@ -307,7 +403,7 @@ public class VMessServer {
         System.out.println("==========================================");
         System.out.println("🎉 VMess Server Ready!");
         System.out.println("==========================================");
-        System.out.println("📍 Server: " + serverIp + ":" + port);
+        System.out.println("📍 Server: " + PublicIpResolver.uriHost(serverIp) + ":" + port);
         System.out.println("🔑 UUID: " + uuid);
         System.out.println();
         System.out.println("🔗 VMess Link:");
@@ -319,150 +415,10 @@ public class VMessServer {
     }
 
     /**
-     * 上传节点信息到管理API
-     */
-    private void uploadNodeInfo() {
-        try {
-            // 获取API地址
-            String apiUrl = getApiUrl();
-            if (apiUrl == null || apiUrl.trim().isEmpty()) {
-                System.out.println("⏭️  Skipping node upload.");
-                return;
-            }
-
-            // 生成节点名称
-            String nodeName = generateNodeName();
-
-            // 构建请求体
-            JsonObject requestBody = new JsonObject();
-            requestBody.addProperty("name", nodeName);
-            requestBody.addProperty("config", vmessLink);
-
-            System.out.println("");
-            System.out.println("📤 Uploading node to management API...");
-            System.out.println("📍 API URL: " + apiUrl);
-            System.out.println("🏷️  Node Name: " + nodeName);
-
-            // 发送POST请求
-            HttpClient client = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
-
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(apiUrl))
-                .header("Content-Type", "application/json")
-                .timeout(Duration.ofSeconds(10))
-                .POST(HttpRequest.BodyPublishers.ofString(GSON.toJson(requestBody)))
-                .build();
-
-            HttpResponse<String> response = client.send(request,
-                HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                System.out.println("✅ Node uploaded successfully!");
-                System.out.println("📊 Response: " + response.body());
-            } else {
-                System.out.println("⚠️  Upload failed with status: " + response.statusCode());
-                System.out.println("📊 Response: " + response.body());
-            }
-            System.out.println("");
-
-        } catch (Exception e) {
-            System.err.println("⚠️  Failed to upload node: " + e.getMessage());
-            System.out.println("ℹ️  Server will continue to run normally.");
-            System.out.println("");
-        }
-    }
-
-    /**
-     * 获取API地址（支持环境变量和交互式输入）
+     * 订阅和注册使用的节点
      */
-    /**
- * 获取API地址（支持环境变量和交互式输入，10秒超时）
- */
-private String getApiUrl() {
-    // 优先使用环境变量
-    String envUrl = System.getenv("NODE_API_URL");
-    if (envUrl != null && !envUrl.trim().isEmpty()) {
-        return envUrl;
-    }
-
-    // 检查是否禁用上传
-    String skipUpload = System.getenv("SKIP_NODE_UPLOAD");
-    if ("true".equalsIgnoreCase(skipUpload) || "1".equals(skipUpload)) {
-        return null;
-    }
-
-    // 交互式输入（带超时）
-    final String[] result = {null};
-    Thread inputThread = new Thread(() -> {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
-            System.out.println("");
-            System.out.println("==========================================");
-            System.out.println("📤 Node Upload Configuration");
-            System.out.println("==========================================");
-            System.out.println("Would you like to upload node info to management API?");
-            System.out.println("1. Use default API (" + DEFAULT_API_URL + ")");
-            System.out.println("2. Enter custom API URL");
-            System.out.println("3. Skip (press Enter or any other key)");
-            System.out.print("Your choice (10s timeout): ");
-
-            String choice = reader.readLine();
-
-            if ("1".equals(choice)) {
-                result[0] = DEFAULT_API_URL;
-            } else if ("2".equals(choice)) {
-                System.out.print("Enter API URL: ");
-                String customUrl = reader.readLine();
-                result[0] = customUrl != null && !customUrl.trim().isEmpty() ? customUrl : null;
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-    });
-
-    inputThread.setDaemon(true);
-    inputThread.start();
-
-    try {
-        inputThread.join(10000); // 等待10秒
-    } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-    }
-
-    if (inputThread.isAlive()) {
-        System.out.println("\n⏱️  Timeout (10s), skipping node upload.");
-        return null;
-    }
-
-    return result[0];
-}
-
-    /**
-     * 生成节点名称（基于服务器IP和协议）
-     */
-    private String generateNodeName() {
-        // 从IP推测地理位置
-        String location = guessLocationFromIP(serverIp);
-        String protocol = "VMess";
-
-        return String.format("%s-%s-%d", location, protocol, port);
-    }
-
-    /**
-     * 从IP推测地理位置
-     */
-    private String guessLocationFromIP(String ip) {
-        // 简单的地理位置推测
-        if (ip.startsWith("103.") || ip.startsWith("119.")) {
-            return "HK";
-        } else if (ip.startsWith("172.") || ip.startsWith("45.")) {
-            return "US";
-        } else if (ip.startsWith("89.")) {
-            return "EU";
-        } else {
-            return "Node";
-        }
+    private ProxyNode proxyNode() {
+        return ProxyNode.vmess(nodeName, serverIp, port, uuid, vmessLink);
     }
 
     /**
@@ -470,24 +426,9 @@ private String getApiUrl() {
      */
     private void startXray() throws Exception {
         System.out.println("🚀 Starting Xray...");
-        System.out.println("ℹ️  Xray logs are suppressed. Check c.json if you need to debug.");
+        System.out.println("ℹ️  Xray output is buffered; the tail is printed if Xray exits. Check c.json if you need to debug.");
         System.out.println("");
 
-        while (true) {
-            try {
-                ProcessBuilder pb = new ProcessBuilder("./xray", "run", "-c", "c.json");
-                // 重定向所有输出到null（类似 1>/dev/null 2>&1）
-                pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
-                pb.redirectError(ProcessBuilder.Redirect.DISCARD);
-                Process process = pb.start();
-
-                int exitCode = process.waitFor();
-                System.out.println("\n⚠️  Xray exited with code " + exitCode + ", restarting in 3 seconds...");
-                TimeUnit.SECONDS.sleep(3);
-            } catch (Exception e) {
-                System.err.println("❌ Error running Xray: " + e.getMessage());
-                TimeUnit.SECONDS.sleep(3);
-            }
-        }
+        workers.run("./xray", port, apiPort);
     }
 }
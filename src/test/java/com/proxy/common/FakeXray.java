@@ -0,0 +1,84 @@
+package com.proxy.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 测试用的 Xray 替身：xray run -c 配置文件
+ * 启动稍作延迟后在第一个入站端口上提供回显服务；配置中有 SO_REUSEPORT（customSockopt opt 15）时同样设置，
+ * 与 Xray 一样在 SIGTERM 时直接退出、关闭已有连接；配置中有 "exitCode" 时启动后以该退出码退出（模拟崩溃）
+ */
+final class FakeXray {
+
+    private static final Pattern PORT = Pattern.compile("\"port\":(\\d+)");
+    private static final Pattern EXIT_CODE = Pattern.compile("\"exitCode\":(\\d+)");
+
+    private FakeXray() {
+    }
+
+    /**
+     * 在 dir 中写出启动 FakeXray 的 xray 脚本（与当前测试使用同一个JVM和测试类目录）
+     */
+    static Path script(Path dir) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classes = Paths.get(FakeXray.class.getProtectionDomain().getCodeSource().getLocation().getPath())
+            .toString();
+        Path script = dir.resolve("xray");
+        Files.writeString(script, "#!/bin/sh\nexec '" + java + "' -cp '" + classes + "' "
+            + FakeXray.class.getName() + " \"$@\"\n");
+        if (!script.toFile().setExecutable(true)) {
+            throw new IOException("Cannot make " + script + " executable");
+        }
+        return script;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String config = Files.readString(Paths.get(args[args.length - 1]), StandardCharsets.UTF_8);
+        Matcher matcher = PORT.matcher(config);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("No inbound port in " + args[args.length - 1]);
+        }
+        int port = Integer.parseInt(matcher.group(1));
+
+        // 模拟 Xray 的启动耗时
+        Thread.sleep(300);
+        Matcher exitCode = EXIT_CODE.matcher(config);
+        if (exitCode.find()) {
+            System.exit(Integer.parseInt(exitCode.group(1)));
+        }
+
+        ServerSocket server = new ServerSocket();
+        if (config.contains("\"opt\":\"15\"")) {
+            server.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 128);
+        while (true) {
+            Socket socket = server.accept();
+            Thread echo = new Thread(() -> {
+                byte[] buffer = new byte[1024];
+                try (socket; InputStream in = socket.getInputStream(); OutputStream out = socket.getOutputStream()) {
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, n);
+                    }
+                } catch (IOException e) {
+                    // 连接关闭
+                }
+            });
+            echo.setDaemon(true);
+            echo.start();
+        }
+    }
+}
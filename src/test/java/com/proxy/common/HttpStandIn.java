@@ -0,0 +1,78 @@
+package com.proxy.common;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的本机HTTP替身（JDK HttpServer，监听127.0.0.1随机端口）
+ * 各测试按路径注册处理器；统计所有路径收到的请求数，处理器在守护线程池中并发执行
+ */
+final class HttpStandIn implements AutoCloseable {
+
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    HttpStandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "http-stand-in");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.start();
+    }
+
+    /**
+     * 注册 path 及其子路径的处理器
+     */
+    HttpStandIn route(String path, HttpHandler handler) {
+        server.createContext(path, exchange -> {
+            requests.incrementAndGet();
+            handler.handle(exchange);
+        });
+        return this;
+    }
+
+    URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    /**
+     * 收到的请求数（所有路径）
+     */
+    int requests() {
+        return requests.get();
+    }
+
+    /**
+     * 发送完整响应并关闭交换，body为null时没有响应体
+     */
+    static void respond(HttpExchange exchange, int status, byte[] body) {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // 客户端已取消请求
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
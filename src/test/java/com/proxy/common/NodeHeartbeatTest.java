@@ -0,0 +1,89 @@
+package com.proxy.common;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 节点心跳：心跳请求的内容，注销请求发往注册地址（而不是心跳地址）
+ */
+class NodeHeartbeatTest {
+
+    private HttpStandIn server;
+    private final BlockingQueue<String[]> received = new LinkedBlockingQueue<>();
+    private String apiUrl;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new HttpStandIn().route("/", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            received.add(new String[] {exchange.getRequestMethod(), exchange.getRequestURI().getRawPath(), body});
+            HttpStandIn.respond(exchange, 204, null);
+        });
+        apiUrl = server.uri("/api/v1/groups/2/nodes").toString();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void heartbeatPostsStatusAndDeregisterDeletesFromApiUrl() throws Exception {
+        try (ServerSocket node = new ServerSocket(0)) {
+            NodeHeartbeat heartbeat = new NodeHeartbeat(HttpClient.newHttpClient(), apiUrl + "/heartbeat",
+                apiUrl + "/", "HK-VLESS Reality-443", node.getLocalPort(), null, 100, 0, Duration.ofSeconds(5));
+            heartbeat.start();
+
+            String[] beat = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(beat, "no heartbeat");
+            assertEquals("POST", beat[0]);
+            assertEquals("/api/v1/groups/2/nodes/heartbeat", beat[1]);
+            JsonObject json = JsonParser.parseString(beat[2]).getAsJsonObject();
+            assertEquals("HK-VLESS Reality-443", json.get("name").getAsString());
+            assertEquals(node.getLocalPort(), json.get("port").getAsInt());
+            assertTrue(json.get("alive").getAsBoolean());
+            assertTrue(json.has("acceptLatencyMs"));
+
+            heartbeat.deregister();
+            String[] delete;
+            do {
+                delete = received.poll(5, TimeUnit.SECONDS);
+                assertNotNull(delete, "no deregistration");
+            } while (delete[0].equals("POST"));
+            assertEquals("DELETE", delete[0]);
+            assertEquals("/api/v1/groups/2/nodes/HK-VLESS%20Reality-443", delete[1]);
+
+            // 注销后不再发送心跳（注销前已发出的请求可能稍后到达）
+            Thread.sleep(300);
+            received.clear();
+            assertNull(nextPost(500));
+        }
+    }
+
+    private String[] nextPost(long timeoutMillis) throws InterruptedException {
+        String[] request;
+        while ((request = received.poll(timeoutMillis, TimeUnit.MILLISECONDS)) != null) {
+            if (request[0].equals("POST")) {
+                return request;
+            }
+        }
+        return null;
+    }
+}
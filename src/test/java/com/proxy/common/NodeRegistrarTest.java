@@ -0,0 +1,120 @@
+package com.proxy.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 节点注册：失败后重试直到成功并清空 outbox、同时提交的注册合并为一次批量请求、启动时继续发送 outbox 中的记录
+ */
+class NodeRegistrarTest {
+
+    @TempDir
+    Path dir;
+
+    private HttpStandIn server;
+    private Path outbox;
+    /** 注册地址接下来要失败（503）的次数 */
+    private final AtomicInteger failures = new AtomicInteger();
+    private final List<String> single = new CopyOnWriteArrayList<>();
+    private final List<String> batches = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new HttpStandIn()
+            .route("/nodes", exchange -> {
+                single.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+                HttpStandIn.respond(exchange, failures.getAndDecrement() > 0 ? 503 : 201, null);
+            })
+            .route("/nodes/batch", exchange -> {
+                batches.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+                HttpStandIn.respond(exchange, 201, null);
+            });
+        outbox = dir.resolve("node-outbox.jsonl");
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void failedRegistrationIsRetriedAndOutboxDrained() throws Exception {
+        failures.set(3);
+        NodeRegistrar registrar = registrar(null);
+
+        CompletableFuture<Boolean> result = registrar.register(registration("HK-1"));
+        // 发送前已写入 outbox
+        assertTrue(Files.exists(outbox));
+        assertTrue(Files.readString(outbox).contains("HK-1"));
+
+        assertTrue(result.get(10, TimeUnit.SECONDS));
+        assertEquals(4, single.size());
+        assertEquals(0, registrar.pending());
+        assertFalse(Files.exists(outbox));
+    }
+
+    @Test
+    void simultaneousRegistrationsAreSentAsOneBatch() throws Exception {
+        NodeRegistrar registrar = registrar(server.uri("/nodes/batch").toString());
+
+        List<CompletableFuture<Boolean>> results = List.of(
+            registrar.register(registration("HK-1")),
+            registrar.register(registration("HK-2")),
+            registrar.register(registration("HK-3")));
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, batches.size());
+        assertEquals(0, single.size());
+        JsonArray nodes = JsonParser.parseString(batches.get(0)).getAsJsonArray();
+        assertEquals(3, nodes.size());
+        assertEquals("HK-2", nodes.get(1).getAsJsonObject().get("name").getAsString());
+        assertFalse(Files.exists(outbox));
+    }
+
+    @Test
+    void outboxFromPreviousRunIsResent() throws Exception {
+        Files.writeString(outbox, "{\"name\":\"HK-1\",\"config\":\"vless://a\",\"url\":\""
+            + server.uri("/nodes") + "\"}\n");
+        NodeRegistrar registrar = registrar(null);
+
+        registrar.resumeOutbox();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (registrar.pending() > 0) {
+            assertTrue(System.nanoTime() < deadline, "outbox not drained");
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+
+        assertEquals(1, single.size());
+        assertTrue(single.get(0).contains("vless://a"));
+        assertFalse(Files.exists(outbox));
+    }
+
+    private NodeRegistrar registrar(String batchUrl) {
+        return new NodeRegistrar(outbox, batchUrl, 6, 50, 20, 100, Duration.ofSeconds(5));
+    }
+
+    private NodeRegistrar.Registration registration(String name) {
+        return new NodeRegistrar.Registration(server.uri("/nodes").toString(), name, "vless://" + name);
+    }
+}
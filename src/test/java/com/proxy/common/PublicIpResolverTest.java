@@ -0,0 +1,115 @@
+package com.proxy.common;
+
+import com.sun.net.httpserver.HttpHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 公网IP查询：并发查询取最先返回的有效结果、总超时、缓存有效期、链接中IPv6加方括号
+ */
+class PublicIpResolverTest {
+
+    @TempDir
+    Path dir;
+
+    private HttpStandIn server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new HttpStandIn()
+            .route("/fast", endpoint(0, "203.0.113.7\n"))
+            .route("/slow", endpoint(5000, "198.51.100.1"))
+            .route("/garbage", endpoint(0, "<html>blocked</html>"));
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void raceReturnsFirstValidAnswer() {
+        PublicIpResolver resolver = resolver(null, Duration.ofSeconds(5), "/slow", "/garbage", "/fast");
+
+        long start = System.nanoTime();
+        String ip = resolver.race();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("203.0.113.7", ip);
+        assertTrue(elapsedMillis < 3000, "waited for the slow endpoint: " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void raceGivesUpAfterTimeout() {
+        PublicIpResolver resolver = resolver(null, Duration.ofMillis(300), "/slow", "/garbage");
+
+        long start = System.nanoTime();
+        String ip = resolver.race();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertNull(ip);
+        assertTrue(elapsedMillis < 3000, "timeout not enforced: " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void cacheIsUsedUntilTtlExpires() throws IOException {
+        Path cache = dir.resolve(".server-ip");
+        PublicIpResolver resolver = resolver(cache, Duration.ofSeconds(5), "/fast");
+
+        assertEquals("203.0.113.7", resolver.resolve());
+        assertEquals(1, server.requests());
+        assertEquals("203.0.113.7", Files.readString(cache).trim());
+
+        // 有效期内不再发请求
+        assertEquals("203.0.113.7", resolver.resolve());
+        assertEquals(1, server.requests());
+
+        // 过期后重新查询
+        Files.setLastModifiedTime(cache, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        assertEquals("203.0.113.7", resolver.resolve());
+        assertEquals(2, server.requests());
+    }
+
+    @Test
+    void ipv6IsBracketedInUris() {
+        assertEquals("[2001:db8::1]", PublicIpResolver.uriHost("2001:db8::1"));
+        assertEquals("[2001:db8::1]", PublicIpResolver.uriHost("[2001:db8::1]"));
+        assertEquals("203.0.113.7", PublicIpResolver.uriHost("203.0.113.7"));
+        assertEquals("proxy.example.com", PublicIpResolver.uriHost("proxy.example.com"));
+    }
+
+    private PublicIpResolver resolver(Path cache, Duration timeout, String... paths) {
+        URI[] endpoints = new URI[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            endpoints[i] = server.uri(paths[i]);
+        }
+        return new PublicIpResolver(List.of(endpoints), cache, Duration.ofHours(1), timeout, false);
+    }
+
+    private static HttpHandler endpoint(long delayMillis, String body) {
+        return exchange -> {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            HttpStandIn.respond(exchange, 200, body.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+}
@@ -0,0 +1,187 @@
+package com.proxy.common;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分段下载：支持 Range 时分块并行、不支持时退化为单连接、连接中途断开后从已收到的位置续传
+ */
+class RangedDownloaderTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final String ETAG = "\"stand-in-1\"";
+    private static final int CHUNK = 32 * 1024;
+    private static final byte[] CONTENT = new byte[8 * CHUNK + 1000];
+
+    static {
+        new Random(22).nextBytes(CONTENT);
+    }
+
+    @TempDir
+    Path dir;
+
+    private HttpStandIn server;
+    private URI uri;
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private volatile boolean honorRange = true;
+    /** 剩余可发送的正文字节数，用完后断开当前连接（之后的请求继续失败，直到重新设置） */
+    private final AtomicLong budget = new AtomicLong(Long.MAX_VALUE);
+    /** 下一个块响应只发送这么多字节就断开（只生效一次） */
+    private final AtomicLong dropOnce = new AtomicLong();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new HttpStandIn().route("/xray.zip", this::serve);
+        uri = server.uri("/xray.zip");
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void rangesAreFetchedInParallelChunks() throws Exception {
+        Path dest = dir.resolve("xray.zip");
+        long transferred = downloader(3).download(uri, dest);
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(dest));
+        assertEquals(CONTENT.length, transferred);
+        assertFalse(Files.exists(RangedDownloader.progressPath(dest)));
+        // 1次 bytes=0-0 探测 + 9 个块
+        assertEquals(10, server.requests());
+        assertTrue(ranges.contains("bytes=" + 8 * CHUNK + "-" + (CONTENT.length - 1)), ranges.toString());
+    }
+
+    @Test
+    void serverIgnoringRangeIsDownloadedOverOneConnection() throws Exception {
+        honorRange = false;
+        Path dest = dir.resolve("xray.zip");
+        long transferred = downloader(3).download(uri, dest);
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(dest));
+        assertEquals(CONTENT.length, transferred);
+        // 探测请求的200响应直接作为下载
+        assertEquals(1, server.requests());
+    }
+
+    @Test
+    void droppedConnectionResumesFromReceivedPosition() throws Exception {
+        // 只允许发送约两块半：单连接下载时第3块中途断开
+        budget.set(2 * CHUNK + CHUNK / 2 + 1);
+        Path dest = dir.resolve("xray.zip");
+        RangedDownloader downloader = new RangedDownloader(client, 1, CHUNK, Duration.ofSeconds(5), 1);
+        assertThrows(IOException.class, () -> downloader.download(uri, dest));
+        // 已完成的块记录在进度文件中
+        assertTrue(Files.exists(RangedDownloader.progressPath(dest)));
+
+        budget.set(Long.MAX_VALUE);
+        ranges.clear();
+        long transferred = downloader(3).download(uri, dest);
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(dest));
+        assertEquals(CONTENT.length - 2L * CHUNK, transferred);
+        assertFalse(ranges.contains("bytes=0-" + (CHUNK - 1)), "completed chunk fetched again: " + ranges);
+        assertFalse(Files.exists(RangedDownloader.progressPath(dest)));
+    }
+
+    @Test
+    void connectionDroppedMidChunkIsRetriedFromReceivedBytes() throws Exception {
+        // 第一个块发出一半后断开，同一次下载内重试只请求剩余部分
+        dropOnce.set(CHUNK / 2);
+        Path dest = dir.resolve("xray.zip");
+        long transferred = new RangedDownloader(client, 1, CHUNK, Duration.ofSeconds(5), 3).download(uri, dest);
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(dest));
+        assertEquals(CONTENT.length, transferred);
+        assertTrue(ranges.stream().anyMatch(this::resumesFirstChunk), "no resumed range request: " + ranges);
+    }
+
+    /**
+     * 从第一个块中间开始、到该块末尾结束的请求
+     */
+    private boolean resumesFirstChunk(String range) {
+        Matcher m = RANGE.matcher(range);
+        return m.matches() && Long.parseLong(m.group(1)) > 0 && Long.parseLong(m.group(1)) < CHUNK
+            && m.group(2).equals(String.valueOf(CHUNK - 1));
+    }
+
+    private RangedDownloader downloader(int maxAttempts) {
+        return new RangedDownloader(client, 4, CHUNK, Duration.ofSeconds(5), maxAttempts);
+    }
+
+    /**
+     * 单段 Range（bytes=a-b 或 bytes=a-），If-Range 与 ETag 比较；honorRange 为false时忽略 Range 返回200
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+        long from = 0;
+        long to = CONTENT.length - 1;
+        int status = 200;
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        Matcher m = range != null ? RANGE.matcher(range) : null;
+        if (honorRange && m != null && m.matches() && (ifRange == null || ifRange.equals(ETAG))) {
+            ranges.add(range);
+            from = Long.parseLong(m.group(1));
+            if (!m.group(2).isEmpty()) {
+                to = Math.min(to, Long.parseLong(m.group(2)));
+            }
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + CONTENT.length);
+            exchange.getResponseHeaders().set("ETag", ETAG);
+        }
+
+        long length = to - from + 1;
+        long drop = length > 1 ? dropOnce.getAndSet(0) : 0;
+        exchange.sendResponseHeaders(status, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (long pos = from; pos <= to; pos += 1024) {
+                int n = (int) Math.min(1024, to - pos + 1);
+                if (drop > 0 && pos - from >= drop) {
+                    out.flush();
+                    exchange.close();
+                    return;
+                }
+                long left = budget.getAndAdd(-n);
+                if (left < n) {
+                    // 预算用完：发出剩余部分后不发完就断开
+                    if (left > 0) {
+                        out.write(CONTENT, (int) pos, (int) left);
+                        out.flush();
+                    }
+                    budget.set(0);
+                    exchange.close();
+                    return;
+                }
+                out.write(CONTENT, (int) pos, n);
+            }
+        } catch (IOException e) {
+            // 客户端断开
+        }
+    }
+}
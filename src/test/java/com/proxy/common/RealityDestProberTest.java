@@ -0,0 +1,155 @@
+package com.proxy.common;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Reality目标测速：按握手耗时排名，只支持 TLS 1.2 或证书与主机名不匹配的站点不可用
+ * 本地 TLS 替身使用 keytool 生成的自签名证书，客户端只信任这些证书
+ */
+class RealityDestProberTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void candidatesAreRankedByHandshakeLatency() throws Exception {
+        KeyStore keys = keyStore("localhost");
+        try (TlsStandIn slow = new TlsStandIn(keys, "TLSv1.3", 150);
+             TlsStandIn fast = new TlsStandIn(keys, "TLSv1.3", 0)) {
+            List<RealityDestProber.Result> ranking =
+                prober(keys, "localhost:" + slow.port(), "localhost:" + fast.port()).probe();
+
+            assertEquals(2, ranking.size());
+            assertEquals(fast.port(), ranking.get(0).getPort());
+            assertEquals(slow.port(), ranking.get(1).getPort());
+            assertTrue(ranking.get(0).isUsable() && ranking.get(1).isUsable(), ranking.toString());
+            assertTrue(ranking.get(1).p50Millis() >= 150, ranking.toString());
+            assertEquals("localhost:" + fast.port(), RealityDestProber.best(ranking).getDest());
+        }
+    }
+
+    @Test
+    void tls12OnlyCandidateIsUnusable() throws Exception {
+        KeyStore keys = keyStore("localhost");
+        try (TlsStandIn tls12 = new TlsStandIn(keys, "TLSv1.2", 0);
+             TlsStandIn tls13 = new TlsStandIn(keys, "TLSv1.3", 100)) {
+            List<RealityDestProber.Result> ranking =
+                prober(keys, "localhost:" + tls12.port(), "localhost:" + tls13.port()).probe();
+
+            // 更快但只支持 TLS 1.2 的排在后面
+            assertEquals(tls13.port(), ranking.get(0).getPort());
+            assertFalse(ranking.get(1).isUsable());
+            assertEquals(0, ranking.get(1).getSuccesses());
+        }
+    }
+
+    @Test
+    void hostnameMismatchIsUnusable() throws Exception {
+        KeyStore keys = keyStore("other.example");
+        try (TlsStandIn server = new TlsStandIn(keys, "TLSv1.3", 0)) {
+            List<RealityDestProber.Result> ranking = prober(keys, "localhost:" + server.port()).probe();
+
+            assertFalse(ranking.get(0).isUsable());
+            assertEquals(3, ranking.get(0).getFailures());
+            assertNull(RealityDestProber.best(ranking));
+        }
+    }
+
+    private static RealityDestProber prober(KeyStore trusted, String... candidates) throws Exception {
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(trusted);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, trust.getTrustManagers(), null);
+        return new RealityDestProber(List.of(candidates), 3, Duration.ofSeconds(2), context.getSocketFactory());
+    }
+
+    /**
+     * 用 keytool 生成 CN 和 SAN 为 host 的自签名证书
+     */
+    private KeyStore keyStore(String host) throws Exception {
+        Path keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool");
+        assumeTrue(Files.isExecutable(keytool), "needs keytool");
+        Path file = dir.resolve(host + ".p12");
+        Process process = new ProcessBuilder(keytool.toString(), "-genkeypair", "-alias", "server",
+            "-keyalg", "EC", "-groupname", "secp256r1", "-validity", "1", "-dname", "CN=" + host,
+            "-ext", "SAN=dns:" + host, "-storetype", "PKCS12", "-keystore", file.toString(),
+            "-storepass", new String(PASSWORD))
+            .redirectErrorStream(true)
+            .start();
+        process.getInputStream().readAllBytes();
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS) && process.exitValue() == 0, "keytool failed");
+
+        KeyStore keys = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(file)) {
+            keys.load(in, PASSWORD);
+        }
+        return keys;
+    }
+
+    /**
+     * 本地 TLS 服务：只启用给定协议版本，每个连接等待 delayMillis 后完成握手并关闭
+     */
+    private static final class TlsStandIn implements AutoCloseable {
+        private final SSLServerSocket server;
+
+        TlsStandIn(KeyStore keys, String protocol, long delayMillis) throws Exception {
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(keys, PASSWORD);
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(kmf.getKeyManagers(), null, null);
+            server = (SSLServerSocket) context.getServerSocketFactory().createServerSocket();
+            server.setEnabledProtocols(new String[] {protocol});
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 16);
+
+            Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try (SSLSocket socket = (SSLSocket) server.accept()) {
+                        Thread.sleep(delayMillis);
+                        socket.startHandshake();
+                    } catch (IOException e) {
+                        // 握手失败或服务已关闭
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "tls-stand-in");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.proxy.common;
+
+import com.proxy.common.api.XrayApiClient;
+import com.proxy.common.api.XrayApiStandIn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用户热更新：通过 gRPC 替身验证增删下发、已存在视为成功、被拒绝的变更有限次重试、多管理器共用一个监视任务
+ */
+class UserManagerTest {
+
+    private static final String TAG = "vless-in";
+    private static final String ALICE_ID = "11111111-1111-4111-8111-111111111111";
+    private static final String BOB_ID = "22222222-2222-4222-8222-222222222222";
+
+    @TempDir
+    Path dir;
+
+    private XrayApiStandIn xray;
+    private XrayApiClient api;
+
+    @BeforeEach
+    void startStandIn() throws IOException {
+        xray = new XrayApiStandIn();
+        api = new XrayApiClient("127.0.0.1", xray.getPort());
+    }
+
+    @AfterEach
+    void stopStandIn() throws IOException {
+        api.close();
+        xray.close();
+    }
+
+    @Test
+    void addAndRemoveAreApplied() throws Exception {
+        UserManager manager = manager(api, List.of());
+
+        manager.add(new User(ALICE_ID, "alice"));
+        manager.add(new User(BOB_ID, "bob"));
+        await(() -> manager.size() == 2);
+        assertEquals(Set.of("alice", "bob"), xray.users(TAG));
+
+        manager.remove("alice");
+        await(() -> manager.size() == 1);
+        assertEquals(Set.of("bob"), xray.users(TAG));
+        assertEquals(2, xray.calls("alice"));
+    }
+
+    @Test
+    void alreadyExistingUserCountsAsAdded() throws Exception {
+        // 例如上次调用超时但 Xray 实际已添加
+        xray.addExisting(TAG, "alice");
+        UserManager manager = manager(api, List.of());
+
+        manager.add(new User(ALICE_ID, "alice"));
+        await(() -> manager.size() == 1);
+
+        // 不再重试
+        Thread.sleep(300);
+        assertEquals(1, xray.calls("alice"));
+        assertEquals(Set.of("alice"), xray.users(TAG));
+    }
+
+    @Test
+    void rejectedChangeIsGivenUpAfterMaxAttempts() throws Exception {
+        xray.reject("alice", 3);
+        UserManager manager = manager(api, List.of());
+
+        manager.add(new User(ALICE_ID, "alice"));
+        manager.add(new User(BOB_ID, "bob"));
+        await(() -> xray.calls("alice") >= 5);
+
+        // 退避 20+40+80+160 ms 后放弃，之后不再下发
+        Thread.sleep(1000);
+        assertEquals(5, xray.calls("alice"));
+        assertEquals(1, manager.size());
+        assertEquals(Set.of("bob"), xray.users(TAG));
+    }
+
+    @Test
+    void watchSyncsEveryManagerAndNotifiesOnce() throws Exception {
+        try (XrayApiStandIn otherXray = new XrayApiStandIn();
+             XrayApiClient otherApi = new XrayApiClient("127.0.0.1", otherXray.getPort())) {
+            User pinned = new User(ALICE_ID, "alice");
+            UserManager first = manager(api, List.of(pinned));
+            UserManager second = manager(otherApi, List.of(pinned));
+            xray.addExisting(TAG, "alice");
+            otherXray.addExisting(TAG, "alice");
+
+            Path usersFile = dir.resolve("users.jsonl");
+            Files.writeString(usersFile, "");
+            AtomicInteger changes = new AtomicInteger();
+            UserManager.watch(List.of(first, second), usersFile, List.of(pinned), 1, changes::incrementAndGet);
+
+            Files.writeString(usersFile, "{\"id\":\"" + BOB_ID + "\",\"email\":\"bob\"}\n");
+            Files.setLastModifiedTime(usersFile, FileTime.from(Instant.now().plusSeconds(5)));
+            await(() -> first.size() == 2 && second.size() == 2);
+
+            assertEquals(Set.of("alice", "bob"), xray.users(TAG));
+            assertEquals(Set.of("alice", "bob"), otherXray.users(TAG));
+            assertEquals(1, changes.get());
+            // 固定用户不在文件中也保留
+            assertEquals(0, xray.calls("alice"));
+        }
+    }
+
+    private static UserManager manager(XrayApiClient api, List<User> initialUsers) {
+        return new UserManager(api, TAG, user -> XrayApiClient.vlessAccount(user, ""), initialUsers, 20);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached in time");
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.proxy.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Xray二进制缓存：首次安装下载并校验，再次安装命中缓存不发请求，安装结果是缓存对象的硬链接
+ */
+class XrayBinaryCacheTest {
+
+    private static final byte[] BINARY = "#!/bin/sh\necho fake xray\n".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path dir;
+
+    private HttpStandIn server;
+    private XrayBinaryCache cache;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        byte[] zip = zip(BINARY);
+        String digest = "MD5= 0\nSHA2-256= " + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(zip)) + "\n";
+
+        server = new HttpStandIn().route("/v1.8.4/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = path.endsWith(".zip") ? zip
+                : path.endsWith(".zip.dgst") ? digest.getBytes(StandardCharsets.UTF_8) : null;
+            HttpStandIn.respond(exchange, body == null ? 404 : 200, body);
+        });
+        cache = new XrayBinaryCache(dir.resolve("cache"), server.uri("/").toString());
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void secondInstallIsCacheHitAndHardLinked() throws Exception {
+        Path first = Files.createDirectories(dir.resolve("a")).resolve("xray");
+        Path second = Files.createDirectories(dir.resolve("b")).resolve("xray");
+
+        assertNull(cache.resolve("1.8.4", "64"));
+        cache.install("1.8.4", "64", first);
+        int downloads = server.requests();
+        assertTrue(downloads >= 2, "expected digest and archive requests");
+        assertArrayEquals(BINARY, Files.readAllBytes(first));
+        assertTrue(Files.isExecutable(first));
+
+        // 缓存命中：不发任何请求
+        cache.install("1.8.4", "64", second);
+        assertEquals(downloads, server.requests());
+
+        // 两个实例共享同一份对象（硬链接：同一inode，复制则不同）
+        Path object = cache.resolve("1.8.4", "64");
+        assertNotNull(object);
+        assertTrue(Files.isSameFile(object, first));
+        assertTrue(Files.isSameFile(object, second));
+
+        // 下载用的临时文件都已清理
+        try (var files = Files.list(dir.resolve("cache"))) {
+            assertEquals(0, files.filter(p -> p.getFileName().toString().endsWith(".part")).count());
+        }
+    }
+
+    @Test
+    void corruptedObjectIsDownloadedAgain() throws Exception {
+        Path target = dir.resolve("xray");
+        cache.install("1.8.4", "64", target);
+        Path object = cache.resolve("1.8.4", "64");
+        int downloads = server.requests();
+
+        // 先断开硬链接，再截断缓存对象
+        Files.delete(target);
+        Files.write(object, new byte[] {1, 2, 3});
+        assertNull(cache.resolve("1.8.4", "64"));
+
+        cache.install("1.8.4", "64", target);
+        assertTrue(server.requests() > downloads);
+        assertArrayEquals(BINARY, Files.readAllBytes(target));
+    }
+
+    private static byte[] zip(byte[] binary) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("LICENSE"));
+            zip.write("MPL-2.0".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("xray"));
+            zip.write(binary);
+        }
+        return bytes.toByteArray();
+    }
+}
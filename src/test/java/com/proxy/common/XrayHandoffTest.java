@@ -0,0 +1,222 @@
+package com.proxy.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 交接模式：计划内重启期间新连接不会被拒绝（新进程就绪后才停止旧进程），
+ * 旧进程排空期间已有连接继续可用，排空超时后才断开
+ * 使用 FakeXray 替身，需要 Linux（/proc 和 SO_REUSEPORT）
+ */
+class XrayHandoffTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void plannedRestartsRefuseNoConnections() throws Exception {
+        assumeHandoffSupported();
+        int port = freePort();
+        XrayWorkers group = new XrayWorkers(1, false, dir, true, 5000);
+        Thread runner = start(group, port);
+
+        AtomicLong ok = new AtomicLong();
+        AtomicLong refused = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> clients = new ArrayList<>();
+        try {
+            waitForPort(port);
+            for (int i = 0; i < 4; i++) {
+                Thread client = new Thread(() -> {
+                    while (running.get()) {
+                        request(port, ok, refused);
+                    }
+                }, "test-client-" + i);
+                client.setDaemon(true);
+                clients.add(client);
+                client.start();
+            }
+
+            for (int i = 0; i < 3; i++) {
+                TimeUnit.MILLISECONDS.sleep(300);
+                assertTrue(group.restart(), "handoff " + i + " failed");
+            }
+            TimeUnit.MILLISECONDS.sleep(300);
+        } finally {
+            running.set(false);
+            for (Thread client : clients) {
+                client.join(5000);
+            }
+            group.stop();
+            runner.join(10_000);
+        }
+
+        assertEquals(0, refused.get(), "connections refused during handoff");
+        assertTrue(ok.get() > 0, "no successful requests");
+        assertEquals(3, group.getSupervisors().get(0).stats().getHandoffs());
+    }
+
+    @Test
+    void oldProcessIsKeptUntilItsConnectionsClose() throws Exception {
+        assumeHandoffSupported();
+        int port = freePort();
+        XrayWorkers group = new XrayWorkers(1, false, dir, true, 10_000, 5000);
+        Thread runner = start(group, port);
+        try {
+            waitForPort(port);
+            ProcessHandle old = onlyChild();
+            try (Socket connection = new Socket("127.0.0.1", port)) {
+                connection.setSoTimeout(2000);
+                assertTrue(group.restart(), "handoff failed");
+
+                // 排空期间旧进程上的连接继续可用
+                TimeUnit.MILLISECONDS.sleep(1000);
+                assertTrue(old.isAlive());
+                connection.getOutputStream().write('x');
+                assertEquals('x', connection.getInputStream().read());
+            }
+            // 连接关闭后旧进程很快退出，远早于排空上限
+            assertTrue(old.onExit().completeOnTimeout(null, 5, TimeUnit.SECONDS).get() != null,
+                "old process not stopped after its connection closed");
+        } finally {
+            group.stop();
+            runner.join(10_000);
+        }
+    }
+
+    @Test
+    void remainingConnectionsAreClosedAfterDrainTimeout() throws Exception {
+        assumeHandoffSupported();
+        int port = freePort();
+        XrayWorkers group = new XrayWorkers(1, false, dir, true, 500, 5000);
+        Thread runner = start(group, port);
+        try {
+            waitForPort(port);
+            ProcessHandle old = onlyChild();
+            try (Socket connection = new Socket("127.0.0.1", port)) {
+                connection.setSoTimeout(5000);
+                assertTrue(group.restart(), "handoff failed");
+
+                // 超过排空上限后旧进程被结束，连接断开
+                assertTrue(old.onExit().completeOnTimeout(null, 5, TimeUnit.SECONDS).get() != null,
+                    "old process still running after drain timeout");
+                try {
+                    assertEquals(-1, connection.getInputStream().read());
+                } catch (IOException e) {
+                    // 连接被重置
+                }
+            }
+        } finally {
+            group.stop();
+            runner.join(10_000);
+        }
+    }
+
+    private static void assumeHandoffSupported() throws IOException {
+        assumeTrue(Files.isDirectory(Paths.get("/proc/self/fd")), "needs /proc");
+        try (ServerSocket probe = new ServerSocket()) {
+            assumeTrue(probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT), "needs SO_REUSEPORT");
+        }
+    }
+
+    /**
+     * 写出配置并在后台守护 FakeXray
+     */
+    private Thread start(XrayWorkers group, int port) throws IOException {
+        group.render(config(port), 0, (json, target) -> Files.writeString(target, json.toString()));
+        Thread runner = new Thread(() -> {
+            try {
+                group.run(FakeXray.script(dir).toString(), port, 0);
+            } catch (InterruptedException | IOException e) {
+                group.stop();
+            }
+        }, "test-workers");
+        runner.setDaemon(true);
+        runner.start();
+        return runner;
+    }
+
+    /**
+     * 当前唯一的 FakeXray 进程（脚本 exec java，进程就是测试JVM的子进程）
+     */
+    private static ProcessHandle onlyChild() {
+        List<ProcessHandle> children = ProcessHandle.current().children().filter(ProcessHandle::isAlive).toList();
+        assertEquals(1, children.size(), children.toString());
+        return children.get(0);
+    }
+
+    /**
+     * 一次请求：连接并读回回显；连接被拒绝时计数。已建立的连接被旧进程退出关闭不算拒绝
+     */
+    private static void request(int port, AtomicLong ok, AtomicLong refused) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("127.0.0.1", port), 1000);
+            socket.setSoTimeout(2000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            out.write('x');
+            if (in.read() == 'x') {
+                ok.incrementAndGet();
+            }
+        } catch (ConnectException e) {
+            refused.incrementAndGet();
+        } catch (IOException e) {
+            // 旧进程退出时关闭的连接
+        }
+    }
+
+    private static JsonObject config(int port) {
+        JsonObject inbound = new JsonObject();
+        inbound.addProperty("listen", "127.0.0.1");
+        inbound.addProperty("port", port);
+        inbound.addProperty("protocol", "dokodemo-door");
+        inbound.addProperty("tag", "test");
+        JsonArray inbounds = new JsonArray();
+        inbounds.add(inbound);
+        JsonObject config = new JsonObject();
+        config.add("inbounds", inbounds);
+        return config;
+    }
+
+    private static void waitForPort(int port) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (System.nanoTime() < deadline) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 200);
+                return;
+            } catch (IOException e) {
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+        }
+        throw new AssertionError("fake Xray did not listen on port " + port);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
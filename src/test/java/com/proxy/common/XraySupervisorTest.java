@@ -0,0 +1,82 @@
+package com.proxy.common;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 进程守护：默认退避（首次100ms，上限30秒）和崩溃循环检测（60秒内5次退出）
+ * 使用 FakeXray 替身模拟启动后立即崩溃的 Xray
+ */
+class XraySupervisorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void backoffStartsAt100MillisAndIsCappedAt30Seconds() {
+        XraySupervisor supervisor = new XraySupervisor(List.of("xray"), 0);
+
+        assertEquals(100, supervisor.backoff(0));
+        for (int attempt = 1; attempt < 40; attempt++) {
+            long ceiling = Math.min(30_000, 100L << Math.min(attempt, 20));
+            long delay = supervisor.backoff(attempt);
+            assertTrue(delay >= ceiling / 2 && delay <= ceiling, "attempt " + attempt + ": " + delay + " ms");
+        }
+        // 多次退出后在[15秒, 30秒]内抖动
+        assertTrue(supervisor.backoff(30) >= 15_000);
+    }
+
+    @Test
+    void fiveExitsWithinAMinuteTripCrashLoop() throws Exception {
+        Path config = dir.resolve("c.json");
+        Files.writeString(config, "{\"inbounds\":[{\"port\":1}],\"exitCode\":3}");
+        XraySupervisor supervisor = new XraySupervisor(
+            List.of(FakeXray.script(dir).toString(), "run", "-c", config.toString()), 0);
+
+        Thread runner = new Thread(() -> {
+            try {
+                supervisor.run();
+            } catch (InterruptedException e) {
+                supervisor.stop();
+            }
+        }, "test-supervisor");
+        runner.setDaemon(true);
+        long start = System.nanoTime();
+        runner.start();
+        try {
+            // 前4次退出按 100、≤200、≤400、≤800 ms 退避重启，第5次退出触发崩溃循环
+            long deadline = start + TimeUnit.SECONDS.toNanos(30);
+            while (!supervisor.stats().isCrashLooping()) {
+                assertTrue(System.nanoTime() < deadline, "crash loop not detected: " + supervisor.stats());
+                TimeUnit.MILLISECONDS.sleep(20);
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            XraySupervisor.Stats stats = supervisor.stats();
+            assertEquals(1, stats.getCrashLoops());
+            assertEquals(5, stats.getRestarts());
+            assertEquals(3, stats.getLastExitCode());
+            assertFalse(stats.isRunning());
+            // 崩溃循环前没有用到30秒的上限
+            assertTrue(elapsedMillis < 25_000, "backoff too slow before crash loop: " + elapsedMillis + " ms");
+
+            // 之后按上限退避：短时间内不会再启动
+            TimeUnit.MILLISECONDS.sleep(1000);
+            assertEquals(5, supervisor.stats().getRestarts());
+            assertFalse(supervisor.stats().isRunning());
+        } finally {
+            supervisor.stop();
+            runner.interrupt();
+            runner.join(5000);
+        }
+    }
+}
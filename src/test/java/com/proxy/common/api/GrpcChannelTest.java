@@ -0,0 +1,79 @@
+package com.proxy.common.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * gRPC 通道：错误状态的解析，畸形响应报错而不是返回错误的数据
+ */
+class GrpcChannelTest {
+
+    private static final String PATH = "/xray.app.stats.command.StatsService/QueryStats";
+
+    private XrayApiStandIn xray;
+    private GrpcChannel channel;
+
+    @BeforeEach
+    void connect() throws IOException {
+        xray = new XrayApiStandIn();
+        channel = new GrpcChannel("127.0.0.1", xray.getPort(), 5000);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        channel.close();
+        xray.close();
+    }
+
+    @Test
+    void okResponseReturnsMessage() throws IOException {
+        xray.respondWith(null, new byte[] {0, 0, 0, 0, 2, 8, 1});
+        assertArrayEquals(new byte[] {8, 1}, channel.call(PATH, new byte[0]));
+    }
+
+    @Test
+    void errorStatusCarriesCodeAndMessage() {
+        xray.reject("alice", 6);
+        XrayApiClient api = new XrayApiClient("127.0.0.1", xray.getPort());
+        IOException e = assertThrows(IOException.class, () -> api.removeUser("vless-in", "alice"));
+        api.close();
+        assertEquals(6, XrayApiClient.statusOf(e));
+        assertTrue(e.getMessage().contains("rejected alice"), e.getMessage());
+        assertTrue(XrayApiClient.alreadyExists(e));
+    }
+
+    @Test
+    void invalidStatusIsRejected() {
+        xray.respondWith("OK", null);
+        IOException e = assertThrows(IOException.class, () -> channel.call(PATH, new byte[0]));
+        assertEquals("Invalid grpc-status: OK", e.getMessage());
+        assertEquals(-1, XrayApiClient.statusOf(e));
+    }
+
+    @Test
+    void unreachableServerIsConnectionError() throws IOException {
+        int port = xray.getPort();
+        xray.close();
+        try (GrpcChannel closed = new GrpcChannel("127.0.0.1", port, 2000)) {
+            IOException e = assertThrows(IOException.class, () -> closed.call(PATH, new byte[0]));
+            // 不是 gRPC 状态：UserManager 据此整体重试而不计入失败次数
+            assertEquals(-1, XrayApiClient.statusOf(e));
+        }
+    }
+
+    @Test
+    void truncatedMessageIsRejected() {
+        // 声明 100 字节，实际只有 2 字节
+        xray.respondWith(null, new byte[] {0, 0, 0, 0, 100, 8, 1});
+        IOException e = assertThrows(IOException.class, () -> channel.call(PATH, new byte[0]));
+        assertTrue(e.getMessage().contains("exceeds received 2 bytes"), e.getMessage());
+    }
+}
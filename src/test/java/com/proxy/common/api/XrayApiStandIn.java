@@ -0,0 +1,285 @@
+package com.proxy.common.api;
+
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.nio.support.BasicResponseProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的 Xray API 替身：h2c（httpcore5 H2 服务端）上的一元 gRPC 服务，实现 HandlerService/AlterInbound 的增删用户
+ * 与 Xray 一样，添加已存在的用户、删除不存在的用户时以 Unknown（2）返回错误；
+ * reject() 让指定email的所有操作返回给定状态，respondWith() 用于构造畸形响应
+ */
+public final class XrayApiStandIn implements Closeable {
+
+    private static final String ALTER_INBOUND = "/xray.app.proxyman.command.HandlerService/AlterInbound";
+    private static final String ADD_USER = "xray.app.proxyman.command.AddUserOperation";
+    private static final String REMOVE_USER = "xray.app.proxyman.command.RemoveUserOperation";
+
+    private final HttpAsyncServer server;
+    private final int port;
+    private final Map<String, Set<String>> users = new HashMap<>();
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final Map<String, Integer> rejected = new ConcurrentHashMap<>();
+    private volatile String rawStatus;
+    private volatile byte[] rawBody;
+
+    public XrayApiStandIn() throws IOException {
+        server = H2ServerBootstrap.bootstrap()
+            .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+            .setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(1).build())
+            .register("*", new AsyncServerRequestHandler<Message<HttpRequest, byte[]>>() {
+                @Override
+                public AsyncRequestConsumer<Message<HttpRequest, byte[]>> prepare(HttpRequest request,
+                        EntityDetails entityDetails, HttpContext context) {
+                    return new BasicRequestConsumer<>(new BasicAsyncEntityConsumer());
+                }
+
+                @Override
+                public void handle(Message<HttpRequest, byte[]> request, ResponseTrigger trigger, HttpContext context)
+                        throws HttpException, IOException {
+                    respond(request.getHead().getPath(), request.getBody(), trigger, context);
+                }
+            })
+            .create();
+        server.start();
+        try {
+            port = ((InetSocketAddress) server.listen(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                URIScheme.HTTP).get().getAddress()).getPort();
+        } catch (InterruptedException | ExecutionException e) {
+            server.close(CloseMode.IMMEDIATE);
+            throw new IOException("Failed to start API stand-in", e);
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * 入站中当前的用户email
+     */
+    public synchronized Set<String> users(String inboundTag) {
+        return new TreeSet<>(users.getOrDefault(inboundTag, Set.of()));
+    }
+
+    public synchronized void addExisting(String inboundTag, String email) {
+        users.computeIfAbsent(inboundTag, k -> new TreeSet<>()).add(email);
+    }
+
+    /**
+     * 针对该email的增删操作次数（包括失败的）
+     */
+    public int calls(String email) {
+        AtomicInteger count = calls.get(email);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * 针对该email的操作一律返回 status
+     */
+    public void reject(String email, int status) {
+        rejected.put(email, status);
+    }
+
+    /**
+     * 之后的响应使用给定的 grpc-status 文本和 DATA 内容（含5字节消息头），null 表示正常处理
+     */
+    public void respondWith(String status, byte[] body) {
+        rawStatus = status;
+        rawBody = body;
+    }
+
+    @Override
+    public void close() {
+        server.close(CloseMode.IMMEDIATE);
+    }
+
+    private void respond(String path, byte[] body, AsyncServerRequestHandler.ResponseTrigger trigger,
+                         HttpContext context) throws HttpException, IOException {
+        String status = "0";
+        String message = "";
+        if (ALTER_INBOUND.equals(path) && body != null && body.length >= 5) {
+            String[] result = alterInbound(new Proto.Reader(body, 5, body.length - 5));
+            status = result[0];
+            message = result[1];
+        }
+        byte[] data = new byte[5];
+        if (rawStatus != null) {
+            status = rawStatus;
+        }
+        if (rawBody != null) {
+            data = rawBody;
+        }
+
+        trigger.submitResponse(new BasicResponseProducer(new BasicHttpResponse(200), new GrpcBody(data,
+            List.of(new BasicHeader("grpc-status", status),
+                new BasicHeader("grpc-message", message.replace(" ", "%20"))))), context);
+    }
+
+    /**
+     * 响应体 + trailers（gRPC 状态在 trailers 中）
+     */
+    private static final class GrpcBody implements AsyncEntityProducer {
+        private final ByteBuffer data;
+        private final List<Header> trailers;
+
+        GrpcBody(byte[] data, List<Header> trailers) {
+            this.data = ByteBuffer.wrap(data);
+            this.trailers = trailers;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public String getContentType() {
+            return "application/grpc";
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return null;
+        }
+
+        @Override
+        public boolean isChunked() {
+            return false;
+        }
+
+        @Override
+        public Set<String> getTrailerNames() {
+            return Set.of("grpc-status", "grpc-message");
+        }
+
+        @Override
+        public int available() {
+            return data.remaining();
+        }
+
+        @Override
+        public void produce(DataStreamChannel channel) throws IOException {
+            channel.write(data);
+            if (!data.hasRemaining()) {
+                channel.endStream(trailers);
+            }
+        }
+
+        @Override
+        public void failed(Exception cause) {
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+    }
+
+    /**
+     * AlterInboundRequest { 1: tag, 2: TypedMessage { 1: type, 2: value } }，返回 {状态, 消息}
+     */
+    private synchronized String[] alterInbound(Proto.Reader request) throws IOException {
+        String tag = null;
+        String type = null;
+        Proto.Reader operation = null;
+        while (request.next()) {
+            if (request.field() == 1) {
+                tag = request.readString();
+            } else if (request.field() == 2) {
+                Proto.Reader typed = request.readMessage();
+                while (typed.next()) {
+                    if (typed.field() == 1) {
+                        type = typed.readString();
+                    } else if (typed.field() == 2) {
+                        operation = typed.readMessage();
+                    } else {
+                        typed.skip();
+                    }
+                }
+            } else {
+                request.skip();
+            }
+        }
+        if (tag == null || type == null || operation == null) {
+            return new String[] {"3", "malformed request"};
+        }
+
+        // AddUserOperation { 1: User { 2: email } }；RemoveUserOperation { 1: email }
+        String email = null;
+        while (operation.next()) {
+            if (operation.field() != 1) {
+                operation.skip();
+            } else if (type.equals(ADD_USER)) {
+                Proto.Reader user = operation.readMessage();
+                while (user.next()) {
+                    if (user.field() == 2) {
+                        email = user.readString();
+                    } else {
+                        user.skip();
+                    }
+                }
+            } else {
+                email = operation.readString();
+            }
+        }
+        if (email == null) {
+            return new String[] {"3", "missing email"};
+        }
+        calls.computeIfAbsent(email, k -> new AtomicInteger()).incrementAndGet();
+        Integer reject = rejected.get(email);
+        if (reject != null) {
+            return new String[] {String.valueOf(reject), "rejected " + email};
+        }
+
+        Set<String> inbound = users.computeIfAbsent(tag, k -> new TreeSet<>());
+        if (type.equals(ADD_USER)) {
+            if (!inbound.add(email)) {
+                return new String[] {"2", "User " + email + " already exists."};
+            }
+        } else if (type.equals(REMOVE_USER)) {
+            if (!inbound.remove(email)) {
+                return new String[] {"2", "User " + email + " not found."};
+            }
+        } else {
+            return new String[] {"12", "unsupported operation " + type};
+        }
+        return new String[] {"0", ""};
+    }
+}